@@ -0,0 +1,63 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.core.data;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.linuxforhealth.hl7.data.Hl7RelatedGeneralUtils;
+
+/**
+ * Time to evaluate JEXL expressions like the ones of the resource templates, with the same functions
+ * the converter registers. Expressions are compiled on the first evaluation and taken from the cache
+ * of the engine afterwards.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JexlEngineUtilBenchmark {
+
+    @Param({ "String.join(\" \", first, middle, family)",
+            "GeneralUtils.generateName(prefix, first, middle, family, suffix)",
+            "GeneralUtils.noWhiteSpace(family)" })
+    private String expression;
+
+    private JexlEngineUtil engine;
+    private Map<String, Object> context;
+
+    @Setup
+    public void setup() {
+        engine = new JexlEngineUtil("GeneralUtils", Hl7RelatedGeneralUtils.class);
+        context = new HashMap<>();
+        context.put("prefix", "Dr");
+        context.put("first", "JOHN");
+        context.put("middle", "A");
+        context.put("family", "DOE");
+        context.put("suffix", "JR");
+    }
+
+    @Benchmark
+    public Object evaluate() {
+        return engine.evaluate(expression, context);
+    }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.core.terminology;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.linuxforhealth.core.config.ConverterConfiguration;
+
+/**
+ * Time to look up codes, both known and unknown, in the code systems of the FHIR registry:
+ * - lookup - through the lookup cache, the time of a repeated code in a conversion
+ * - lookupUncached - with the cache turned off (terminology.cache.size=0), the time of a new code
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TerminologyLookupBenchmark {
+
+    @Param({ "v2-0396|ICD10GM2012", "v2-0001|F", "v2-0001|UNKNOWN" })
+    private String systemAndCode;
+
+    private String system;
+    private String code;
+
+    @Setup
+    public void setup() {
+        TerminologyLookup.init();
+        system = systemAndCode.substring(0, systemAndCode.indexOf('|'));
+        code = systemAndCode.substring(systemAndCode.indexOf('|') + 1);
+    }
+
+    @Benchmark
+    public SimpleCode lookup() {
+        return TerminologyLookup.lookup(system, code);
+    }
+
+    @Benchmark
+    public SimpleCode lookupUncached(UncachedConfiguration configuration) {
+        return TerminologyLookup.lookup(system, code);
+    }
+
+    /**
+     * Converter configuration with the lookup cache turned off.
+     */
+    @State(Scope.Benchmark)
+    public static class UncachedConfiguration {
+        private static final String CONF_PROP_HOME = "hl7converter.config.home";
+
+        private Path configHome;
+        private String originalConfigHome;
+
+        @Setup
+        public void setup() throws IOException {
+            configHome = Files.createTempDirectory("hl7converter-benchmark");
+            Files.write(configHome.resolve("config.properties"),
+                    "terminology.cache.size=0\n".getBytes(StandardCharsets.UTF_8));
+            originalConfigHome = System.getProperty(CONF_PROP_HOME);
+            System.setProperty(CONF_PROP_HOME, configHome.toString());
+            ConverterConfiguration.reset();
+            TerminologyLookup.clearCache();
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            if (originalConfigHome != null) {
+                System.setProperty(CONF_PROP_HOME, originalConfigHome);
+            } else {
+                System.clearProperty(CONF_PROP_HOME);
+            }
+            ConverterConfiguration.reset();
+            TerminologyLookup.clearCache();
+            FileUtils.deleteDirectory(configHome.toFile());
+        }
+    }
+
+}
@@ -0,0 +1,53 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.linuxforhealth.hl7.benchmark.MessageCorpus;
+
+/**
+ * Time to convert a message of the corpus from HL7 text to FHIR bundle JSON, parsing, transformation
+ * and encoding included.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HL7ToFHIRConverterBenchmark {
+
+    @Param({ "ADT_A01", "ORU_R01", "VXU_V04", "MDM_T02" })
+    private String messageType;
+
+    private HL7ToFHIRConverter converter;
+    private String messageText;
+
+    @Setup
+    public void setup() {
+        converter = new HL7ToFHIRConverter();
+        messageText = MessageCorpus.getMessageText(messageType);
+    }
+
+    @Benchmark
+    public String convert() {
+        return converter.convert(messageText, ConverterOptions.SIMPLE_OPTIONS);
+    }
+
+}
@@ -0,0 +1,63 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.model.Message;
+import ca.uhn.hl7v2.util.Hl7InputStreamMessageStringIterator;
+import io.github.linuxforhealth.hl7.parsing.HL7HapiParser;
+
+/**
+ * Messages the benchmarks convert, one per supported message type, read from the corpus folder of the
+ * benchmark resources (corpus/ADT_A01.hl7, corpus/ORU_R01.hl7, ...). Benchmarks take the message type
+ * as a JMH parameter, so a type is added to the corpus by adding its file and its name to the
+ * parameter values.
+ */
+public final class MessageCorpus {
+
+    private MessageCorpus() {
+    }
+
+    /**
+     * Returns the message of the corpus for the message type, with the segments separated by carriage
+     * returns the same way the converter reads messages.
+     *
+     * @param messageType Message type, for example ADT_A01
+     * @return HL7 message text
+     */
+    public static String getMessageText(String messageType) {
+        String resource = "corpus/" + messageType + ".hl7";
+        try (InputStream in = MessageCorpus.class.getClassLoader().getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IllegalArgumentException("No message in the corpus for " + messageType);
+            }
+            Hl7InputStreamMessageStringIterator iterator = new Hl7InputStreamMessageStringIterator(in);
+            if (!iterator.hasNext()) {
+                throw new IllegalArgumentException("Empty corpus file " + resource);
+            }
+            return iterator.next();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @param messageType Message type, for example ADT_A01
+     * @return Message of the corpus for the message type, parsed with the shared parser
+     */
+    public static Message getMessage(String messageType) {
+        try {
+            return HL7HapiParser.getSharedInstance().getParser().parse(getMessageText(messageType));
+        } catch (HL7Exception e) {
+            throw new IllegalArgumentException("Cannot parse the corpus message for " + messageType, e);
+        }
+    }
+
+}
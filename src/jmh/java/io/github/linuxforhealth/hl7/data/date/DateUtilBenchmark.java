@@ -0,0 +1,109 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.data.date;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.linuxforhealth.core.config.ConverterConfiguration;
+
+/**
+ * Time to format HL7 DTM values of each precision with the default zone of the converter
+ * configuration, with DateUtil and with the previous implementation, which matched the value against
+ * the regular expressions of DateFormats and parsed it with the combined DateFormats formatter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DateUtilBenchmark {
+
+    @Param({ "20080926", "200809260935", "20080926093512.3456", "20071104013206.345+0900" })
+    private String value;
+
+    private ZoneId zone;
+
+    // Both implementations must give the same result for the value
+    @Setup
+    public void checkSameResult() {
+        zone = ConverterConfiguration.getInstance().getZoneId();
+        String current = DateUtil.formatToDateTimeWithZone(value);
+        String legacy = formatLegacy(value, zone);
+        if (!Objects.equals(current, legacy)) {
+            throw new IllegalStateException(
+                    "Different result for " + value + ": " + current + " legacy " + legacy);
+        }
+    }
+
+    @Benchmark
+    public String formatToDateTimeWithZone() {
+        return DateUtil.formatToDateTimeWithZone(value);
+    }
+
+    @Benchmark
+    public String formatToDateTimeWithZoneLegacy() {
+        return formatLegacy(value, zone);
+    }
+
+    // The previous implementation of DateUtil.formatToDateTimeWithZone
+    @SuppressWarnings("deprecation")
+    private static String formatLegacy(String input, ZoneId zone) {
+        DateTimeFormatter format = find(DateFormats.getDatePatternsWithoutTimeInstance().entrySet(), input);
+        if (format != null) {
+            try {
+                return LocalDate.parse(input, DateFormats.getFormatterInstance()).atStartOfDay().format(format);
+            } catch (DateTimeParseException e) {
+                return null;
+            }
+        }
+        format = find(DateFormats.getDatePatternsWithZoneInstance().entrySet(), input);
+        if (format != null) {
+            try {
+                return ZonedDateTime.parse(input, DateFormats.getFormatterInstance()).format(format);
+            } catch (DateTimeParseException e) {
+                // Falls back to the default zone
+            }
+        }
+        try {
+            return LocalDateTime.parse(input, DateFormats.getFormatterInstance()).atZone(zone)
+                    .format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static DateTimeFormatter find(Iterable<Entry<Pattern, DateTimeFormatter>> patterns, String input) {
+        for (Entry<Pattern, DateTimeFormatter> pattern : patterns) {
+            if (pattern.getKey().matcher(input).matches()) {
+                return pattern.getValue();
+            }
+        }
+        return null;
+    }
+
+}
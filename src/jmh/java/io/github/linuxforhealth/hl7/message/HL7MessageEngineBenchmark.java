@@ -0,0 +1,90 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.message;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.hl7.fhir.r4.model.Bundle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ca.uhn.hl7v2.model.Message;
+import io.github.linuxforhealth.api.ResourceValue;
+import io.github.linuxforhealth.core.terminology.TerminologyLookup;
+import io.github.linuxforhealth.core.terminology.UrlLookup;
+import io.github.linuxforhealth.fhir.FHIRContext;
+import io.github.linuxforhealth.hl7.benchmark.MessageCorpus;
+import io.github.linuxforhealth.hl7.parsing.HL7DataExtractor;
+import io.github.linuxforhealth.hl7.resource.ResourceReader;
+
+/**
+ * Time of the conversion stages of {@link HL7MessageEngine} for a parsed message of the corpus:
+ * - transform - evaluates all the resource templates of the message type and builds the bundle
+ * - addEntry - only adds the resources generated for the message to a new bundle
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HL7MessageEngineBenchmark {
+
+    @Param({ "ADT_A01", "ORU_R01", "VXU_V04", "MDM_T02" })
+    private String messageType;
+
+    private HL7MessageEngine engine;
+    private HL7MessageModel messageModel;
+    private Message message;
+    private List<ResourceValue> resources;
+
+    @Setup
+    public void setup() {
+        TerminologyLookup.init();
+        UrlLookup.init();
+        engine = new HL7MessageEngine(new FHIRContext());
+        messageModel = ResourceReader.getInstance().getMessageTemplates().get(messageType);
+        message = MessageCorpus.getMessage(messageType);
+
+        resources = new ArrayList<>();
+        engine.transform(newMessageData(), messageModel.getResources(), new HashMap<>(), resources::add);
+        if (resources.isEmpty()) {
+            throw new IllegalStateException("No resources generated for " + messageType);
+        }
+    }
+
+    @Benchmark
+    public Bundle transform() {
+        return engine.transform(newMessageData(), messageModel.getResources(), new HashMap<>());
+    }
+
+    @Benchmark
+    public Bundle addEntry() {
+        Bundle bundle = new Bundle();
+        for (ResourceValue resource : resources) {
+            engine.addEntry(resource.getFHIRResourceType(), resource, bundle);
+        }
+        return bundle;
+    }
+
+    // A new extractor per conversion, so the segment index is built for each one as in the converter
+    private HL7MessageData newMessageData() {
+        return new HL7MessageData(new HL7DataExtractor(message));
+    }
+
+}
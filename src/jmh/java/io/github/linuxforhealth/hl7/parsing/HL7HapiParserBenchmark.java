@@ -0,0 +1,54 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.parsing;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.model.Message;
+import io.github.linuxforhealth.hl7.benchmark.MessageCorpus;
+
+/**
+ * Time to parse a message of the corpus with the shared HAPI parser.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HL7HapiParserBenchmark {
+
+    @Param({ "ADT_A01", "ORU_R01", "VXU_V04", "MDM_T02" })
+    private String messageType;
+
+    private HL7HapiParser parser;
+    private String messageText;
+
+    @Setup
+    public void setup() {
+        parser = HL7HapiParser.getSharedInstance();
+        messageText = MessageCorpus.getMessageText(messageType);
+    }
+
+    @Benchmark
+    public Message parse() throws HL7Exception {
+        return parser.getParser().parse(messageText);
+    }
+
+}
@@ -0,0 +1,60 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.api;
+
+/**
+ * Receives the timings and counters of conversions. Implement this interface to publish them to a
+ * metrics library; the converter records nothing unless an implementation is set with
+ * ConverterOptions.Builder.withMetrics.
+ *
+ * Every timing and counter is tagged with the message type, for example ADT_A01, and a resource
+ * name: the name of the resource template for the timings and failures of templates and for
+ * expression failures, the FHIR resource type for the pending expressions of a resource, including
+ * their failures, and for the resources added to the bundle. Either tag can be null when it is not
+ * known, for example the resource name of the parse timing.
+ *
+ * Implementations are called by all the threads converting messages, so they must be thread-safe,
+ * and should be fast as they are called while converting.
+ */
+public interface ConversionMetrics {
+
+  /** Time to parse the HL7 message */
+  String PARSE = "hl7.parse";
+  /** Time to generate the resources of one resource template */
+  String TRANSFORM_RESOURCE = "transform.resource";
+  /** Time to evaluate the pending expressions of one resource, tagged with its FHIR resource type */
+  String PENDING_EXPRESSIONS = "transform.pendingExpressions";
+  /** Time to add one resource to the bundle */
+  String ADD_ENTRY = "bundle.addEntry";
+  /** Time to validate the bundle */
+  String VALIDATE = "bundle.validate";
+  /** Number of resources generated */
+  String RESOURCES_GENERATED = "resources.generated";
+  /** Number of resources whose generation failed */
+  String RESOURCES_FAILED = "resources.failed";
+  /** Number of expressions whose evaluation failed, the expression has no value */
+  String EXPRESSIONS_FAILED = "expressions.failed";
+
+  /**
+   * Records the time spent in a conversion stage.
+   *
+   * @param name Name of the timing, one of the constants of this interface
+   * @param messageType Message type or null
+   * @param resource Resource name or null
+   * @param nanos Time spent, in nanoseconds
+   */
+  void recordTime(String name, String messageType, String resource, long nanos);
+
+  /**
+   * Increments a counter by one.
+   *
+   * @param name Name of the counter, one of the constants of this interface
+   * @param messageType Message type or null
+   * @param resource Resource name or null
+   */
+  void increment(String name, String messageType, String resource);
+
+}
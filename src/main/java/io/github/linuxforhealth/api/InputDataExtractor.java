@@ -6,6 +6,8 @@
 package io.github.linuxforhealth.api;
 
 import java.util.Map;
+import io.github.linuxforhealth.core.data.CompiledJexlExpression;
+import io.github.linuxforhealth.core.metrics.NoOpConversionMetrics;
 
 /**
  * Represents class that encapsulates how to extract information from a particular source.
@@ -45,6 +47,18 @@ public interface InputDataExtractor {
   EvaluationResult evaluateJexlExpression(String expression,
       Map<String, EvaluationResult> contextValues);
 
+  /**
+   * Evaluate JEXL Expression that was compiled when the template was loaded.
+   * 
+   * @param expression - compiled expression
+   * @param contextValues - Map of key value pair
+   * @return {@link EvaluationResult}
+   */
+  default EvaluationResult evaluateJexlExpression(CompiledJexlExpression expression,
+      Map<String, EvaluationResult> contextValues) {
+    return evaluateJexlExpression(expression.getExpression(), contextValues);
+  }
+
 
   /**
    * Return the name /identifier of this resource Example: for ADT_A01 message, return the message
@@ -61,4 +75,13 @@ public interface InputDataExtractor {
    * @return String
    */
   String getId();
+
+  /**
+   * Return the metrics the failures found while extracting data from this source are counted in.
+   *
+   * @return {@link ConversionMetrics}
+   */
+  default ConversionMetrics getMetrics() {
+    return NoOpConversionMetrics.INSTANCE;
+  }
 }
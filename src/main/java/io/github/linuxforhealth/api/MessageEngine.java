@@ -7,6 +7,7 @@ package io.github.linuxforhealth.api;
 
 import java.util.Map;
 import org.hl7.fhir.r4.model.Bundle;
+import io.github.linuxforhealth.core.metrics.NoOpConversionMetrics;
 import io.github.linuxforhealth.fhir.FHIRContext;
 
 /**
@@ -36,6 +37,15 @@ public interface MessageEngine {
    */
   FHIRContext getFHIRContext();
 
+  /**
+   * Return the metrics the conversion timings and counters are recorded to
+   *
+   * @return {@link ConversionMetrics}
+   */
+  default ConversionMetrics getMetrics() {
+    return NoOpConversionMetrics.INSTANCE;
+  }
+
 
   }
 
@@ -24,6 +24,7 @@ import org.apache.commons.configuration2.io.FileLocationStrategy;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import com.google.common.base.Preconditions;
 
 public class ConverterConfiguration {
   private static final Logger LOGGER = LoggerFactory.getLogger(ConverterConfiguration.class);
@@ -34,8 +35,16 @@ public class ConverterConfiguration {
   private static final String CONFIG_PROPERTIES = "config.properties";
   private static final String ADDITIONAL_CONCEPT_MAPS_FILE = "additional.conceptmap.file";
   private static final String ADDITIONAL_RESOURCES_LOCATION = "additional.resources.location";
+  private static final String TEMPLATE_SNAPSHOT_FILE = "template.snapshot.file";
+  private static final String TEMPLATE_LOAD_THREADS = "template.load.threads";
+  private static final String TERMINOLOGY_CACHE_SIZE = "terminology.cache.size";
+  private static final int DEFAULT_TERMINOLOGY_CACHE_SIZE = 10000;
+  private static final String EXPRESSION_PROFILING = "expression.profiling";
 
-  private static ConverterConfiguration configuration;
+  private static volatile ConverterConfiguration configuration;
+
+  // Zone requested for the conversion running on the current thread, overrides the configured zone.
+  private static final ThreadLocal<ZoneId> CONVERSION_ZONE_ID = new ThreadLocal<>();
 
   private String resourceFolder;
   private boolean resourcefromClassPath;
@@ -43,6 +52,10 @@ public class ConverterConfiguration {
   private ZoneId zoneId;
   private String additionalConceptmapFile;
   private String additionalResourcesLocation;
+  private String templateSnapshotFile;
+  private int templateLoadThreads;
+  private int terminologyCacheSize;
+  private boolean expressionProfiling;
 
   private ConverterConfiguration() {
     try {
@@ -92,6 +105,19 @@ public class ConverterConfiguration {
       // get additional resources location
       additionalResourcesLocation = config.getString(ADDITIONAL_RESOURCES_LOCATION, null);
 
+      // get the file the compiled message templates are cached in
+      templateSnapshotFile = config.getString(TEMPLATE_SNAPSHOT_FILE, null);
+
+      // get number of threads message templates are loaded on, if not found, default to one per processor
+      templateLoadThreads = Math.max(1,
+          config.getInt(TEMPLATE_LOAD_THREADS, Runtime.getRuntime().availableProcessors()));
+
+      // get number of terminology lookups that are cached, 0 turns the cache off
+      terminologyCacheSize = Math.max(0, config.getInt(TERMINOLOGY_CACHE_SIZE, DEFAULT_TERMINOLOGY_CACHE_SIZE));
+
+      // get whether the time spent in each expression is recorded, if not found, default to false
+      expressionProfiling = config.getBoolean(EXPRESSION_PROFILING, false);
+
     } catch (ConfigurationException e) {
       throw new IllegalStateException("Cannot read configuration for resource location", e);
     }
@@ -108,16 +134,44 @@ public class ConverterConfiguration {
   }
 
   public static ConverterConfiguration getInstance() {
-    if (configuration == null) {
-      configuration = new ConverterConfiguration();
+    ConverterConfiguration config = configuration;
+    if (config == null) {
+      synchronized (ConverterConfiguration.class) {
+        config = configuration;
+        if (config == null) {
+          config = new ConverterConfiguration();
+          configuration = config;
+        }
+      }
     }
-    return configuration;
+    return config;
   }
 
   public static void reset() {
     configuration = null;
   }
 
+  /**
+   * Reads the configuration again without replacing the current one, so it can be checked before
+   * it is used, see {@link #setInstance(ConverterConfiguration)}.
+   *
+   * @return The configuration read from config.properties
+   * @throws IllegalStateException - if the configuration cannot be read
+   */
+  public static ConverterConfiguration load() {
+    return new ConverterConfiguration();
+  }
+
+  /**
+   * Replaces the current configuration.
+   *
+   * @param config The configuration returned by {@link #getInstance()} from now on
+   */
+  public static void setInstance(ConverterConfiguration config) {
+    Preconditions.checkArgument(config != null, "config cannot be null");
+    configuration = config;
+  }
+
   public String getResourceFolder() {
     return resourceFolder;
   }
@@ -135,6 +189,10 @@ public class ConverterConfiguration {
   }
 
   public ZoneId getZoneId() {
+    ZoneId conversionZoneId = CONVERSION_ZONE_ID.get();
+    if (conversionZoneId != null) {
+      return conversionZoneId;
+    }
     return zoneId;
   }
 
@@ -149,6 +207,51 @@ public class ConverterConfiguration {
     }
   }
 
+  /**
+   * Overrides the ZoneId for conversions run on the current thread only, so concurrent conversions
+   * with different zones do not interfere with each other. Must be paired with
+   * {@link #clearConversionZoneId()}.
+   * 
+   * @param zoneText The zone id to use, invalid values are ignored.
+   */
+  public static void setConversionZoneId(String zoneText) {
+    try {
+      CONVERSION_ZONE_ID.set(ZoneId.of(zoneText));
+    } catch (DateTimeException e) {
+      LOGGER.warn("Cannot create ZoneId");
+      LOGGER.debug("Cannot create ZoneId from :" + zoneText, e);
+      CONVERSION_ZONE_ID.remove();
+    }
+  }
+
+  /**
+   * Overrides the ZoneId for conversions run on the current thread only, used to carry the override
+   * of a conversion to the threads working on it.
+   *
+   * @param zoneId The zone id to use, null removes the override.
+   */
+  public static void setConversionZoneId(ZoneId zoneId) {
+    if (zoneId != null) {
+      CONVERSION_ZONE_ID.set(zoneId);
+    } else {
+      CONVERSION_ZONE_ID.remove();
+    }
+  }
+
+  /**
+   * @return The ZoneId override for the current thread or null if there is none.
+   */
+  public static ZoneId getConversionZoneId() {
+    return CONVERSION_ZONE_ID.get();
+  }
+
+  /**
+   * Removes the ZoneId override for the current thread.
+   */
+  public static void clearConversionZoneId() {
+    CONVERSION_ZONE_ID.remove();
+  }
+
   public String getAdditionalConceptmapFile() {
     return additionalConceptmapFile;
   }
@@ -157,4 +260,20 @@ public class ConverterConfiguration {
     return additionalResourcesLocation;
   }
 
+  public String getTemplateSnapshotFile() {
+    return templateSnapshotFile;
+  }
+
+  public int getTemplateLoadThreads() {
+    return templateLoadThreads;
+  }
+
+  public int getTerminologyCacheSize() {
+    return terminologyCacheSize;
+  }
+
+  public boolean isExpressionProfiling() {
+    return expressionProfiling;
+  }
+
 }
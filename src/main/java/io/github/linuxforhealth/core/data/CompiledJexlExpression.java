@@ -0,0 +1,78 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.core.data;
+
+import java.io.Serializable;
+import org.apache.commons.jexl3.JexlExpression;
+
+/**
+ * JEXL expression or condition that has been validated and compiled once, so it can be evaluated
+ * many times without parsing it again. Instances are immutable and can be shared by threads
+ * evaluating the expression concurrently. An expression that cannot be compiled keeps the failure,
+ * which is thrown when the expression is evaluated.
+ *
+ * @see JexlEngineUtil#compile(String)
+ * @see JexlEngineUtil#compileCondition(String)
+ */
+public final class CompiledJexlExpression implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  private final String expression;
+  private final boolean condition;
+  // Namespace of the function the expression calls, must be one of the functions of the engine
+  private final transient String functionName;
+  private final transient JexlExpression compiled;
+  private final transient RuntimeException failure;
+
+  CompiledJexlExpression(String expression, boolean condition, String functionName,
+      JexlExpression compiled, RuntimeException failure) {
+    this.expression = expression;
+    this.condition = condition;
+    this.functionName = functionName;
+    this.compiled = compiled;
+    this.failure = failure;
+  }
+
+  /**
+   * @return The expression, as written in the template
+   */
+  public String getExpression() {
+    return expression;
+  }
+
+  boolean isCondition() {
+    return condition;
+  }
+
+  String getFunctionName() {
+    return functionName;
+  }
+
+  /**
+   * Returns the compiled expression.
+   *
+   * @return {@link JexlExpression}
+   * @throws IllegalArgumentException - if the expression is not valid
+   * @throws org.apache.commons.jexl3.JexlException - if the expression cannot be parsed
+   */
+  JexlExpression getCompiled() {
+    if (failure != null) {
+      throw failure;
+    }
+    return compiled;
+  }
+
+  // Compiled expressions are not serializable, the expression is compiled again when it is read.
+  private Object readResolve() {
+    return condition ? JexlEngineUtil.compileCondition(expression) : JexlEngineUtil.compile(expression);
+  }
+
+  @Override
+  public String toString() {
+    return expression;
+  }
+
+}
@@ -9,12 +9,12 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import org.apache.commons.jexl3.JexlBuilder;
 import org.apache.commons.jexl3.JexlContext;
 import org.apache.commons.jexl3.JexlEngine;
 import org.apache.commons.jexl3.JexlException;
 import org.apache.commons.jexl3.JexlExpression;
-import org.apache.commons.jexl3.MapContext;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.commons.text.StringTokenizer;
@@ -29,14 +29,17 @@ public final class JexlEngineUtil {
   private static final List<String> OPERATORS =
       Lists.newArrayList(">", "<", "==", "!=", ">=", "<=");
 
-  private JexlEngine jexl;
+  // Compiled expressions do not depend on the functions of an engine, so all engines share one.
+  private static final JexlEngine JEXL = new JexlBuilder().silent(false).debug(true).strict(true).create();
+
   private Map<String, Object> functions = new HashMap<>();
 
-  private Map<String, JexlExpression> exprCache = new HashMap<String, JexlExpression>();
+  // Shared by all threads converting messages, compiled expressions are immutable and thread-safe.
+  private final Map<String, CompiledJexlExpression> exprCache = new ConcurrentHashMap<>();
+  private final Map<String, CompiledJexlExpression> conditionCache = new ConcurrentHashMap<>();
 
   public JexlEngineUtil() {
-    jexl = new JexlBuilder().silent(false).debug(true).strict(true).create();
-    LOGGER.info("silent:{} , strict :{} ", jexl.isSilent(), jexl.isStrict());
+    LOGGER.info("silent:{} , strict :{} ", JEXL.isSilent(), JEXL.isStrict());
     functions.put(StringUtils.class.getSimpleName(), StringUtils.class);
     functions.put(NumberUtils.class.getSimpleName(), NumberUtils.class);
     functions.put(String.class.getSimpleName(), String.class);
@@ -46,7 +49,7 @@ public final class JexlEngineUtil {
 
   public JexlEngineUtil(Map<String, Object> functions) {
     this();
-    functions.putAll(functions);
+    this.functions.putAll(functions);
 
   }
 
@@ -56,30 +59,78 @@ public final class JexlEngineUtil {
     functions.put(name, function);
 
   }
-  
-  public Object evaluate(String jexlExp, Map<String, Object> context) {
-    Preconditions.checkArgument(StringUtils.isNotBlank(jexlExp), "jexlExp cannot be blank");
-    Preconditions.checkArgument(context != null, "context cannot be null");
+
+  /**
+   * Validates and compiles the expression. The expression must call a function, in the format
+   * Function.method(args), and cannot contain multiple statements. Whether the function is
+   * supported is checked when the expression is evaluated, against the functions of the engine
+   * evaluating it.
+   *
+   * @param jexlExp The expression
+   * @return {@link CompiledJexlExpression}, holding the failure if the expression is not valid
+   */
+  public static CompiledJexlExpression compile(String jexlExp) {
     String trimedJexlExp = StringUtils.trim(jexlExp);
-    // ensure that expression
-    validateExpression(trimedJexlExp);
+    String functionName = null;
+    try {
+      Preconditions.checkArgument(StringUtils.isNotBlank(trimedJexlExp), "jexlExp cannot be blank");
+      functionName = validateExpression(trimedJexlExp);
+      return new CompiledJexlExpression(trimedJexlExp, false, functionName,
+          JEXL.createExpression(trimedJexlExp), null);
+    } catch (IllegalArgumentException | JexlException e) {
+      return new CompiledJexlExpression(trimedJexlExp, false, functionName, null, e);
+    }
+  }
 
-    LOGGER.debug("Evaluating expression : {}", trimedJexlExp);
-    Map<String, Object> localContext = new HashMap<>(functions);
-    localContext.putAll(context);
+  /**
+   * Validates and compiles the condition. Only conditions in the format value1
+   * &lt;conditionOperator&gt; value2 are supported.
+   *
+   * @param jexlExp The condition
+   * @return {@link CompiledJexlExpression}, holding the failure if the condition is not valid
+   */
+  public static CompiledJexlExpression compileCondition(String jexlExp) {
+    String trimedJexlExp = StringUtils.trim(jexlExp);
+    try {
+      Preconditions.checkArgument(StringUtils.isNotBlank(trimedJexlExp), "jexlExp cannot be blank");
+      validateCondition(trimedJexlExp);
+      return new CompiledJexlExpression(trimedJexlExp, true, null, JEXL.createExpression(trimedJexlExp),
+          null);
+    } catch (IllegalArgumentException | JexlException e) {
+      return new CompiledJexlExpression(trimedJexlExp, true, null, null, e);
+    }
+  }
 
-    JexlExpression exp = exprCache.get(trimedJexlExp);
-    if(exp == null) {
-    	exp = jexl.createExpression(trimedJexlExp);
-    	exprCache.put(trimedJexlExp, exp);
+  public Object evaluate(String jexlExp, Map<String, ?> context) {
+    Preconditions.checkArgument(StringUtils.isNotBlank(jexlExp), "jexlExp cannot be blank");
+    return evaluate(exprCache.computeIfAbsent(StringUtils.trim(jexlExp), JexlEngineUtil::compile), context);
+  }
+
+  /**
+   * Evaluates the compiled expression.
+   *
+   * @param jexlExp The compiled expression
+   * @param context Values of the variables used by the expression, read without copying the map
+   * @return The value of the expression
+   * @throws IllegalArgumentException - if the expression is not valid or calls an unsupported
+   *         function
+   * @throws DataExtractionException - if the evaluation fails
+   */
+  public Object evaluate(CompiledJexlExpression jexlExp, Map<String, ?> context) {
+    Preconditions.checkArgument(jexlExp != null, "jexlExp cannot be null");
+    Preconditions.checkArgument(context != null, "context cannot be null");
+    // ensure that expression only calls the functions of this engine
+    if (jexlExp.getFunctionName() != null && functions.get(jexlExp.getFunctionName()) == null) {
+      throw new IllegalArgumentException("Expression has unsupported function: " + jexlExp.getFunctionName());
     }
-    
-    JexlContext jc = new MapContext();
-    localContext.entrySet().forEach(e -> jc.set(e.getKey(), e.getValue()));
+    JexlExpression exp = jexlExp.getCompiled();
+
+    LOGGER.debug("Evaluating expression : {}", jexlExp);
+    JexlContext jc = new VariablesJexlContext(context, functions);
     // Now evaluate the expression, getting the result
     try {
       Object obj = exp.evaluate(jc);
-      LOGGER.debug("Evaluated expression : {}, returning object {}", trimedJexlExp, obj);
+      LOGGER.debug("Evaluated expression : {}, returning object {}", jexlExp, obj);
       return obj;
     } catch (JexlException e) {
 
@@ -92,24 +143,31 @@ public final class JexlEngineUtil {
 
 
 
-  public boolean evaluateCondition(String jexlExp, Map<String, Object> context) {
+  public boolean evaluateCondition(String jexlExp, Map<String, ?> context) {
     Preconditions.checkArgument(StringUtils.isNotBlank(jexlExp), "jexlExp cannot be blank");
-    Preconditions.checkArgument(context != null, "context cannot be null");
-    String trimedJexlExp = StringUtils.trim(jexlExp);
-    // ensure that expression
-    validateCondition(trimedJexlExp);
+    return evaluateCondition(
+        conditionCache.computeIfAbsent(StringUtils.trim(jexlExp), JexlEngineUtil::compileCondition), context);
+  }
 
-    LOGGER.debug("Evaluating condiitional expression : {}", trimedJexlExp);
-    Map<String, Object> localContext = new HashMap<>(functions);
-    localContext.putAll(context);
+  /**
+   * Evaluates the compiled condition.
+   *
+   * @param jexlExp The compiled condition
+   * @param context Values of the variables used by the condition, read without copying the map
+   * @return The value of the condition
+   * @throws IllegalArgumentException - if the condition is not valid
+   */
+  public boolean evaluateCondition(CompiledJexlExpression jexlExp, Map<String, ?> context) {
+    Preconditions.checkArgument(jexlExp != null && jexlExp.isCondition(), "jexlExp must be a condition");
+    Preconditions.checkArgument(context != null, "context cannot be null");
+    JexlExpression exp = jexlExp.getCompiled();
 
-    JexlExpression exp = jexl.createExpression(trimedJexlExp);
-    JexlContext jc = new MapContext();
-    localContext.entrySet().forEach(e -> jc.set(e.getKey(), e.getValue()));
+    LOGGER.debug("Evaluating condiitional expression : {}", jexlExp);
+    JexlContext jc = new VariablesJexlContext(context, functions);
     // Now evaluate the expression, getting the result
 
     boolean obj = (boolean) exp.evaluate(jc);
-    LOGGER.debug("Evaluated expression : {}, returning object {}", trimedJexlExp, obj);
+    LOGGER.debug("Evaluated expression : {}, returning object {}", jexlExp, obj);
       return obj;
 
 
@@ -136,19 +194,20 @@ public final class JexlEngineUtil {
     }
   }
 
-  private void validateExpression(String jexlExp) {
+  // Returns the function the expression calls
+  private static String validateExpression(String jexlExp) {
 
     StringTokenizer stk = new StringTokenizer(jexlExp, ".").setIgnoreEmptyTokens(true);
     String tok = stk.nextToken();
     // format of expressions should be Function.method
     // if only one part is specified like Function then this is not a valid expression.
-    if (stk.getTokenList().size() < 2 || functions.get(tok) == null) {
+    if (stk.getTokenList().size() < 2) {
       throw new IllegalArgumentException("Expression has unsupported function: " + tok);
     }
     if (jexlExp.contains(";")) {
       throw new IllegalArgumentException(
           "Expression cannot contain character ; Expression: " + jexlExp);
     }
-
+    return tok;
   }
 }
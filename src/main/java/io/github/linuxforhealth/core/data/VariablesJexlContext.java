@@ -0,0 +1,54 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.core.data;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.commons.jexl3.JexlContext;
+
+/**
+ * {@link JexlContext} that reads the variables of an expression directly from the evaluation
+ * context and the functions of the engine, instead of copying both into a new context for each
+ * evaluation. Variables take precedence over functions with the same name. Values assigned by the
+ * expression are kept in this context only and never change the evaluation context.
+ */
+final class VariablesJexlContext implements JexlContext {
+
+  private final Map<String, ?> variables;
+  private final Map<String, Object> functions;
+  private Map<String, Object> assignedVariables;
+
+  VariablesJexlContext(Map<String, ?> variables, Map<String, Object> functions) {
+    this.variables = variables;
+    this.functions = functions;
+  }
+
+  @Override
+  public Object get(String name) {
+    if (assignedVariables != null && assignedVariables.containsKey(name)) {
+      return assignedVariables.get(name);
+    }
+    if (variables.containsKey(name)) {
+      return variables.get(name);
+    }
+    return functions.get(name);
+  }
+
+  @Override
+  public void set(String name, Object value) {
+    if (assignedVariables == null) {
+      assignedVariables = new HashMap<>();
+    }
+    assignedVariables.put(name, value);
+  }
+
+  @Override
+  public boolean has(String name) {
+    return (assignedVariables != null && assignedVariables.containsKey(name))
+        || variables.containsKey(name) || functions.containsKey(name);
+  }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.core.expression;
+
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import com.google.common.base.Preconditions;
+import io.github.linuxforhealth.api.EvaluationResult;
+
+/**
+ * Evaluation context that adds a scope on top of a parent context instead of copying it. Creating a
+ * scope does not copy any values; values put in the scope are only visible in the scope and the
+ * scopes created from it, the parent context is never changed. Looking up a value checks the scope
+ * first and then the parent contexts.
+ * <p>
+ * The parent context must not change while the scope is in use, values added to the parent are
+ * visible in the scope. Values cannot be removed from a scope. Iterating over a scope, or getting its
+ * size, combines the scope with its parent contexts and is as expensive as copying them.
+ */
+public final class ScopedContextMap extends AbstractMap<String, EvaluationResult> {
+
+  private final Map<String, EvaluationResult> parent;
+  private final Map<String, EvaluationResult> values = new HashMap<>();
+
+  /**
+   * Creates a scope on top of the parent context.
+   *
+   * @param parent The parent context
+   */
+  public ScopedContextMap(Map<String, EvaluationResult> parent) {
+    Preconditions.checkArgument(parent != null, "parent context cannot be null");
+    this.parent = parent;
+  }
+
+  @Override
+  public EvaluationResult get(Object key) {
+    Map<String, EvaluationResult> context = this;
+    while (context instanceof ScopedContextMap) {
+      ScopedContextMap scope = (ScopedContextMap) context;
+      EvaluationResult value = scope.values.get(key);
+      if (value != null || scope.values.containsKey(key)) {
+        return value;
+      }
+      context = scope.parent;
+    }
+    return context.get(key);
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    Map<String, EvaluationResult> context = this;
+    while (context instanceof ScopedContextMap) {
+      ScopedContextMap scope = (ScopedContextMap) context;
+      if (scope.values.containsKey(key)) {
+        return true;
+      }
+      context = scope.parent;
+    }
+    return context.containsKey(key);
+  }
+
+  @Override
+  public EvaluationResult put(String key, EvaluationResult value) {
+    EvaluationResult previous = get(key);
+    values.put(key, value);
+    return previous;
+  }
+
+  @Override
+  public void putAll(Map<? extends String, ? extends EvaluationResult> m) {
+    values.putAll(m);
+  }
+
+  @Override
+  public EvaluationResult remove(Object key) {
+    throw new UnsupportedOperationException("Values cannot be removed from a scoped context");
+  }
+
+  @Override
+  public void clear() {
+    throw new UnsupportedOperationException("Values cannot be removed from a scoped context");
+  }
+
+  @Override
+  public boolean isEmpty() {
+    Map<String, EvaluationResult> context = this;
+    while (context instanceof ScopedContextMap) {
+      ScopedContextMap scope = (ScopedContextMap) context;
+      if (!scope.values.isEmpty()) {
+        return false;
+      }
+      context = scope.parent;
+    }
+    return context.isEmpty();
+  }
+
+  @Override
+  public Set<Entry<String, EvaluationResult>> entrySet() {
+    return Collections.unmodifiableMap(flatten()).entrySet();
+  }
+
+  // Combines the scopes, starting from the outermost context so inner scopes override its values
+  private Map<String, EvaluationResult> flatten() {
+    Deque<Map<String, EvaluationResult>> scopes = new ArrayDeque<>();
+    Map<String, EvaluationResult> context = this;
+    while (context instanceof ScopedContextMap) {
+      ScopedContextMap scope = (ScopedContextMap) context;
+      scopes.push(scope.values);
+      context = scope.parent;
+    }
+    Map<String, EvaluationResult> flattened = new HashMap<>(context);
+    scopes.forEach(flattened::putAll);
+    return flattened;
+  }
+
+}
@@ -5,13 +5,15 @@
  */
 package io.github.linuxforhealth.core.expression.condition;
 
+import java.io.Serializable;
 import java.util.Map;
 import io.github.linuxforhealth.api.Condition;
 import io.github.linuxforhealth.api.EvaluationResult;
 import io.github.linuxforhealth.core.expression.ContextValueUtils;
 import io.github.linuxforhealth.core.expression.VariableUtils;
 
-public class CheckNotNull implements Condition {
+public class CheckNotNull implements Condition, Serializable {
+  private static final long serialVersionUID = 1L;
 
   public static final String NOT_NULL = "NOT_NULL";
   private String var1;
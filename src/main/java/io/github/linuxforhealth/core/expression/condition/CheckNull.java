@@ -5,13 +5,16 @@
  */
 package io.github.linuxforhealth.core.expression.condition;
 
+import java.io.Serializable;
 import java.util.Map;
 import io.github.linuxforhealth.api.Condition;
 import io.github.linuxforhealth.api.EvaluationResult;
 import io.github.linuxforhealth.core.expression.ContextValueUtils;
 import io.github.linuxforhealth.core.expression.VariableUtils;
 
-public class CheckNull implements Condition {
+public class CheckNull implements Condition, Serializable {
+  private static final long serialVersionUID = 1L;
+
   public static final String NULL = "NULL";
   private String var1;
   private boolean useGroup;
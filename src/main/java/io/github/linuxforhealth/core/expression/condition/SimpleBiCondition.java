@@ -5,13 +5,15 @@
  */
 package io.github.linuxforhealth.core.expression.condition;
 
+import java.io.Serializable;
 import java.util.Map;
 import io.github.linuxforhealth.api.Condition;
 import io.github.linuxforhealth.api.EvaluationResult;
 import io.github.linuxforhealth.core.expression.VariableUtils;
 import io.github.linuxforhealth.hl7.data.Hl7DataHandlerUtil;
 
-public class SimpleBiCondition implements Condition {
+public class SimpleBiCondition implements Condition, Serializable {
+  private static final long serialVersionUID = 1L;
 
   private String var1;
 
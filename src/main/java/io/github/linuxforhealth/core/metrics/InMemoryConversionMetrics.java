@@ -0,0 +1,166 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.core.metrics;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.common.collect.ImmutableMap;
+
+import io.github.linuxforhealth.api.ConversionMetrics;
+
+/**
+ * Keeps the timings and counters of conversions in memory, by name, message type and resource. Meant
+ * for tests and for looking at where the time of a batch of conversions goes; the values grow until
+ * {@link #reset()} is called.
+ */
+public class InMemoryConversionMetrics implements ConversionMetrics {
+
+  private final Map<MetricKey, Timer> timers = new ConcurrentHashMap<>();
+  private final Map<MetricKey, LongAdder> counters = new ConcurrentHashMap<>();
+
+  @Override
+  public void recordTime(String name, String messageType, String resource, long nanos) {
+    timers.computeIfAbsent(new MetricKey(name, messageType, resource), k -> new Timer()).record(nanos);
+  }
+
+  @Override
+  public void increment(String name, String messageType, String resource) {
+    counters.computeIfAbsent(new MetricKey(name, messageType, resource), k -> new LongAdder())
+        .increment();
+  }
+
+  /**
+   * @param name Counter name
+   * @param messageType Message type or null
+   * @param resource Resource name or null
+   * @return Value of the counter, 0 if it was never incremented
+   */
+  public long getCount(String name, String messageType, String resource) {
+    LongAdder counter = counters.get(new MetricKey(name, messageType, resource));
+    return counter != null ? counter.sum() : 0;
+  }
+
+  /**
+   * @param name Timing name
+   * @param messageType Message type or null
+   * @param resource Resource name or null
+   * @return Timer with the times recorded, null if no time was recorded
+   */
+  public Timer getTimer(String name, String messageType, String resource) {
+    return timers.get(new MetricKey(name, messageType, resource));
+  }
+
+  /**
+   * @return Values of all the counters
+   */
+  public Map<MetricKey, Long> getCounters() {
+    ImmutableMap.Builder<MetricKey, Long> values = ImmutableMap.builder();
+    counters.forEach((key, counter) -> values.put(key, counter.sum()));
+    return values.build();
+  }
+
+  /**
+   * @return All the timers
+   */
+  public Map<MetricKey, Timer> getTimers() {
+    return ImmutableMap.copyOf(timers);
+  }
+
+  /**
+   * Removes all the timings and counters.
+   */
+  public void reset() {
+    timers.clear();
+    counters.clear();
+  }
+
+  /**
+   * Times recorded for one name, message type and resource.
+   */
+  public static final class Timer {
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    private void record(long nanos) {
+      count.increment();
+      totalNanos.add(nanos);
+      maxNanos.accumulate(nanos);
+    }
+
+    public long getCount() {
+      return count.sum();
+    }
+
+    public long getTotalNanos() {
+      return totalNanos.sum();
+    }
+
+    public long getMaxNanos() {
+      return maxNanos.get();
+    }
+
+    @Override
+    public String toString() {
+      return "count=" + getCount() + ", totalNanos=" + getTotalNanos() + ", maxNanos=" + getMaxNanos();
+    }
+  }
+
+  /**
+   * Name and tags of a timing or counter.
+   */
+  public static final class MetricKey {
+    private final String name;
+    private final String messageType;
+    private final String resource;
+
+    public MetricKey(String name, String messageType, String resource) {
+      this.name = name;
+      this.messageType = messageType;
+      this.resource = resource;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public String getMessageType() {
+      return messageType;
+    }
+
+    public String getResource() {
+      return resource;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof MetricKey)) {
+        return false;
+      }
+      MetricKey other = (MetricKey) obj;
+      return Objects.equals(name, other.name) && Objects.equals(messageType, other.messageType)
+          && Objects.equals(resource, other.resource);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(name, messageType, resource);
+    }
+
+    @Override
+    public String toString() {
+      return name + "{messageType=" + messageType + ", resource=" + resource + "}";
+    }
+  }
+
+}
@@ -0,0 +1,29 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.core.metrics;
+
+import io.github.linuxforhealth.api.ConversionMetrics;
+
+/**
+ * Metrics that record nothing, used when no metrics are set in the converter options.
+ */
+public final class NoOpConversionMetrics implements ConversionMetrics {
+
+  public static final NoOpConversionMetrics INSTANCE = new NoOpConversionMetrics();
+
+  private NoOpConversionMetrics() {}
+
+  @Override
+  public void recordTime(String name, String messageType, String resource, long nanos) {
+    // Nothing recorded
+  }
+
+  @Override
+  public void increment(String name, String messageType, String resource) {
+    // Nothing recorded
+  }
+
+}
@@ -50,6 +50,11 @@ public class CodingSystem {
     return StringUtils.upperCase(id, Locale.ENGLISH);
   }
 
+  // Id as written in the mapping file, before it is upper cased
+  String getDefinedId() {
+    return id;
+  }
+
 
   public String getDescription() {
     return description;
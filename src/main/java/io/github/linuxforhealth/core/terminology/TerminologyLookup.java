@@ -6,6 +6,9 @@
 package io.github.linuxforhealth.core.terminology;
 
 import java.util.Map;
+import java.util.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableMap;
 import com.ibm.fhir.model.resource.CodeSystem;
 import com.ibm.fhir.model.type.Code;
@@ -13,19 +16,53 @@ import com.ibm.fhir.model.type.Uri;
 import com.ibm.fhir.registry.FHIRRegistry;
 import com.ibm.fhir.term.service.FHIRTermService;
 import com.ibm.fhir.term.service.LookupOutcome;
+import io.github.linuxforhealth.core.config.ConverterConfiguration;
 
+/**
+ * Looks up the display of codes in the FHIR terminology service.
+ * 
+ * Lookups are cached by coding system and code, including lookups of codes that are not found. The
+ * number of cached lookups is set by terminology.cache.size in the converter configuration; the least
+ * recently used lookups are evicted first.
+ */
 public class TerminologyLookup {
 
     private static final FHIRRegistry REGISTRY = FHIRRegistry.getInstance();
     private static final FHIRTermService TERMINOLOGY_SEVICE = FHIRTermService.getInstance();
-    private static TerminologyLookup termInstance;
+    private static volatile TerminologyLookup termInstance;
     static Map<String, String> alternativeCodingSystemMapping = ImmutableMap.of("v2-0005", "v3-Race", "CDCREC",
             "v3-Race");
+    private static volatile Cache<LookupKey, Optional<SimpleCode>> lookupCache;
 
     private TerminologyLookup() {
     }
 
+    /**
+     * Looks up a code in a coding system.
+     * 
+     * @param system Coding system name or URL
+     * @param value Code
+     * @return {@link SimpleCode} with the display of the code, a null display if the code is not in the
+     *         registered coding system, an empty display if the coding system is not registered, or null
+     *         if the coding system is unknown
+     */
     public static SimpleCode lookup(String system, String value) {
+        Cache<LookupKey, Optional<SimpleCode>> cache = getCache();
+        if (cache == null || system == null || value == null) {
+            return lookupCode(system, value);
+        }
+        LookupKey key = new LookupKey(system, value);
+        Optional<SimpleCode> cached = cache.getIfPresent(key);
+        if (cached == null) {
+            cached = Optional.ofNullable(lookupCode(system, value));
+            cache.put(key, cached);
+        }
+        // Callers may change the version of the returned code, so each gets its own copy
+        return cached.map(code -> new SimpleCode(code.getCode(), code.getSystem(), code.getDisplay()))
+                .orElse(null);
+    }
+
+    private static SimpleCode lookupCode(String system, String value) {
         String codingSystemName = system;
         if (alternativeCodingSystemMapping.containsKey(system)) {
             codingSystemName = alternativeCodingSystemMapping.get(system);
@@ -59,7 +96,99 @@ public class TerminologyLookup {
 
     public static void init() {
         if (termInstance == null) {
-            termInstance = new TerminologyLookup();
+            synchronized (TerminologyLookup.class) {
+                if (termInstance == null) {
+                    termInstance = new TerminologyLookup();
+                }
+            }
+        }
+        getCache();
+    }
+
+    /**
+     * Removes all cached lookups and their statistics. The cache is rebuilt with the cache size of the
+     * current converter configuration on the next lookup.
+     */
+    public static void clearCache() {
+        synchronized (TerminologyLookup.class) {
+            lookupCache = null;
+        }
+    }
+
+    /**
+     * @return Number of lookups answered from the cache
+     */
+    public static long getCacheHitCount() {
+        Cache<LookupKey, Optional<SimpleCode>> cache = lookupCache;
+        return cache != null ? cache.stats().hitCount() : 0;
+    }
+
+    /**
+     * @return Number of lookups that went to the terminology service
+     */
+    public static long getCacheMissCount() {
+        Cache<LookupKey, Optional<SimpleCode>> cache = lookupCache;
+        return cache != null ? cache.stats().missCount() : 0;
+    }
+
+    /**
+     * @return Number of lookups evicted from the cache because it was full
+     */
+    public static long getCacheEvictionCount() {
+        Cache<LookupKey, Optional<SimpleCode>> cache = lookupCache;
+        return cache != null ? cache.stats().evictionCount() : 0;
+    }
+
+    /**
+     * @return Number of lookups currently cached
+     */
+    public static long getCacheSize() {
+        Cache<LookupKey, Optional<SimpleCode>> cache = lookupCache;
+        return cache != null ? cache.size() : 0;
+    }
+
+    private static Cache<LookupKey, Optional<SimpleCode>> getCache() {
+        Cache<LookupKey, Optional<SimpleCode>> cache = lookupCache;
+        if (cache == null) {
+            int size = ConverterConfiguration.getInstance().getTerminologyCacheSize();
+            if (size == 0) {
+                return null;
+            }
+            synchronized (TerminologyLookup.class) {
+                cache = lookupCache;
+                if (cache == null) {
+                    cache = CacheBuilder.newBuilder().maximumSize(size).recordStats().build();
+                    lookupCache = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    private static final class LookupKey {
+        private final String system;
+        private final String value;
+
+        private LookupKey(String system, String value) {
+            this.system = system;
+            this.value = value;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof LookupKey)) {
+                return false;
+            }
+            LookupKey other = (LookupKey) obj;
+            return system.equals(other.system) && value.equals(other.value);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * system.hashCode() + value.hashCode();
         }
     }
 
@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2020, 2021
+ * (C) Copyright IBM Corp. 2020, 2022
  *
  * SPDX-License-Identifier: Apache-2.0
  */
@@ -9,12 +9,14 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.StringUtils;
 
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.google.common.collect.ImmutableMap;
 
 import io.github.linuxforhealth.core.Constants;
 import io.github.linuxforhealth.core.ObjectMapperUtil;
@@ -24,12 +26,15 @@ import io.github.linuxforhealth.hl7.resource.ResourceReader;
 /**
  * Utility class for mapping HL7 codes from tables
  * 
- * Load tables from files into a cache; provides lookup capability.
+ * Load tables from files into an immutable snapshot; provides lookup capability.
  * Use Constants (EXTENSION_URL_MAPPING, CODING_SYSTEM_MAPPING) for urlType.
+ * 
+ * Lookups read the current snapshot without locking. Reloading builds a new snapshot and replaces the
+ * current one in a single step, so concurrent lookups see either the old or the new mappings, never a
+ * partly loaded one.
  */
 public class UrlLookup {
 
-    static Map<String, Map<String, CodingSystem>> urlMaps = new HashMap<>(); // key is urlType
     static Map<String, String> urlMappingPaths; // key=urlType, value=resource mapping path
     static {
         urlMappingPaths = new HashMap<>();
@@ -37,6 +42,9 @@ public class UrlLookup {
         urlMappingPaths.put(Constants.EXTENSION_URL_MAPPING, Constants.EXTENSION_URL_MAPPING_PATH);
     }
 
+    // key is urlType, value maps the upper cased id, and the id as written, to the url
+    private static volatile Map<String, Map<String, String>> urlMaps;
+
     /**
      * Get the extension URL
      * 
@@ -79,15 +87,17 @@ public class UrlLookup {
      * @return System result
      */
     public static String getUrl(String urlType, String value) {
-        Map<String, CodingSystem> urlMap = getUrlMap(urlType);
+        Map<String, String> urlMap = getUrlMaps().get(urlType);
         if (StringUtils.startsWith(value, "http://") || StringUtils.startsWith(value, "https://")
                 || StringUtils.startsWith(value, "urn")) {
             return value;
-        } else if (value != null) {
-            CodingSystem system = urlMap.get(StringUtils.upperCase(value));
-            if (system != null) {
-                return system.getUrl();
+        } else if (value != null && urlMap != null) {
+            // Ids are usually written the same way as in the mapping file, which needs no upper casing
+            String url = urlMap.get(value);
+            if (url == null) {
+                url = urlMap.get(value.toUpperCase(Locale.ENGLISH));
             }
+            return url;
         }
         return null;
     }
@@ -96,36 +106,95 @@ public class UrlLookup {
      * Reloads the urls from the file.
      */
     public static void reset() {
-        urlMaps.clear();
-        getUrlMap(Constants.CODING_SYSTEM_MAPPING);
-        getUrlMap(Constants.EXTENSION_URL_MAPPING);
+        synchronized (UrlLookup.class) {
+            urlMaps = load(ConverterConfiguration.getInstance(), ResourceReader.getInstance());
+        }
+        TerminologyLookup.clearCache();
+    }
+
+    /**
+     * Loads the urls of all the url types without changing the current ones, so a configuration can
+     * be checked before it is used, see {@link #setUrls(Map)}.
+     * 
+     * @param configuration Configuration giving the additional concept map file
+     * @param reader Reader of the mapping files
+     * @return Urls by url type
+     * @throws IllegalArgumentException if a mapping file cannot be read
+     */
+    public static Map<String, Map<String, String>> load(ConverterConfiguration configuration,
+            ResourceReader reader) {
+        Map<String, Map<String, String>> maps = new HashMap<>();
+        for (String urlType : urlMappingPaths.keySet()) {
+            maps.put(urlType, loadUrlMap(urlType, configuration, reader));
+        }
+        return ImmutableMap.copyOf(maps);
+    }
+
+    /**
+     * Replaces the current urls.
+     * 
+     * @param maps Urls by url type, as returned by {@link #load(ConverterConfiguration, ResourceReader)}
+     */
+    public static void setUrls(Map<String, Map<String, String>> maps) {
+        synchronized (UrlLookup.class) {
+            urlMaps = ImmutableMap.copyOf(maps);
+        }
+        TerminologyLookup.clearCache();
     }
 
     public static void init() {
-        getUrlMap(Constants.CODING_SYSTEM_MAPPING);
-        getUrlMap(Constants.EXTENSION_URL_MAPPING);
+        getUrlMaps();
     }
 
+    /**
+     * Reloads the urls of one url type from the file, keeping the urls of the other types.
+     * 
+     * @param urlType Which mapping type to reload
+     */
     public static void reset(String urlType) {
-        urlMaps.remove(urlType);
-        getUrlMap(urlType);
+        synchronized (UrlLookup.class) {
+            Map<String, Map<String, String>> maps = new HashMap<>(getUrlMaps());
+            maps.put(urlType,
+                    loadUrlMap(urlType, ConverterConfiguration.getInstance(), ResourceReader.getInstance()));
+            urlMaps = ImmutableMap.copyOf(maps);
+        }
+        TerminologyLookup.clearCache();
+    }
+
+    private static Map<String, Map<String, String>> getUrlMaps() {
+        Map<String, Map<String, String>> maps = urlMaps;
+        if (maps == null) {
+            synchronized (UrlLookup.class) {
+                if (urlMaps == null) {
+                    reset();
+                }
+                maps = urlMaps;
+            }
+        }
+        return maps;
     }
 
-    private static Map<String, CodingSystem> getUrlMap(String urlKey) {
-        if (urlMaps.get(urlKey) == null) {
-            Map<String, CodingSystem> urls = loadFromFile(urlKey);
-            urls.putAll(loadAdditionalFromFile());
-            urlMaps.put(urlKey, urls);
+    private static Map<String, String> loadUrlMap(String urlKey, ConverterConfiguration configuration,
+            ResourceReader reader) {
+        Map<String, CodingSystem> systems = loadFromFile(urlKey, reader);
+        systems.putAll(loadAdditionalFromFile(configuration));
+        Map<String, String> urls = new HashMap<>();
+        for (CodingSystem system : systems.values()) {
+            urls.put(system.getDefinedId(), system.getUrl());
+        }
+        // Upper cased ids win over an id as written that differs only in case
+        for (Map.Entry<String, CodingSystem> system : systems.entrySet()) {
+            urls.put(system.getKey(), system.getValue().getUrl());
         }
-        return urlMaps.get(urlKey);
+        return ImmutableMap.copyOf(urls);
     }
 
     // ConverterConfiguration
-    private static Map<String, CodingSystem> loadFromFile(String urlKey) {
+    private static Map<String, CodingSystem> loadFromFile(String urlKey, ResourceReader reader) {
         TypeReference<List<CodingSystem>> typeRef = new TypeReference<List<CodingSystem>>() {
         };
         try {
-            String content = ResourceReader.getInstance().getResourceInHl7Folder(urlMappingPaths.get(urlKey));
+            String content = reader.getResourceInHl7Folder(urlMappingPaths.get(urlKey));
             List<CodingSystem> systems = ObjectMapperUtil.getYAMLInstance().readValue(content, typeRef);
             return systems.stream().collect(Collectors.toMap(CodingSystem::getId, codeSystem -> codeSystem));
 
@@ -134,10 +203,10 @@ public class UrlLookup {
         }
     }
 
-    private static Map<String, CodingSystem> loadAdditionalFromFile() {
+    private static Map<String, CodingSystem> loadAdditionalFromFile(ConverterConfiguration configuration) {
         TypeReference<List<CodingSystem>> typeRef = new TypeReference<List<CodingSystem>>() {
         };
-        String filePath = ConverterConfiguration.getInstance().getAdditionalConceptmapFile();
+        String filePath = configuration.getAdditionalConceptmapFile();
         if (StringUtils.isNotBlank(filePath)) {
             try {
                 FileInputStream fis = new FileInputStream(filePath);
@@ -5,21 +5,31 @@
  */
 package io.github.linuxforhealth.fhir;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
 
 import org.apache.commons.lang3.StringUtils;
+import org.hl7.fhir.common.hapi.validation.support.CachingValidationSupport;
 import org.hl7.fhir.common.hapi.validation.validator.FhirInstanceValidator;
 import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Bundle.BundleEntryComponent;
+import org.hl7.fhir.r4.model.Bundle.BundleType;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Resource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.parser.IParser;
 import ca.uhn.fhir.validation.FhirValidator;
-import ca.uhn.fhir.validation.IValidatorModule;
 import ca.uhn.fhir.validation.ResultSeverityEnum;
 import ca.uhn.fhir.validation.SingleValidationMessage;
 import ca.uhn.fhir.validation.ValidationResult;
@@ -30,8 +40,9 @@ public class FHIRContext {
 
     private static final FhirContext CTX = FhirContext.forR4();
     private IParser parser;
-    private static FhirValidator validator;
+    private boolean prettyPrint;
     private boolean validateResource;
+    private boolean parallelValidation;
     private HashMap<String, String> properties;
 
     /**
@@ -39,17 +50,37 @@ public class FHIRContext {
      * 
      * @param isPrettyPrint Should PrettyPrint be applied to output formatting
      * @param validateResource Should the output be FHIR validated
+     * @param parallelValidation Should the bundle entries be validated in parallel
      * @param properties Run-time properties in a Map of Key / Value String pairs
      * 
      */
-    public FHIRContext(boolean isPrettyPrint, boolean validateResource, Map<String,String> properties) {
+    public FHIRContext(boolean isPrettyPrint, boolean validateResource, boolean parallelValidation,
+            Map<String, String> properties) {
         parser = CTX.newJsonParser();
         parser.setPrettyPrint(isPrettyPrint);
+        this.prettyPrint = isPrettyPrint;
         this.validateResource = validateResource;
+        this.parallelValidation = parallelValidation;
         this.properties = (HashMap<String, String>) properties;
+        if (validateResource) {
+            // Loads and warms the shared validator the first time, before any bundle is converted
+            warmUpValidator();
+        }
 
     }
 
+    /**
+     * Constructor for FHIRContext
+     * 
+     * @param isPrettyPrint Should PrettyPrint be applied to output formatting
+     * @param validateResource Should the output be FHIR validated
+     * @param properties Run-time properties in a Map of Key / Value String pairs
+     * 
+     */
+    public FHIRContext(boolean isPrettyPrint, boolean validateResource, Map<String,String> properties) {
+        this(isPrettyPrint, validateResource, false, properties);
+    }
+
     /**
      * Constructor for FHIRContext
      * 
@@ -73,9 +104,24 @@ public class FHIRContext {
         return CTX;
     }
 
+    public boolean isPrettyPrint() {
+        return prettyPrint;
+    }
+
+    /**
+     * @return Validator shared by all the threads, loaded and warmed up on first use
+     */
     public static FhirValidator getValidator() {
-        initValidator();
-        return validator;
+        return SharedValidator.VALIDATOR;
+    }
+
+    /**
+     * Loads the shared validator and validates a small bundle with it, so the structure definitions
+     * are parsed and cached before the first bundle is validated. Only the first call does anything;
+     * applications can call it at startup to keep the cost out of the first conversion.
+     */
+    public static void warmUpValidator() {
+        getValidator();
     }
 
     public Map<String, String> getProperties() {
@@ -86,9 +132,21 @@ public class FHIRContext {
         return this.parser.encodeResourceToString(bundle);
     }
 
+    public void encodeResourceToWriter(Bundle bundle, Writer writer) throws IOException {
+        this.parser.encodeResourceToWriter(bundle, writer);
+    }
+
+    public boolean isValidateResource() {
+        return validateResource;
+    }
+
+    public boolean isParallelValidation() {
+        return parallelValidation;
+    }
+
     public void validate(Bundle bundle) {
         if (validateResource) {
-            ValidationResult result = getValidator().validateWithResult(bundle);
+            ValidationResult result = validateWithResult(bundle);
             // The result object now contains the validation results
             List<String> validationIssues = new ArrayList<>();
             for (SingleValidationMessage next : result.getMessages()) {
@@ -113,14 +171,122 @@ public class FHIRContext {
 
     }
 
-    private static void initValidator() {
-        if (validator == null) {
-            validator = CTX.newValidator();
-            // Create a validation module and register it
-            IValidatorModule module = new FhirInstanceValidator(CTX);
-            validator.registerValidatorModule(module);
+    /**
+     * Validates the bundle on the validation threads, so the conversion thread does not wait for
+     * it. Unlike {@link #validate(Bundle)}, the bundle is validated whether or not validateResource
+     * is set, and the issues found are returned rather than thrown.
+     *
+     * @param bundle Bundle to validate, it must not be changed until the validation completes
+     * @return Future completed with the validation result
+     */
+    public CompletableFuture<ValidationResult> validateAsync(Bundle bundle) {
+        return CompletableFuture.supplyAsync(() -> validateWithResult(bundle), ValidationPool.POOL);
+    }
+
+    /**
+     * Validates the bundle with the shared validator. When parallelValidation is set, the resource of
+     * each entry is validated on its own in parallel, and then the bundle without its entries, except
+     * the MessageHeader or Composition a message or document starts with; checks that span entries,
+     * such as references between them, are not made in that case.
+     */
+    private ValidationResult validateWithResult(Bundle bundle) {
+        if (!parallelValidation || bundle.getEntry().size() < 2) {
+            return getValidator().validateWithResult(bundle);
         }
 
+        List<CompletableFuture<List<SingleValidationMessage>>> entryResults = new ArrayList<>();
+        List<BundleEntryComponent> entries = bundle.getEntry();
+        // The first entry of a message or a document is validated with the bundle, see withoutEntries
+        int first = hasHeaderEntry(bundle) ? 1 : 0;
+        for (int i = first; i < entries.size(); i++) {
+            Resource resource = entries.get(i).getResource();
+            if (resource != null) {
+                String location = "Bundle.entry[" + i + "].resource";
+                entryResults.add(CompletableFuture.supplyAsync(
+                        () -> validateEntry(resource, location), ValidationPool.POOL));
+            }
+        }
+
+        List<SingleValidationMessage> messages = new ArrayList<>(
+                getValidator().validateWithResult(withoutEntries(bundle)).getMessages());
+        try {
+            entryResults.forEach(r -> messages.addAll(r.join()));
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+        return new ValidationResult(CTX, messages);
+    }
+
+    private static List<SingleValidationMessage> validateEntry(Resource resource, String location) {
+        List<SingleValidationMessage> messages = getValidator().validateWithResult(resource).getMessages();
+        // Locations of the issues are given from the bundle, as when the whole bundle is validated
+        String resourceType = resource.fhirType();
+        for (SingleValidationMessage message : messages) {
+            String messageLocation = message.getLocationString();
+            if (messageLocation == null) {
+                message.setLocationString(location);
+            } else if (messageLocation.startsWith(resourceType)) {
+                message.setLocationString(location + messageLocation.substring(resourceType.length()));
+            } else {
+                message.setLocationString(location + "." + messageLocation);
+            }
+        }
+        return messages;
+    }
+
+    // Message and document bundles must start with their MessageHeader or Composition entry
+    private static boolean hasHeaderEntry(Bundle bundle) {
+        return bundle.getType() == BundleType.MESSAGE || bundle.getType() == BundleType.DOCUMENT;
+    }
+
+    private static Bundle withoutEntries(Bundle bundle) {
+        Bundle header = new Bundle();
+        header.setIdElement(bundle.getIdElement());
+        header.setMeta(bundle.getMeta());
+        header.setIdentifier(bundle.getIdentifier());
+        header.setType(bundle.getType());
+        header.setTimestampElement(bundle.getTimestampElement());
+        if (hasHeaderEntry(bundle) && !bundle.getEntry().isEmpty()) {
+            header.addEntry(bundle.getEntryFirstRep());
+        }
+        return header;
+    }
+
+    /**
+     * Validator shared by all the threads. The class is initialized, so the validator is created and
+     * warmed up, the first time it is used; the JVM makes sure that only happens once. The structure
+     * definitions and the terminology lookups of the validation support are cached for all the
+     * threads.
+     */
+    private static final class SharedValidator {
+        private static final FhirValidator VALIDATOR = createValidator();
+
+        private static FhirValidator createValidator() {
+            FhirValidator validator = CTX.newValidator();
+            validator.registerValidatorModule(
+                    new FhirInstanceValidator(new CachingValidationSupport(CTX.getValidationSupport())));
+            try {
+                Bundle bundle = new Bundle().setType(BundleType.COLLECTION);
+                bundle.addEntry().setFullUrl("urn:uuid:" + UUID.randomUUID()).setResource(new Patient());
+                validator.validateWithResult(bundle);
+            } catch (RuntimeException e) {
+                // The validator still works, the definitions are loaded by the first validation instead
+                LOGGER.warn("Failure warming up the FHIR validator");
+                LOGGER.debug("Failure warming up the FHIR validator", e);
+            }
+            return validator;
+        }
+    }
+
+    /**
+     * Threads used to validate bundles asynchronously and bundle entries in parallel. A fork join
+     * pool, so a bundle validated asynchronously can wait for its entries validated in parallel.
+     */
+    private static final class ValidationPool {
+        private static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
     }
 
 }
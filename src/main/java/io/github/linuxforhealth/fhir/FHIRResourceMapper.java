@@ -15,7 +15,7 @@ import io.github.linuxforhealth.hl7.resource.ResourceReader;
 
 public class FHIRResourceMapper {
 
-  private static FHIRResourceMapper fhirResourceMapper;
+  private static volatile FHIRResourceMapper fhirResourceMapper;
 
   private Map<String, String> resourceMapping;
 
@@ -31,11 +31,22 @@ public class FHIRResourceMapper {
 
 
 
-  public static Class<? extends Resource> getResourceClass(String name) {
-    if (fhirResourceMapper == null) {
-      fhirResourceMapper = new FHIRResourceMapper();
+  private static FHIRResourceMapper getInstance() {
+    FHIRResourceMapper mapper = fhirResourceMapper;
+    if (mapper == null) {
+      synchronized (FHIRResourceMapper.class) {
+        mapper = fhirResourceMapper;
+        if (mapper == null) {
+          mapper = new FHIRResourceMapper();
+          fhirResourceMapper = mapper;
+        }
+      }
     }
-    String resourceName = fhirResourceMapper.resourceMapping.get(name);
+    return mapper;
+  }
+
+  public static Class<? extends Resource> getResourceClass(String name) {
+    String resourceName = getInstance().resourceMapping.get(name);
 
     if (resourceName != null) {
       try {
@@ -0,0 +1,51 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.linuxforhealth.hl7;
+
+import org.hl7.fhir.r4.model.Bundle;
+
+/**
+ * Result of converting one message of a batch. Holds either the JSON representation of the FHIR
+ * {@link Bundle} or the exception encountered while converting the message.
+ */
+public class ConversionResult {
+
+    private final String json;
+    private final RuntimeException error;
+
+    private ConversionResult(String json, RuntimeException error) {
+        this.json = json;
+        this.error = error;
+    }
+
+    public static ConversionResult success(String json) {
+        return new ConversionResult(json, null);
+    }
+
+    public static ConversionResult failure(RuntimeException error) {
+        return new ConversionResult(null, error);
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    /**
+     * @return JSON representation of the FHIR {@link Bundle}, null if the conversion failed
+     */
+    public String getJson() {
+        return json;
+    }
+
+    /**
+     * @return The exception encountered during conversion, null if the conversion succeeded
+     */
+    public RuntimeException getError() {
+        return error;
+    }
+
+}
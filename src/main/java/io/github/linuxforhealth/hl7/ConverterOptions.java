@@ -10,9 +10,12 @@ import org.hl7.fhir.r4.model.Bundle.BundleType;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 import com.google.common.base.Preconditions;
+import io.github.linuxforhealth.api.ConversionMetrics;
 import io.github.linuxforhealth.core.Constants;
+import io.github.linuxforhealth.core.metrics.NoOpConversionMetrics;
 
 /**
  * Converts HL7 message to FHIR bundle resource based on the customizable templates.
@@ -26,8 +29,13 @@ public class ConverterOptions {
     private BundleType bundleType;
     private boolean prettyPrint;
     private boolean validateResource;
+    private boolean parallelValidation;
+    private boolean directJsonOutput;
+    private boolean logMessageStructure;
     private String zoneIdText;
     private HashMap<String, String> properties;
+    private ConversionMetrics metrics;
+    private Executor resourceExecutor;
 
     private ConverterOptions(Builder builder) {
         if (builder.bundleType != null) {
@@ -39,14 +47,23 @@ public class ConverterOptions {
         this.properties = builder.properties;
         this.prettyPrint = builder.prettyPrint;
         this.validateResource = builder.validateResource;
+        this.parallelValidation = builder.parallelValidation;
+        this.directJsonOutput = builder.directJsonOutput;
+        this.logMessageStructure = builder.logMessageStructure;
+        this.metrics = builder.metrics;
+        this.resourceExecutor = builder.resourceExecutor;
     }
 
     public static class Builder {
         private BundleType bundleType;
         private boolean prettyPrint;
         private boolean validateResource;
+        private boolean directJsonOutput;
+        private boolean logMessageStructure;
         private String zoneIdText;
         private HashMap<String, String> properties = new HashMap<>();
+        private ConversionMetrics metrics = NoOpConversionMetrics.INSTANCE;
+        private Executor resourceExecutor;
 
         public Builder withBundleType(BundleType bundleType) {
             Preconditions.checkArgument(bundleType != null, "Bundle type cannot be null");
@@ -64,6 +81,36 @@ public class ConverterOptions {
             return this;
         }
 
+        /**
+         * Validate the bundle, with the resource of each entry validated on its own and in parallel.
+         * Faster for large bundles, but checks that span entries, such as references between them,
+         * are not made.
+         */
+        public Builder withParallelValidation() {
+            this.validateResource = true;
+            this.parallelValidation = true;
+            return this;
+        }
+
+        /**
+         * Write the bundle JSON directly from the converted resource values, without building the
+         * FHIR Bundle resource first. Resources are not normalized by the FHIR parser, so elements
+         * keep the order they have in the templates. Cannot be combined with resource validation.
+         */
+        public Builder withDirectJsonOutput() {
+            this.directJsonOutput = true;
+            return this;
+        }
+
+        /**
+         * Log the structure of each parsed HL7 message (segment names and groups) at INFO level. This
+         * walks the whole parsed message, so it is only meant for diagnosing conversion issues.
+         */
+        public Builder withLogMessageStructure() {
+            this.logMessageStructure = true;
+            return this;
+        }
+
         public Builder withZoneIdText(String zoneIdText) {
             Preconditions.checkArgument(zoneIdText != null, "zoneIdText cannot be null");
             this.zoneIdText = zoneIdText;
@@ -77,7 +124,32 @@ public class ConverterOptions {
             return this;
         }
 
+        /**
+         * Record the timings of the conversion stages and the resource and failure counters to the
+         * metrics. The same metrics are usually shared by all the conversions.
+         */
+        public Builder withMetrics(ConversionMetrics metrics) {
+            Preconditions.checkArgument(metrics != null, "metrics cannot be null");
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * Generate the resource templates of a message that do not depend on each other concurrently
+         * on the executor. A template depends on the earlier templates whose resources its expressions
+         * reference; it is generated once they are. The calling thread adds the resources to the bundle
+         * in template order, so the bundle is the same as without an executor. The HL7 message itself
+         * is read by one thread at a time, and the metrics, if any, must be thread-safe.
+         */
+        public Builder withResourceExecutor(Executor resourceExecutor) {
+            Preconditions.checkArgument(resourceExecutor != null, "resourceExecutor cannot be null");
+            this.resourceExecutor = resourceExecutor;
+            return this;
+        }
+
         public ConverterOptions build() {
+            Preconditions.checkArgument(!(directJsonOutput && validateResource),
+                    "Direct JSON output cannot be used with resource validation");
             return new ConverterOptions(this);
         }
 
@@ -95,10 +167,30 @@ public class ConverterOptions {
         return validateResource;
     }
 
+    public boolean isParallelValidation() {
+        return parallelValidation;
+    }
+
+    public boolean isDirectJsonOutput() {
+        return directJsonOutput;
+    }
+
+    public boolean isLogMessageStructure() {
+        return logMessageStructure;
+    }
+
     public String getZoneIdText() {
         return zoneIdText;
     }
 
+    public ConversionMetrics getMetrics() {
+        return metrics;
+    }
+
+    public Executor getResourceExecutor() {
+        return resourceExecutor;
+    }
+
     /**
      * getProperty looks up the value for a property of key
      * 
@@ -6,12 +6,26 @@
 
 package io.github.linuxforhealth.hl7;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
-import java.util.HashMap;
-import java.util.Map;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
@@ -25,6 +39,7 @@ import com.google.common.base.Preconditions;
 import ca.uhn.hl7v2.HL7Exception;
 import ca.uhn.hl7v2.model.Message;
 import ca.uhn.hl7v2.util.Hl7InputStreamMessageStringIterator;
+import io.github.linuxforhealth.api.ConversionMetrics;
 import io.github.linuxforhealth.core.config.ConverterConfiguration;
 import io.github.linuxforhealth.core.terminology.TerminologyLookup;
 import io.github.linuxforhealth.core.terminology.UrlLookup;
@@ -33,17 +48,19 @@ import io.github.linuxforhealth.hl7.message.HL7MessageEngine;
 import io.github.linuxforhealth.hl7.message.HL7MessageModel;
 import io.github.linuxforhealth.hl7.parsing.HL7DataExtractor;
 import io.github.linuxforhealth.hl7.parsing.HL7HapiParser;
-import io.github.linuxforhealth.hl7.resource.ResourceReader;
+import io.github.linuxforhealth.hl7.resource.TemplateRegistry;
+import io.github.linuxforhealth.hl7.resource.TemplateRegistry.TemplateVersion;
 
 /**
- * Converts HL7 message to FHIR bundle resource based on the customizable templates.
+ * Converts HL7 message to FHIR bundle resource based on the customizable templates. A single
+ * instance is thread-safe and can be shared by multiple threads converting messages concurrently.
+ * The templates can be reloaded while messages are being converted, see {@link #reloadTemplates()}.
  *
  * @author pbhallam
  */
 public class HL7ToFHIRConverter {
-    private static HL7HapiParser hparser = new HL7HapiParser();
     private static final Logger LOGGER = LoggerFactory.getLogger(HL7ToFHIRConverter.class);
-    private Map<String, HL7MessageModel> messagetemplates = new HashMap<>();
+    private final TemplateRegistry messagetemplates;
 
     /**
      * Constructor initialized all the templates used for converting the HL7 to FHIR bundle resource.
@@ -53,7 +70,7 @@ public class HL7ToFHIRConverter {
     public HL7ToFHIRConverter() {
 
         try {
-            messagetemplates.putAll(ResourceReader.getInstance().getMessageTemplates());
+            messagetemplates = new TemplateRegistry();
             TerminologyLookup.init();
             UrlLookup.init();
         } catch (IllegalArgumentException e) {
@@ -61,6 +78,27 @@ public class HL7ToFHIRConverter {
         }
     }
 
+    /**
+     * Reloads the configuration, the message templates and the concept maps in the background. Once
+     * the new templates are loaded they replace the current ones; conversions that already started
+     * finish with the templates they started with. If the new templates cannot be loaded the current
+     * ones are kept.
+     *
+     * @return Future completed with the version of the new templates, or completed exceptionally if
+     *         they cannot be loaded
+     */
+    public CompletableFuture<Integer> reloadTemplates() {
+        return messagetemplates.reload().thenApply(TemplateVersion::getVersion);
+    }
+
+    /**
+     * @return Version of the message templates used by new conversions, starting with 1 for the
+     *         templates loaded when the converter was created
+     */
+    public int getTemplateVersion() {
+        return messagetemplates.getCurrent().getVersion();
+    }
+
     /**
      * Converts the input HL7 file (.hl7) into FHIR bundle resource.
      * 
@@ -117,12 +155,198 @@ public class HL7ToFHIRConverter {
      * @throws UnsupportedOperationException - if message type is not supported
      */
     public String convert(String hl7MessageData, ConverterOptions options) {
+        return convert(hl7MessageData, options, getMessageEngine(options));
+    }
 
+    /**
+     * Converts the input HL7 messages (String data) into FHIR bundle resources on the calling thread,
+     * reusing the same {@link HL7MessageEngine} for all messages.
+     *
+     * @param hl7Messages Messages to convert
+     * @param options Options for conversion
+     * @return List of {@link ConversionResult}, in the same order as the input messages. A message
+     *         that fails to convert has a result holding the exception.
+     */
+    public List<ConversionResult> convertAll(Iterable<String> hl7Messages, ConverterOptions options) {
+        return convertAll(hl7Messages, options, Runnable::run);
+    }
+
+    /**
+     * Converts the input HL7 messages (String data) into FHIR bundle resources. Messages are
+     * converted concurrently using the executor. {@link HL7MessageEngine} instances are pooled for
+     * the duration of the call: a conversion takes a free engine, or creates one if all are in use,
+     * and returns it when done, so at most one engine is created per concurrent conversion.
+     *
+     * @param hl7Messages Messages to convert
+     * @param options Options for conversion
+     * @param executor Executor used to run the conversions
+     * @return List of {@link ConversionResult}, in the same order as the input messages. A message
+     *         that fails to convert has a result holding the exception.
+     */
+    public List<ConversionResult> convertAll(Iterable<String> hl7Messages, ConverterOptions options,
+            Executor executor) {
+        Preconditions.checkArgument(hl7Messages != null, "Input HL7 messages cannot be null.");
+        Preconditions.checkArgument(options != null, "options cannot be null.");
+        Preconditions.checkArgument(executor != null, "executor cannot be null.");
+
+        // The engine's FHIR parser is not thread-safe, so an engine converts one message at a time.
+        // The pool is local to the call, so no engine outlives it in the executor threads.
+        BlockingQueue<HL7MessageEngine> engines = new LinkedBlockingQueue<>();
+        List<CompletableFuture<ConversionResult>> futures = new ArrayList<>();
+        for (String hl7MessageData : hl7Messages) {
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                HL7MessageEngine engine = engines.poll();
+                if (engine == null) {
+                    engine = getMessageEngine(options);
+                }
+                try {
+                    return convertForBatch(hl7MessageData, options, engine);
+                } finally {
+                    engines.offer(engine);
+                }
+            }, executor));
+        }
+
+        List<ConversionResult> results = new ArrayList<>(futures.size());
+        for (CompletableFuture<ConversionResult> future : futures) {
+            results.add(future.join());
+        }
+        engines.clear();
+        return results;
+    }
+
+    /**
+     * Converts every HL7 message in the file into a FHIR bundle resource. See
+     * {@link #convertAll(InputStream, ConverterOptions, Consumer)}.
+     *
+     * @param hl7MessageFile File containing one or more HL7 messages
+     * @param options Options for conversion
+     * @param consumer Receives the {@link ConversionResult} of each message, in file order
+     * @return Number of messages read from the file
+     * @throws IOException - if message file cannot be read
+     */
+    public int convertAll(Path hl7MessageFile, ConverterOptions options, Consumer<ConversionResult> consumer)
+            throws IOException {
+        Preconditions.checkArgument(hl7MessageFile != null, "Input HL7 message file cannot be null.");
+        try (InputStream ins = Files.newInputStream(hl7MessageFile)) {
+            return convertAll(ins, options, consumer);
+        }
+    }
+
+    /**
+     * Converts every HL7 message in the stream into a FHIR bundle resource. Messages may be separated
+     * by new lines or MLLP framing characters. The stream is read one message at a time and each
+     * result is handed to the consumer before the next message is read, so memory use does not
+     * depend on the number of messages in the stream. The stream is not closed.
+     *
+     * @param hl7Messages Stream containing one or more HL7 messages
+     * @param options Options for conversion
+     * @param consumer Receives the {@link ConversionResult} of each message, in stream order
+     * @return Number of messages read from the stream
+     * @throws IOException - if the stream cannot be read
+     */
+    public int convertAll(InputStream hl7Messages, ConverterOptions options, Consumer<ConversionResult> consumer)
+            throws IOException {
+        Preconditions.checkArgument(hl7Messages != null, "Input HL7 message stream cannot be null.");
+        Preconditions.checkArgument(consumer != null, "consumer cannot be null.");
         HL7MessageEngine engine = getMessageEngine(options);
+        Hl7InputStreamMessageStringIterator iterator = new Hl7InputStreamMessageStringIterator(hl7Messages);
+        int count = 0;
+        try {
+            while (iterator.hasNext()) {
+                consumer.accept(convertForBatch(iterator.next(), options, engine));
+                count++;
+            }
+        } catch (Hl7InputStreamMessageStringIterator.ParseFailureError e) {
+            // The iterator wraps read failures of the underlying stream
+            throw new IOException("Failure reading HL7 messages after message " + count, e);
+        }
+        return count;
+    }
+
+    private ConversionResult convertForBatch(String hl7MessageData, ConverterOptions options,
+            HL7MessageEngine engine) {
+        try {
+            return ConversionResult.success(convert(hl7MessageData, options, engine));
+        } catch (RuntimeException e) {
+            LOGGER.warn("Failure converting message in batch, reason {}", e.getClass().getName());
+            return ConversionResult.failure(e);
+        }
+    }
+
+    /**
+     * Converts the input HL7 message (String data) into FHIR bundle resource and writes the JSON
+     * representation to the writer. When {@link ConverterOptions#isDirectJsonOutput()} is set the
+     * JSON is written as the resources are generated, without building the {@link Bundle} resource.
+     * The output is not buffered: if the conversion fails part-way, the JSON written so far is left in
+     * the writer and must be discarded.
+     *
+     * @param hl7MessageData Message to convert
+     * @param options Options for conversion
+     * @param writer Writer the bundle JSON is written to, it is not closed
+     * @throws IOException - if the JSON cannot be written
+     * @throws UnsupportedOperationException - if message type is not supported
+     */
+    public void convert(String hl7MessageData, ConverterOptions options, Writer writer) throws IOException {
+        Preconditions.checkArgument(writer != null, "writer cannot be null.");
+        convert(hl7MessageData, options, getMessageEngine(options), writer);
+    }
+
+    /**
+     * Converts the input HL7 message (String data) into FHIR bundle resource and writes the JSON
+     * representation to the output stream using UTF-8. See
+     * {@link #convert(String, ConverterOptions, Writer)}. The output is not buffered: if the
+     * conversion fails part-way, the JSON written so far is left in the stream and must be discarded.
+     *
+     * @param hl7MessageData Message to convert
+     * @param options Options for conversion
+     * @param out Stream the bundle JSON is written to, it is not closed
+     * @throws IOException - if the JSON cannot be written
+     * @throws UnsupportedOperationException - if message type is not supported
+     */
+    public void convert(String hl7MessageData, ConverterOptions options, OutputStream out) throws IOException {
+        Preconditions.checkArgument(out != null, "output stream cannot be null.");
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        convert(hl7MessageData, options, writer);
+        writer.flush();
+    }
+
+    private String convert(String hl7MessageData, ConverterOptions options, HL7MessageEngine engine) {
+        if (options.isDirectJsonOutput()) {
+            StringWriter writer = new StringWriter();
+            try {
+                convert(hl7MessageData, options, engine, writer);
+            } catch (IOException e) {
+                throw new IllegalStateException("Failure writing bundle JSON.", e);
+            }
+            return writer.toString();
+        }
         Bundle bundle = convertToBundle(hl7MessageData, options, engine);
         return engine.getFHIRContext().encodeResourceToString(bundle);
     }
 
+    private void convert(String hl7MessageData, ConverterOptions options, HL7MessageEngine engine, Writer writer)
+            throws IOException {
+        if (!options.isDirectJsonOutput()) {
+            Bundle bundle = convertToBundle(hl7MessageData, options, engine);
+            engine.getFHIRContext().encodeResourceToWriter(bundle, writer);
+            return;
+        }
+
+        try {
+            convertMessage(hl7MessageData, options, engine, (model, hl7message) -> {
+                try {
+                    model.convert(hl7message, engine, writer);
+                    return null;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
     /**
      * Converts the input HL7 message (String data) into FHIR bundle resource.
      *
@@ -133,36 +357,57 @@ public class HL7ToFHIRConverter {
      * @throws UnsupportedOperationException - if message type is not supported
      */
     public Bundle convertToBundle(String hl7MessageData, ConverterOptions options, HL7MessageEngine engine) {
+        HL7MessageEngine messageEngine = engine != null ? engine : getMessageEngine(options);
+        return convertMessage(hl7MessageData, options, messageEngine,
+                (model, hl7message) -> model.convert(hl7message, messageEngine));
+    }
+
+    // Parses the message and converts it with the template of its type
+    private <T> T convertMessage(String hl7MessageData, ConverterOptions options, HL7MessageEngine engine,
+            BiFunction<HL7MessageModel, Message, T> conversion) {
         Preconditions.checkArgument(StringUtils.isNotBlank(hl7MessageData),
                 "Input HL7 message cannot be blank");
-        if(engine == null) {
-            engine = getMessageEngine(options);
-        }
 
         // If zoneIdText has been provide via run properties, it overrides the default and any value from the config file.
+        // The override only applies to this conversion so concurrent conversions can use different zones.
         if (options.getZoneIdText()!=null) {
-            ConverterConfiguration.getInstance().setZoneId(options.getZoneIdText());
+            ConverterConfiguration.setConversionZoneId(options.getZoneIdText());
         }
 
-        Message hl7message = getHl7Message(hl7MessageData);
-        if (hl7message != null) {
+        try {
+            long start = System.nanoTime();
+            Message hl7message = getHl7Message(hl7MessageData);
+            long parseNanos = System.nanoTime() - start;
+            if (hl7message == null) {
+                throw new IllegalArgumentException("Parsed HL7 message was null.");
+            }
             String messageType = HL7DataExtractor.getMessageType(hl7message);
-            HL7MessageModel hl7MessageTemplateModel = messagetemplates.get(messageType);
-            if (hl7MessageTemplateModel != null) {
-                return hl7MessageTemplateModel.convert(hl7message, engine);
-            } else {
-                throw new UnsupportedOperationException("Message type not yet supported " + messageType);
+            engine.getMetrics().recordTime(ConversionMetrics.PARSE, messageType, null, parseNanos);
+            if (options.isLogMessageStructure() && LOGGER.isInfoEnabled()) {
+                logMessageStructure(hl7message);
             }
+            return conversion.apply(getMessageModel(messageType), hl7message);
+        } finally {
+            ConverterConfiguration.clearConversionZoneId();
+        }
+    }
+
+    private HL7MessageModel getMessageModel(String messageType) {
+        HL7MessageModel hl7MessageTemplateModel = messagetemplates.getCurrent().getMessageTemplate(messageType);
+        if (hl7MessageTemplateModel != null) {
+            return hl7MessageTemplateModel;
         } else {
-            throw new IllegalArgumentException("Parsed HL7 message was null.");
+            throw new UnsupportedOperationException("Message type not yet supported " + messageType);
         }
     }
 
     private HL7MessageEngine getMessageEngine(ConverterOptions options){
         Preconditions.checkArgument(options != null, "options cannot be null.");
-        FHIRContext context = new FHIRContext(options.isPrettyPrint(), options.isValidateResource(), options.getProperties());
+        FHIRContext context = new FHIRContext(options.isPrettyPrint(), options.isValidateResource(),
+                options.isParallelValidation(), options.getProperties());
 
-        return new HL7MessageEngine(context, options.getBundleType());
+        return new HL7MessageEngine(context, options.getBundleType(), options.getMetrics(),
+                options.getResourceExecutor());
     }
 
     private static Message getHl7Message(String data) {
@@ -171,46 +416,35 @@ public class HL7ToFHIRConverter {
             Hl7InputStreamMessageStringIterator iterator = new Hl7InputStreamMessageStringIterator(ins);
             // only supports single message conversion.
             if (iterator.hasNext()) {
-
-                hl7message = hparser.getParser().parse(iterator.next());
+                hl7message = HL7HapiParser.getSharedInstance().getParser().parse(iterator.next());
             }
         } catch (HL7Exception e) {
             throw new IllegalArgumentException("Cannot parse the message.", e);
         } catch (IOException ioe) {
             throw new IllegalArgumentException("IOException encountered.", ioe);
         }
+        return hl7message;
+    }
 
+    private static void logMessageStructure(Message hl7message) {
         try {
-            if (hl7message != null) {
-                String messageStructureInfo = hl7message.printStructure();
-                StringBuilder output = new StringBuilder();
-                String[] messageStructureInfoLines = messageStructureInfo.split(System.getProperty("line.separator"));
-                for (String line : messageStructureInfoLines) {
-                    if (!line.contains("|")) {
-                        output.append(line);
-                    } else {
-                        int firstDash = line.indexOf("-");
-                        output.append(line.substring(0, firstDash + 5));
-                    }
-                    output.append("\n");
-                }
-                if (output.length() > 0) {
-                    LOGGER.info("HL7_MESSAGE_STRUCTURE=\n{}", output);
+            String messageStructureInfo = hl7message.printStructure();
+            StringBuilder output = new StringBuilder();
+            String[] messageStructureInfoLines = messageStructureInfo.split(System.getProperty("line.separator"));
+            for (String line : messageStructureInfoLines) {
+                if (!line.contains("|")) {
+                    output.append(line);
+                } else {
+                    int firstDash = line.indexOf("-");
+                    output.append(line.substring(0, firstDash + 5));
                 }
+                output.append("\n");
+            }
+            if (output.length() > 0) {
+                LOGGER.info("HL7_MESSAGE_STRUCTURE=\n{}", output);
             }
         } catch (HL7Exception e) {
             throw new IllegalArgumentException("Error printing message structure.", e);
         }
-        return hl7message;
-    }
-
-    private static void close(HL7HapiParser hparser) {
-        if (hparser != null) {
-            try {
-                hparser.getContext().close();
-            } catch (IOException e) {
-                throw new IllegalStateException("Failure to close HL7 parser.", e);
-            }
-        }
     }
 }
@@ -13,7 +13,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import ca.uhn.hl7v2.model.Composite;
-import ca.uhn.hl7v2.model.DataTypeException;
 import ca.uhn.hl7v2.model.Primitive;
 import ca.uhn.hl7v2.model.Type;
 import ca.uhn.hl7v2.model.Variable;
@@ -21,6 +20,7 @@ import ca.uhn.hl7v2.model.primitive.ID;
 import ca.uhn.hl7v2.model.primitive.IS;
 import ca.uhn.hl7v2.model.v26.datatype.CWE;
 import ca.uhn.hl7v2.model.v26.datatype.ST;
+import io.github.linuxforhealth.hl7.parsing.HL7DataExtractor;
 
 public class Hl7DataHandlerUtil {
 
@@ -155,13 +155,8 @@ public class Hl7DataHandlerUtil {
             if (allComponents) {
                 returnvalue = getValueFromComposite(com);
             } else {
-                try {
-                    returnvalue = com.getComponent(0).toString();
-                } catch (DataTypeException e) {
-                    LOGGER.warn("Failure when extracting string value");
-                    LOGGER.debug("Failure when extracting string value for {}", local, e);
-                    returnvalue = null;
-                }
+                Type first = HL7DataExtractor.getExistingComponent(com, 1);
+                returnvalue = first != null ? first.toString() : null;
             }
         } else if (local instanceof Primitive) {
             Primitive prem = (Primitive) local;
@@ -29,6 +29,7 @@ import ca.uhn.hl7v2.model.Type;
 import io.github.linuxforhealth.api.ResourceValue;
 import io.github.linuxforhealth.core.ObjectMapperUtil;
 import io.github.linuxforhealth.hl7.data.date.DateUtil;
+import io.github.linuxforhealth.hl7.parsing.HL7DataExtractor;
 
 public class Hl7RelatedGeneralUtils {
     private static final Logger LOGGER = LoggerFactory.getLogger(Hl7RelatedGeneralUtils.class);
@@ -351,7 +352,7 @@ public class Hl7RelatedGeneralUtils {
         if (returnDistrict == null) {
             Segment pidSegment = (Segment) patient;
             try {
-                Type[] addresses = pidSegment.getField(11);
+                Type[] addresses = HL7DataExtractor.getRepetitions(pidSegment, 11);
                 if (addresses.length == 1) {
                     returnDistrict = patientCountyPid12;
                 }
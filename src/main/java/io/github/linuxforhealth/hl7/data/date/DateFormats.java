@@ -12,6 +12,13 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.regex.Pattern;
 
+/**
+ * Regular expressions and formatters for the HL7 DTM values of each precision.
+ *
+ * @deprecated {@link DateUtil} no longer uses these patterns: it parses a DTM value in a single pass.
+ *             Kept for code still using them, it will be removed in a later release.
+ */
+@Deprecated
 public class DateFormats {
 
     private static final Pattern PATTERN8 = Pattern
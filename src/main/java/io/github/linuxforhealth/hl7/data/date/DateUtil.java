@@ -5,6 +5,7 @@
  */
 package io.github.linuxforhealth.hl7.data.date;
 
+import java.text.ParsePosition;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -13,10 +14,7 @@ import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.time.temporal.Temporal;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Map.Entry;
-import java.util.regex.Pattern;
+import java.time.temporal.TemporalQuery;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,152 +27,104 @@ public class DateUtil {
     private DateUtil() {
     }
 
+    /**
+     * Formats a HL7 DTM value as date, to the precision of the value: yyyy, yyyy-MM or yyyy-MM-dd.
+     *
+     * @param input HL7 DTM value
+     * @return Formatted date or null if the value is not a valid DTM value
+     */
     public static String formatToDate(String input) {
-        DateTimeFormatter format = null;
-        for (Entry<Pattern, DateTimeFormatter> pattern : DateFormats.getDatePatternsInstance()
-                .entrySet()) {
-            if (pattern.getKey().matcher(input).matches()) {
-                format = pattern.getValue();
-                break;
-            }
-        }
-        try {
-            LocalDate ldt = LocalDate.parse(input, DateFormats.getFormatterInstance());
-            return ldt.format(format);
-        } catch (DateTimeParseException e) {
+        DtmValue value = DtmValue.parse(input);
+        if (value == null) {
             LOGGER.warn("Input value cannot be formatted to LocalDate.");
-            LOGGER.debug("Input value cannot be formatted to LocalDate {}", input, e);
+            LOGGER.debug("Input value cannot be formatted to LocalDate {}", input);
             return null;
         }
+        return value.formatDate();
     }
 
+    /**
+     * Formats a HL7 DTM value as FHIR dateTime. A value without time is formatted as date, to the
+     * precision of the value. A value with time is formatted as ISO date time with offset, using the
+     * configured zone when the value has no offset.
+     *
+     * @param input HL7 DTM value
+     * @return Formatted date time or null if the value is not a valid DTM value, has an offset but no
+     *         time, or has no offset and no zone is configured
+     */
     public static String formatToDateTimeWithZone(String input) {
-        String returnValue = getLocalDate(input);
-        if (returnValue == null) {
-            returnValue = getZonedDate(input);
-        }
-        if (returnValue == null) {
-            returnValue = getLocalDateTimeWithDefaultZone(input);
-        }
-        return returnValue;
-    }
-
-    private static String getLocalDateTimeWithDefaultZone(String input) {
-        String returnValue;
-
-        try {
-            LocalDateTime ldt = LocalDateTime.parse(input, DateFormats.getFormatterInstance());
-            ZoneId zone = ConverterConfiguration.getInstance().getZoneId();
-            if (zone != null) {
-                returnValue = ldt.atZone(zone).format(DateFormats.FHIR_ZONE_DATE_TIME_FORMAT);
-                return returnValue;
-            } else {
-                LOGGER.warn("No default zone set, cannot convert LocalDateTime to ZonedDateTime");
-                LOGGER.debug("No default zone set, cannot convert LocalDateTime to ZonedDateTime, input {} ", input);
-                return null;
-            }
-        } catch (DateTimeParseException e) {
+        DtmValue value = DtmValue.parse(input);
+        if (value == null) {
             LOGGER.warn("Date parsing failure for value.");
-            LOGGER.debug("Date parsing exception for value {}", input, e);
+            LOGGER.debug("Date parsing failure for value {}", input);
             return null;
         }
-    }
-
-    private static String getLocalDate(String input) {
-        DateTimeFormatter format = null;
-        for (Entry<Pattern, DateTimeFormatter> pattern : DateFormats
-                .getDatePatternsWithoutTimeInstance().entrySet()) {
-            if (pattern.getKey().matcher(input).matches()) {
-                format = pattern.getValue();
-                break;
-            }
-        }
-        if (format != null) {
-            try {
-                LocalDate ldt = LocalDate.parse(input, DateFormats.getFormatterInstance());
-                return ldt.atStartOfDay().format(format);
-            } catch (DateTimeParseException e) {
-                LOGGER.warn("Input value cannot be formatted to LocalDate");
-                LOGGER.debug("Input value cannot be formatted to LocalDate {} ", input, e);
+        if (!value.hasTime()) {
+            if (value.hasOffset()) {
+                LOGGER.warn("Input value cannot be parsed to ZonedDateTime");
+                LOGGER.debug("Input value with offset but without time cannot be parsed to ZonedDateTime {} ", input);
                 return null;
             }
+            return value.formatDate();
         }
-        return null;
-    }
-
-    private static String getZonedDate(String input) {
-        DateTimeFormatter format = null;
-        for (Entry<Pattern, DateTimeFormatter> pattern : DateFormats.getDatePatternsWithZoneInstance()
-                .entrySet()) {
-            if (pattern.getKey().matcher(input).matches()) {
-                format = pattern.getValue();
-                break;
-            }
+        if (value.hasOffset()) {
+            return value.formatDateTime(null);
         }
-        if (format != null) {
-            try {
-                ZonedDateTime zdt = ZonedDateTime.parse(input, DateFormats.getFormatterInstance());
-                return zdt.format(format);
-            } catch (DateTimeParseException e) {
-                LOGGER.warn("Input value cannot be parsed to ZonedDateTime");
-                LOGGER.debug("Input value cannot be parsed to ZonedDateTime {} ", input, e);
-                return null;
-            }
+        ZoneId zone = ConverterConfiguration.getInstance().getZoneId();
+        if (zone == null) {
+            LOGGER.warn("No default zone set, cannot convert LocalDateTime to ZonedDateTime");
+            LOGGER.debug("No default zone set, cannot convert LocalDateTime to ZonedDateTime, input {} ", input);
+            return null;
         }
-        return null;
+        return value.formatDateTime(zone);
     }
 
     public static Temporal getTemporal(String dateString) {
-        Map<String, DateTimeParseException> warnings = new HashMap<>();
         if (dateString == null) {
             return null;
         }
-        Temporal temporal = null;
-        try {
-            temporal = Instant.parse(dateString);
-            LOGGER.debug("Date parsed for instant {}", dateString);
-        } catch (DateTimeParseException e) {
-            warnings.put("Input value cannot be parsed to  instant " + dateString, e);
-        }
+        Temporal temporal = parseTemporal(dateString, DateTimeFormatter.ISO_INSTANT, Instant::from);
         if (temporal == null) {
-            try {
-                temporal = ZonedDateTime.parse(dateString, DateTimeFormatter.ISO_ZONED_DATE_TIME);
-                LOGGER.debug("Date parsed for ZonedDateTime {}", dateString);
-            } catch (DateTimeParseException e) {
-                warnings.put("Input value cannot be parsed to ZonedDateTime " + dateString, e);
-            }
+            temporal = parseTemporal(dateString, DateTimeFormatter.ISO_ZONED_DATE_TIME, ZonedDateTime::from);
         }
         if (temporal == null) {
-            try {
-                temporal = LocalDateTime.parse(dateString, DateTimeFormatter.ISO_LOCAL_DATE_TIME);
-                LOGGER.debug("Date parsed for LocalDateTime {}", dateString);
-            } catch (DateTimeParseException e) {
-                warnings.put("Input value cannot be parsed to LocalDateTime " + dateString, e);
-            }
+            temporal = parseTemporal(dateString, DateTimeFormatter.ISO_LOCAL_DATE_TIME, LocalDateTime::from);
         }
         if (temporal == null) {
-            try {
-                temporal = LocalDate.parse(dateString, DateTimeFormatter.ISO_LOCAL_DATE);
-                LOGGER.debug("Date parsed for LocalDate {}", dateString);
-            } catch (DateTimeParseException e) {
-                warnings.put("Input value cannot be parsed to LocalDate " + dateString, e);
-            }
+            temporal = parseTemporal(dateString, DateTimeFormatter.ISO_LOCAL_DATE, LocalDate::from);
         }
-        if (temporal == null && !warnings.isEmpty()) {
+        if (temporal == null) {
             LOGGER.warn("Attempt to parse input value to temporal failed.");
             LOGGER.debug("Attempt to parse input value {} to temporal failed ", dateString);
-            for (Entry<String, DateTimeParseException> entry : warnings.entrySet()) {
-                LOGGER.debug("{} reason {}", entry.getKey(), entry.getValue().toString());
-            }
         }
         return temporal;
     }
 
-    public static String formatToZonedDateTime(String input) {
-        String zoned = getZonedDate(input);
-        if (zoned == null) {
-            zoned = formatToDateTimeWithZone(input);
+    // Checks that the text is in the format of the formatter before parsing it, so a text in another
+    // format is skipped without creating an exception.
+    private static Temporal parseTemporal(String dateString, DateTimeFormatter formatter,
+            TemporalQuery<? extends Temporal> query) {
+        ParsePosition position = new ParsePosition(0);
+        if (formatter.parseUnresolved(dateString, position) == null || position.getIndex() != dateString.length()) {
+            return null;
+        }
+        try {
+            Temporal temporal = formatter.parse(dateString, query);
+            LOGGER.debug("Date parsed for {} {}", temporal.getClass().getSimpleName(), dateString);
+            return temporal;
+        } catch (DateTimeParseException e) {
+            LOGGER.debug("Input value cannot be parsed to temporal {}", dateString, e);
+            return null;
         }
-        return zoned;
+    }
+
+    /**
+     * Formats a HL7 DTM value as FHIR instant, see {@link #formatToDateTimeWithZone(String)}.
+     *
+     * @param input HL7 DTM value
+     * @return Formatted date time or null if the value cannot be formatted
+     */
+    public static String formatToZonedDateTime(String input) {
+        return formatToDateTimeWithZone(input);
     }
 }
\ No newline at end of file
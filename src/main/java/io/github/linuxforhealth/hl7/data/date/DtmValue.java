@@ -0,0 +1,298 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.data.date;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.zone.ZoneRules;
+
+/**
+ * HL7 DTM value, parsed in a single pass over the input without regular expressions or
+ * {@link java.time.format.DateTimeFormatter}s. The value follows the DTM grammar
+ * YYYY[MM[DD[HH[MM[SS[.S[S[S[S]]]]]]]]][+/-ZZZZ] and is validated the same way the smart resolver of
+ * java.time validates it: a day after the end of the month is moved to the last day of the month and
+ * hour 24 with no minutes or seconds is midnight of the next day.
+ */
+final class DtmValue {
+
+    /**
+     * Most precise component present in the value.
+     */
+    enum Precision {
+        YEAR, MONTH, DAY, HOUR, MINUTE, SECOND
+    }
+
+    private static final int MAX_OFFSET_SECONDS = 18 * 3600;
+    private static final int[] FRACTION_SCALE = { 0, 100_000_000, 10_000_000, 1_000_000, 100_000 };
+
+    private final Precision precision;
+    private final int year;
+    private final int month;
+    private final int day;
+    private final int hour;
+    private final int minute;
+    private final int second;
+    private final int nano;
+    private final boolean hasOffset;
+    private final int offsetSeconds;
+
+    private DtmValue(Precision precision, int year, int month, int day, int hour, int minute, int second,
+            int nano, boolean hasOffset, int offsetSeconds) {
+        this.precision = precision;
+        this.year = year;
+        this.month = month;
+        this.day = day;
+        this.hour = hour;
+        this.minute = minute;
+        this.second = second;
+        this.nano = nano;
+        this.hasOffset = hasOffset;
+        this.offsetSeconds = offsetSeconds;
+    }
+
+    /**
+     * Parses a HL7 DTM value.
+     *
+     * @param input The value
+     * @return {@link DtmValue} or null if the value does not follow the DTM grammar or is not a valid
+     *         date and time
+     */
+    static DtmValue parse(String input) {
+        int length = input.length();
+        int digits = skipDigits(input, 0);
+        Precision precision;
+        switch (digits) {
+            case 4:
+                precision = Precision.YEAR;
+                break;
+            case 6:
+                precision = Precision.MONTH;
+                break;
+            case 8:
+                precision = Precision.DAY;
+                break;
+            case 10:
+                precision = Precision.HOUR;
+                break;
+            case 12:
+                precision = Precision.MINUTE;
+                break;
+            case 14:
+                precision = Precision.SECOND;
+                break;
+            default:
+                return null;
+        }
+        int position = digits;
+        int nano = 0;
+        if (position < length && input.charAt(position) == '.') {
+            int fractionEnd = skipDigits(input, position + 1);
+            int fractionDigits = fractionEnd - position - 1;
+            if (precision != Precision.SECOND || fractionDigits < 1 || fractionDigits >= FRACTION_SCALE.length) {
+                return null;
+            }
+            nano = number(input, position + 1, fractionEnd) * FRACTION_SCALE[fractionDigits];
+            position = fractionEnd;
+        }
+        boolean hasOffset = position < length;
+        int offsetSeconds = 0;
+        if (hasOffset) {
+            char sign = input.charAt(position);
+            if ((sign != '+' && sign != '-') || length - position != 5 || skipDigits(input, position + 1) != length) {
+                return null;
+            }
+            int offsetHours = number(input, position + 1, position + 3);
+            int offsetMinutes = number(input, position + 3, length);
+            offsetSeconds = offsetHours * 3600 + offsetMinutes * 60;
+            if (offsetMinutes > 59 || offsetSeconds > MAX_OFFSET_SECONDS) {
+                return null;
+            }
+            if (sign == '-') {
+                offsetSeconds = -offsetSeconds;
+            }
+        }
+
+        int year = number(input, 0, 4);
+        int month = digits >= 6 ? number(input, 4, 6) : 1;
+        int day = digits >= 8 ? number(input, 6, 8) : 1;
+        int hour = digits >= 10 ? number(input, 8, 10) : 0;
+        int minute = digits >= 12 ? number(input, 10, 12) : 0;
+        int second = digits >= 14 ? number(input, 12, 14) : 0;
+        if (year < 1 || month < 1 || month > 12 || day < 1 || day > 31 || minute > 59 || second > 59) {
+            return null;
+        }
+        day = Math.min(day, lengthOfMonth(year, month));
+        if (hour == 24 && minute == 0 && second == 0 && nano == 0) {
+            hour = 0;
+            if (day < lengthOfMonth(year, month)) {
+                day++;
+            } else if (month < 12) {
+                day = 1;
+                month++;
+            } else {
+                day = 1;
+                month = 1;
+                year++;
+            }
+        } else if (hour > 23) {
+            return null;
+        }
+        return new DtmValue(precision, year, month, day, hour, minute, second, nano, hasOffset, offsetSeconds);
+    }
+
+    Precision getPrecision() {
+        return precision;
+    }
+
+    boolean hasTime() {
+        return precision.compareTo(Precision.HOUR) >= 0;
+    }
+
+    boolean hasOffset() {
+        return hasOffset;
+    }
+
+    /**
+     * Formats the date of the value, to the precision of the value: yyyy, yyyy-MM or yyyy-MM-dd.
+     *
+     * @return Formatted date
+     */
+    String formatDate() {
+        StringBuilder sb = new StringBuilder(10);
+        appendYear(sb, year);
+        if (precision != Precision.YEAR) {
+            sb.append('-');
+            appendTwoDigits(sb, month);
+        }
+        if (precision != Precision.YEAR && precision != Precision.MONTH) {
+            sb.append('-');
+            appendTwoDigits(sb, day);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Formats the value as ISO date time with offset, yyyy-MM-ddTHH:mm:ss[.S]+HH:MM, the same way as
+     * {@link java.time.format.DateTimeFormatter#ISO_OFFSET_DATE_TIME}. The offset of the value is used
+     * if it has one, otherwise the offset of the zone at the date and time of the value.
+     *
+     * @param zone Zone used for values without offset
+     * @return Formatted date time
+     */
+    String formatDateTime(ZoneId zone) {
+        if (hasOffset) {
+            return formatDateTime(year, month, day, hour, minute, second, nano, offsetSeconds);
+        }
+        ZoneRules rules = zone.getRules();
+        if (rules.isFixedOffset()) {
+            return formatDateTime(year, month, day, hour, minute, second, nano,
+                    rules.getOffset(Instant.EPOCH).getTotalSeconds());
+        }
+        // The offset depends on the date and time, which can move if it falls in a gap of the zone
+        ZonedDateTime zdt = LocalDateTime.of(year, month, day, hour, minute, second, nano).atZone(zone);
+        return formatDateTime(zdt.getYear(), zdt.getMonthValue(), zdt.getDayOfMonth(), zdt.getHour(),
+                zdt.getMinute(), zdt.getSecond(), zdt.getNano(), zdt.getOffset().getTotalSeconds());
+    }
+
+    private static String formatDateTime(int year, int month, int day, int hour, int minute, int second, int nano,
+            int offsetSeconds) {
+        StringBuilder sb = new StringBuilder(32);
+        appendYear(sb, year);
+        sb.append('-');
+        appendTwoDigits(sb, month);
+        sb.append('-');
+        appendTwoDigits(sb, day);
+        sb.append('T');
+        appendTwoDigits(sb, hour);
+        sb.append(':');
+        appendTwoDigits(sb, minute);
+        sb.append(':');
+        appendTwoDigits(sb, second);
+        if (nano != 0) {
+            // Fraction without trailing zeros
+            int fraction = nano;
+            int fractionDigits = 9;
+            while (fraction % 10 == 0) {
+                fraction /= 10;
+                fractionDigits--;
+            }
+            sb.append('.');
+            String digits = Integer.toString(fraction);
+            for (int i = digits.length(); i < fractionDigits; i++) {
+                sb.append('0');
+            }
+            sb.append(digits);
+        }
+        if (offsetSeconds == 0) {
+            sb.append('Z');
+        } else {
+            int absoluteSeconds = Math.abs(offsetSeconds);
+            sb.append(offsetSeconds < 0 ? '-' : '+');
+            appendTwoDigits(sb, absoluteSeconds / 3600);
+            sb.append(':');
+            appendTwoDigits(sb, absoluteSeconds / 60 % 60);
+            if (absoluteSeconds % 60 != 0) {
+                sb.append(':');
+                appendTwoDigits(sb, absoluteSeconds % 60);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void appendYear(StringBuilder sb, int year) {
+        if (year > 9999) {
+            sb.append('+').append(year);
+        } else {
+            appendTwoDigits(sb, year / 100);
+            appendTwoDigits(sb, year % 100);
+        }
+    }
+
+    private static void appendTwoDigits(StringBuilder sb, int value) {
+        sb.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return isLeapYear(year) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    private static boolean isLeapYear(int year) {
+        return (year % 4 == 0) && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    private static int skipDigits(String input, int start) {
+        int position = start;
+        while (position < input.length() && isDigit(input.charAt(position))) {
+            position++;
+        }
+        return position;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static int number(String input, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            value = value * 10 + (input.charAt(i) - '0');
+        }
+        return value;
+    }
+
+}
@@ -5,7 +5,9 @@
  */
 package io.github.linuxforhealth.hl7.expression;
 
+import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -13,9 +15,8 @@ import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.slf4j.MDC;
 import com.google.common.base.Preconditions;
-import com.google.common.collect.ImmutableMap;
+import io.github.linuxforhealth.api.ConversionMetrics;
 import io.github.linuxforhealth.api.EvaluationResult;
 import io.github.linuxforhealth.api.Expression;
 import io.github.linuxforhealth.api.InputDataExtractor;
@@ -28,17 +29,16 @@ import io.github.linuxforhealth.core.exception.DataExtractionException;
 import io.github.linuxforhealth.core.exception.RequiredConstraintFailureException;
 import io.github.linuxforhealth.core.expression.EmptyEvaluationResult;
 import io.github.linuxforhealth.core.expression.EvaluationResultFactory;
+import io.github.linuxforhealth.core.expression.ScopedContextMap;
 import io.github.linuxforhealth.core.expression.VariableUtils;
 import io.github.linuxforhealth.hl7.expression.specification.SpecificationUtil;
 
-public abstract class AbstractExpression implements Expression {
-    private static final String RESOURCE = "Resource";
+public abstract class AbstractExpression implements Expression, Serializable {
+    private static final long serialVersionUID = 1L;
 
     private static final Logger LOGGER = LoggerFactory.getLogger(AbstractExpression.class);
 
     private ExpressionAttributes attr;
-    private String originalContext;
-    private boolean conditionSatisfiedState;
 
     public AbstractExpression(ExpressionAttributes attr) {
         this.attr = attr;
@@ -93,23 +93,28 @@ public abstract class AbstractExpression implements Expression {
         Preconditions.checkArgument(contextValues != null, "contextValues cannot be null");
         Preconditions.checkArgument(baseValue != null, "baseValue cannot be null");
         EvaluationResult result;
+        // Expressions are shared by all threads using the same templates, so any per evaluation state
+        // is kept on the stack rather than in fields.
+        EvaluationPath path = EvaluationPath.get();
+        path.push(this.attr.getName());
+        EvaluationState state = new EvaluationState();
+        ExpressionProfiler.Evaluation evaluation = ExpressionProfiler.isEnabled() ? ExpressionProfiler.start() : null;
         try {
-            setLoggingContext();
 
             LOGGER.debug("Started Evaluating with baseValue {} expression {} ", baseValue, this);
 
-            Map<String, EvaluationResult> localContextValues = new HashMap<>(contextValues);
+            Map<String, EvaluationResult> localContextValues = new ScopedContextMap(contextValues);
 
             if (!baseValue.isEmpty()) {
                 localContextValues.put(baseValue.getIdentifier(), baseValue);
                 localContextValues.put(Constants.BASE_VALUE_NAME, baseValue);
             }
 
-            result = evaluateValueOfExpression(dataSource, localContextValues, baseValue);
+            result = evaluateValueOfExpression(dataSource, localContextValues, baseValue, state);
 
             LOGGER.debug("Completed Evaluating returned value  {} ----  for  expression {} ", result, this);
 
-            if (this.conditionSatisfiedState && this.isRequired()
+            if (state.conditionSatisfied && this.isRequired()
                     && (result == null || result.isEmpty())) {
 
                 String stringRep = this.toString();
@@ -120,25 +125,30 @@ public abstract class AbstractExpression implements Expression {
                 return result;
             }
         } catch (DataExtractionException | IllegalArgumentException e) {
-            LOGGER.warn("Failure encountered during evaluation of expression {}",
-                    this.attr.getName());
+            if (LOGGER.isWarnEnabled()) {
+                try (EvaluationPath.LoggingContext context = path.putInLoggingContext()) {
+                    LOGGER.warn("Failure encountered during evaluation of expression {}",
+                            this.attr.getName());
+                }
+            }
+            countFailure(dataSource);
             return null;
         } finally {
-            resetLoggingContext();
+            if (evaluation != null) {
+                ExpressionProfiler.stop(evaluation, path.toString());
+            }
+            path.pop();
         }
     }
 
-    private void setLoggingContext() {
-        originalContext = MDC.get(RESOURCE);
-        MDC.put(RESOURCE, originalContext + "-> Field:" + this.getExpressionAttr().getName());
-    }
-
-    private void resetLoggingContext() {
-        MDC.put(RESOURCE, originalContext);
+    private static void countFailure(InputDataExtractor dataSource) {
+        dataSource.getMetrics().increment(ConversionMetrics.EXPRESSIONS_FAILED, dataSource.getName(),
+                EvaluationPath.get().getResource());
     }
 
     private EvaluationResult evaluateValueOfExpression(InputDataExtractor dataSource,
-            Map<String, EvaluationResult> localContextValues, EvaluationResult baseinputValue) {
+            Map<String, EvaluationResult> localContextValues, EvaluationResult baseinputValue,
+            EvaluationState state) {
         /**
          * Steps:
          * <ul>
@@ -164,12 +174,12 @@ public abstract class AbstractExpression implements Expression {
 
         if (!baseSpecvalues.isEmpty()) {
             for (Object o : baseSpecvalues) {
-                Map<String, EvaluationResult> localContextValuesSpec = new HashMap<>(localContextValues);
+                Map<String, EvaluationResult> localContextValuesSpec = new ScopedContextMap(localContextValues);
                 localContextValuesSpec.put(Constants.BASE_VALUE_NAME,
                         EvaluationResultFactory.getEvaluationResult(o));
 
                 EvaluationResult gen = generateValue(dataSource, localContextValuesSpec,
-                        EvaluationResultFactory.getEvaluationResult(o));
+                        EvaluationResultFactory.getEvaluationResult(o), state);
 
                 if (gen != null && gen.getValue() != null && !gen.isEmpty()) {
                     if (gen.getValue() instanceof List) {
@@ -186,7 +196,7 @@ public abstract class AbstractExpression implements Expression {
 
             }
         } else {
-            EvaluationResult gen = generateValue(dataSource, localContextValues, baseinputValue);
+            EvaluationResult gen = generateValue(dataSource, localContextValues, baseinputValue, state);
             if (gen != null && gen.getValue() != null && !gen.isEmpty()) {
                 if (gen.getValue() instanceof List) {
                     result.addAll(gen.getValue());
@@ -226,7 +236,7 @@ public abstract class AbstractExpression implements Expression {
             specValues = baseinputValue;
         } else {
             specValues = SpecificationUtil.extractMultipleValuesForSpec(specs, dataSource,
-                    ImmutableMap.copyOf(contextValues));
+                    Collections.unmodifiableMap(contextValues));
         }
 
         if (specValues != null && specValues.getValue() instanceof List) {
@@ -239,19 +249,20 @@ public abstract class AbstractExpression implements Expression {
     }
 
     private EvaluationResult generateValue(InputDataExtractor dataSource,
-            Map<String, EvaluationResult> contextValues, EvaluationResult baseValue) {
+            Map<String, EvaluationResult> contextValues, EvaluationResult baseValue,
+            EvaluationState state) {
 
         // resolve variables
-        Map<String, EvaluationResult> localContextValues = new HashMap<>(contextValues);
+        Map<String, EvaluationResult> localContextValues = new ScopedContextMap(contextValues);
         if (baseValue != null && baseValue.getValue() != null) {
             localContextValues.put(DataTypeUtil.getDataType(baseValue.getValue()), baseValue);
         }
         localContextValues.putAll(
-                resolveVariables(this.getVariables(), ImmutableMap.copyOf(localContextValues), dataSource));
+                resolveVariables(this.getVariables(), Collections.unmodifiableMap(localContextValues), dataSource));
 
         if (this.isConditionSatisfied(localContextValues)) {
-            conditionSatisfiedState = true;
-            return evaluateExpression(dataSource, ImmutableMap.copyOf(localContextValues), baseValue);
+            state.conditionSatisfied = true;
+            return evaluateExpression(dataSource, Collections.unmodifiableMap(localContextValues), baseValue);
 
         }
         return null;
@@ -264,7 +275,7 @@ public abstract class AbstractExpression implements Expression {
 
         for (Variable var : variables) {
             try {
-                EvaluationResult value = var.extractVariableValue(ImmutableMap.copyOf(contextValues), dataSource);
+                EvaluationResult value = var.extractVariableValue(contextValues, dataSource);
                 if (value != null) {
 
                     localVariables.put(VariableUtils.getVarName(var.getVariableName()),
@@ -275,8 +286,13 @@ public abstract class AbstractExpression implements Expression {
                             new EmptyEvaluationResult());
                 }
             } catch (DataExtractionException e) {
-                LOGGER.error("Cannot extract value for variable {} ", var.getVariableName());
+                if (LOGGER.isErrorEnabled()) {
+                    try (EvaluationPath.LoggingContext context = EvaluationPath.get().putInLoggingContext()) {
+                        LOGGER.error("Cannot extract value for variable {} ", var.getVariableName());
+                    }
+                }
                 LOGGER.debug("Cannot extract value for variable {} ", var.getVariableName(), e);
+                countFailure(dataSource);
             }
         }
         return localVariables;
@@ -307,6 +323,13 @@ public abstract class AbstractExpression implements Expression {
         return null;
     }
 
+    /**
+     * Tracks the state of a single call to evaluate.
+     */
+    private static final class EvaluationState {
+        private boolean conditionSatisfied;
+    }
+
     @Override
     public String toString() {
         ToStringBuilder.setDefaultStyle(ToStringStyle.SIMPLE_STYLE);
@@ -0,0 +1,136 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.expression;
+
+import java.util.Arrays;
+
+import org.slf4j.MDC;
+
+/**
+ * Path of the expression being evaluated on the current thread: the resource template name followed
+ * by the names of the fields evaluated to reach the expression. Expressions push and pop their field
+ * names, which only stores the name; the path text, for example "Patient-> Field:name-> Field:given",
+ * is only built when it is needed, for a log statement or the expression profiler.
+ *
+ * The Resource entry of the SLF4J MDC holds the resource template name while its resources are
+ * generated. Log statements of expressions that need the whole path put it in the MDC only while
+ * they log, see {@link #putInLoggingContext()}.
+ */
+public final class EvaluationPath {
+
+    private static final String RESOURCE = "Resource";
+    private static final String FIELD_SEPARATOR = "-> Field:";
+
+    private static final ThreadLocal<EvaluationPath> CURRENT = ThreadLocal.withInitial(EvaluationPath::new);
+
+    private String resource;
+    private String[] fields = new String[16];
+    private int size;
+
+    private EvaluationPath() {
+    }
+
+    /**
+     * @return Path of the current thread
+     */
+    public static EvaluationPath get() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Starts the path of a resource template, the fields of any previous path are dropped.
+     *
+     * @param resourceName Resource template name
+     */
+    public void startResource(String resourceName) {
+        resource = resourceName;
+        clearFields();
+        MDC.put(RESOURCE, resourceName);
+    }
+
+    /**
+     * Ends the path of the resource template.
+     */
+    public void endResource() {
+        resource = null;
+        clearFields();
+        MDC.remove(RESOURCE);
+    }
+
+    /**
+     * @return Resource template name or null if no resource is being generated
+     */
+    public String getResource() {
+        return resource;
+    }
+
+    void push(String field) {
+        if (size == fields.length) {
+            fields = Arrays.copyOf(fields, size * 2);
+        }
+        fields[size++] = field;
+    }
+
+    void pop() {
+        fields[--size] = null;
+    }
+
+    private void clearFields() {
+        Arrays.fill(fields, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * Puts the path in the Resource entry of the MDC until the returned context is closed, which
+     * restores the previous entry. Meant to be used around a log statement:
+     *
+     * <pre>
+     * try (LoggingContext context = EvaluationPath.get().putInLoggingContext()) {
+     *     LOGGER.warn(...);
+     * }
+     * </pre>
+     *
+     * @return Context to close once logged
+     */
+    public LoggingContext putInLoggingContext() {
+        String previous = MDC.get(RESOURCE);
+        MDC.put(RESOURCE, toString());
+        return new LoggingContext(previous);
+    }
+
+    /**
+     * @return Path text, the resource name followed by the field names
+     */
+    @Override
+    public String toString() {
+        StringBuilder path = new StringBuilder().append(resource);
+        for (int i = 0; i < size; i++) {
+            path.append(FIELD_SEPARATOR).append(fields[i]);
+        }
+        return path.toString();
+    }
+
+    /**
+     * Restores the Resource entry of the MDC when closed.
+     */
+    public static final class LoggingContext implements AutoCloseable {
+        private final String previous;
+
+        private LoggingContext(String previous) {
+            this.previous = previous;
+        }
+
+        @Override
+        public void close() {
+            if (previous != null) {
+                MDC.put(RESOURCE, previous);
+            } else {
+                MDC.remove(RESOURCE);
+            }
+        }
+    }
+
+}
@@ -6,11 +6,16 @@
 
 package io.github.linuxforhealth.hl7.expression;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang3.EnumUtils;
@@ -23,17 +28,24 @@ import org.apache.commons.text.matcher.StringMatcherFactory;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 
 import io.github.linuxforhealth.api.Condition;
 import io.github.linuxforhealth.api.Specification;
 import io.github.linuxforhealth.api.Variable;
+import io.github.linuxforhealth.core.data.CompiledJexlExpression;
+import io.github.linuxforhealth.core.data.JexlEngineUtil;
 import io.github.linuxforhealth.core.expression.condition.ConditionUtil;
 import io.github.linuxforhealth.hl7.expression.specification.SpecificationParser;
 import io.github.linuxforhealth.hl7.expression.variable.VariableGenerator;
 
 @JsonDeserialize(builder = ExpressionAttributes.Builder.class)
-public class ExpressionAttributes {
+public class ExpressionAttributes implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private static final String OBJECT_TYPE = Object.class.getSimpleName();
+    // Variable names, with the ? of fuzzy matched variables, and any other word of the raw text
+    private static final Pattern NAME_PATTERN = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*\\??");
 
     // Basic properties of an expression
     private String name;
@@ -48,12 +60,15 @@ public class ExpressionAttributes {
     private final Map<String, String> constants;
     private final String value;
     private final String valueOf;
+    // valueOf of a JEXL expression, compiled once when the template is loaded
+    private final CompiledJexlExpression compiledValueOf;
     private final boolean useGroup;
     private ExpressionType expressionType;
     private String toString;
     private final List<ExpressionAttributes> expressions;
     private final Map<String, ExpressionAttributes> expressionsMap;
     private final boolean isEvaluateLater;
+    private final Set<String> referencedNames;
 
     // if valueof attribute ends with * then list of values will be generated
     private boolean generateMultiple;
@@ -102,6 +117,12 @@ public class ExpressionAttributes {
             this.expressionType = ExpressionType.HL7SPEC;
         }
 
+        if (this.expressionType == ExpressionType.JEXL && StringUtils.isNotBlank(this.valueOf)) {
+            this.compiledValueOf = JexlEngineUtil.compile(this.valueOf);
+        } else {
+            this.compiledValueOf = null;
+        }
+
         if (exBuilder.expressions != null) {
             this.expressions = exBuilder.expressions;
         } else {
@@ -114,6 +135,24 @@ public class ExpressionAttributes {
             this.expressionsMap = null;
         }
 
+        Set<String> names = new HashSet<>();
+        addNames(exBuilder.rawSpecs, names);
+        addNames(exBuilder.rawCondition, names);
+        if (exBuilder.rawVariables != null) {
+            exBuilder.rawVariables.values().forEach(v -> addNames(v, names));
+        }
+        addNames(this.valueOf, names);
+        addNames(this.value, names);
+        this.referencedNames = ImmutableSet.copyOf(names);
+    }
+
+    private static void addNames(String text, Set<String> names) {
+        if (StringUtils.isNotBlank(text)) {
+            Matcher matcher = NAME_PATTERN.matcher(text);
+            while (matcher.find()) {
+                names.add(matcher.group());
+            }
+        }
     }
 
     public Map<String, ExpressionAttributes> getExpressionsMap() {
@@ -168,6 +207,10 @@ public class ExpressionAttributes {
         return valueOf;
     }
 
+    public CompiledJexlExpression getCompiledValueOf() {
+        return compiledValueOf;
+    }
+
     public String getName() {
         return name;
     }
@@ -176,6 +219,18 @@ public class ExpressionAttributes {
         return expressions;
     }
 
+    /**
+     * Returns the names the expression may read from the context values: every word of its specs,
+     * condition, variables, valueOf and value, which covers the variables as well as the names used
+     * by JEXL expressions. Fuzzy matched variables keep their trailing ?. The names of nested
+     * expressions are not included.
+     *
+     * @return Names used by the expression, there can be more than it actually reads but never fewer
+     */
+    public Set<String> getReferencedNames() {
+        return referencedNames;
+    }
+
     /**
      * Extract special chars: * indicates to extract fields from multiple entries and indicates to
      * retain empty (null) fields
@@ -0,0 +1,190 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.expression;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.github.linuxforhealth.core.config.ConverterConfiguration;
+
+/**
+ * Records the number of evaluations and the time spent in each template expression, to find the
+ * expressions that cost the most. Expressions are identified by their {@link EvaluationPath}: the resource
+ * template name followed by the names of the fields evaluated to reach the expression, for example
+ * "Patient-> Field:name-> Field:given".
+ *
+ * Profiling is off unless expression.profiling is set to true in the converter configuration or it
+ * is turned on with {@link #setEnabled(boolean)}. The times recorded are kept until {@link #reset()}.
+ *
+ * The total time of an expression includes the time of the expressions evaluated for it, for
+ * example the fields of a data type template. The self time excludes them, so the expressions with
+ * the most self time are the ones to look at first.
+ */
+public final class ExpressionProfiler {
+
+    private static final Map<String, Recorder> STATS = new ConcurrentHashMap<>();
+    // Evaluations in progress on the current thread, to subtract the time of nested expressions
+    private static final ThreadLocal<Deque<Evaluation>> EVALUATIONS = ThreadLocal.withInitial(ArrayDeque::new);
+
+    private static volatile Boolean enabled;
+
+    private ExpressionProfiler() {
+    }
+
+    /**
+     * @return True if expression evaluations are recorded
+     */
+    public static boolean isEnabled() {
+        Boolean isEnabled = enabled;
+        return isEnabled != null ? isEnabled : ConverterConfiguration.getInstance().isExpressionProfiling();
+    }
+
+    /**
+     * Turns profiling on or off, whatever the converter configuration says.
+     *
+     * @param isEnabled True to record expression evaluations
+     */
+    public static void setEnabled(boolean isEnabled) {
+        enabled = isEnabled;
+    }
+
+    /**
+     * Removes all the recorded evaluations.
+     */
+    public static void reset() {
+        STATS.clear();
+    }
+
+    /**
+     * @return Recorded expressions, the one with the most self time first
+     */
+    public static List<ExpressionStats> getReport() {
+        // Snapshots, so the order does not change while sorting
+        List<ExpressionStats> report = new ArrayList<>();
+        STATS.values().forEach(recorder -> report.add(recorder.snapshot()));
+        report.sort(Comparator.comparingLong(ExpressionStats::getSelfNanos).reversed());
+        return report;
+    }
+
+    /**
+     * Formats the expressions with the most self time as a table, one expression per line.
+     *
+     * @param limit Maximum number of expressions in the report
+     * @return Report text
+     */
+    public static String formatReport(int limit) {
+        List<ExpressionStats> report = getReport();
+        StringBuilder text = new StringBuilder(String.format("%5s %10s %12s %12s %10s  %s%n", "Rank", "Calls",
+                "Self ms", "Total ms", "Max ms", "Expression"));
+        for (int i = 0; i < report.size() && i < limit; i++) {
+            ExpressionStats stats = report.get(i);
+            text.append(String.format("%5d %10d %12.3f %12.3f %10.3f  %s%n", i + 1, stats.getCount(),
+                    toMillis(stats.getSelfNanos()), toMillis(stats.getTotalNanos()), toMillis(stats.getMaxNanos()),
+                    stats.getPath()));
+        }
+        return text.toString();
+    }
+
+    static Evaluation start() {
+        Evaluation evaluation = new Evaluation(System.nanoTime());
+        EVALUATIONS.get().push(evaluation);
+        return evaluation;
+    }
+
+    static void stop(Evaluation evaluation, String path) {
+        long elapsed = System.nanoTime() - evaluation.start;
+        Deque<Evaluation> evaluations = EVALUATIONS.get();
+        evaluations.pop();
+        Evaluation parent = evaluations.peek();
+        if (parent != null) {
+            parent.nestedNanos += elapsed;
+        }
+        STATS.computeIfAbsent(path, Recorder::new).record(elapsed, elapsed - evaluation.nestedNanos);
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    static final class Evaluation {
+        private final long start;
+        private long nestedNanos;
+
+        private Evaluation(long start) {
+            this.start = start;
+        }
+    }
+
+    private static final class Recorder {
+        private final String path;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAdder selfNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        private Recorder(String path) {
+            this.path = path;
+        }
+
+        private void record(long elapsed, long self) {
+            count.increment();
+            totalNanos.add(elapsed);
+            selfNanos.add(self);
+            maxNanos.accumulate(elapsed);
+        }
+
+        private ExpressionStats snapshot() {
+            return new ExpressionStats(path, count.sum(), totalNanos.sum(), selfNanos.sum(), maxNanos.get());
+        }
+    }
+
+    /**
+     * Evaluations recorded for one expression.
+     */
+    public static final class ExpressionStats {
+        private final String path;
+        private final long count;
+        private final long totalNanos;
+        private final long selfNanos;
+        private final long maxNanos;
+
+        private ExpressionStats(String path, long count, long totalNanos, long selfNanos, long maxNanos) {
+            this.path = path;
+            this.count = count;
+            this.totalNanos = totalNanos;
+            this.selfNanos = selfNanos;
+            this.maxNanos = maxNanos;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        public long getSelfNanos() {
+            return selfNanos;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+    }
+
+}
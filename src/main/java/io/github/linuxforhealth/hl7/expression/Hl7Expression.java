@@ -33,6 +33,8 @@ import io.github.linuxforhealth.hl7.data.ValueExtractor;
  */
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class Hl7Expression extends AbstractExpression {
+  private static final long serialVersionUID = 1L;
+
   private static final Logger LOGGER = LoggerFactory.getLogger(Hl7Expression.class);
 
 
@@ -5,7 +5,6 @@
  */
 package io.github.linuxforhealth.hl7.expression;
 
-import java.util.HashMap;
 import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -14,11 +13,15 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import io.github.linuxforhealth.api.EvaluationResult;
 import io.github.linuxforhealth.api.InputDataExtractor;
 import io.github.linuxforhealth.api.Variable;
+import io.github.linuxforhealth.core.data.CompiledJexlExpression;
 import io.github.linuxforhealth.core.expression.EmptyEvaluationResult;
+import io.github.linuxforhealth.core.expression.ScopedContextMap;
 
 
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class JEXLExpression extends AbstractExpression {
+  private static final long serialVersionUID = 1L;
+
   private static final Logger LOGGER = LoggerFactory.getLogger(JEXLExpression.class);
 
   @JsonCreator
@@ -32,7 +35,7 @@ public class JEXLExpression extends AbstractExpression {
   @Override
   public EvaluationResult evaluateExpression(InputDataExtractor dataSource,
       Map<String, EvaluationResult> contextValues, EvaluationResult baseValue) {
-    Map<String, EvaluationResult> localContextValues = new HashMap<>(contextValues);
+    Map<String, EvaluationResult> localContextValues = new ScopedContextMap(contextValues);
     for (Variable v : this.getVariables()) {
       if (!localContextValues.containsKey(v.getVariableName())) {
         localContextValues.put(v.getVariableName(), new EmptyEvaluationResult());
@@ -40,6 +43,10 @@ public class JEXLExpression extends AbstractExpression {
     }
     LOGGER.info("Evaluating expression");
     LOGGER.debug("Evaluating value of {}", this.getExpressionAttr().getValueOf());
+    CompiledJexlExpression compiledValueOf = this.getExpressionAttr().getCompiledValueOf();
+    if (compiledValueOf != null) {
+      return dataSource.evaluateJexlExpression(compiledValueOf, contextValues);
+    }
     return dataSource.evaluateJexlExpression(this.getExpressionAttr().getValueOf(), contextValues);
   }
 
@@ -7,6 +7,7 @@ package io.github.linuxforhealth.hl7.expression;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -33,6 +34,8 @@ import io.github.linuxforhealth.hl7.util.ExpressionUtility;
  */
 
 public class NestedExpression extends AbstractExpression {
+  private static final long serialVersionUID = 1L;
+
   private static final Logger LOGGER = LoggerFactory.getLogger(NestedExpression.class);
 
   private Map<String, Expression> childexpressions;
@@ -67,6 +70,10 @@ public class NestedExpression extends AbstractExpression {
         "childexpressions cannot be null or empty");
   }
 
+  public Collection<Expression> getChildExpressions() {
+    return Collections.unmodifiableCollection(childexpressions.values());
+  }
+
   @Override
   protected EvaluationResult evaluateExpression(InputDataExtractor dataSource,
       Map<String, EvaluationResult> contextValues, EvaluationResult baseValue) {
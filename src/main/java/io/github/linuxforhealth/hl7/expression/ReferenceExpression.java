@@ -6,7 +6,7 @@
 package io.github.linuxforhealth.hl7.expression;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import org.slf4j.Logger;
@@ -14,11 +14,12 @@ import org.slf4j.LoggerFactory;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.google.common.base.Preconditions;
-import com.google.common.collect.ImmutableMap;
 import io.github.linuxforhealth.api.EvaluationResult;
 import io.github.linuxforhealth.api.InputDataExtractor;
+import io.github.linuxforhealth.api.ResourceModel;
 import io.github.linuxforhealth.api.ResourceValue;
 import io.github.linuxforhealth.core.expression.EvaluationResultFactory;
+import io.github.linuxforhealth.core.expression.ScopedContextMap;
 import io.github.linuxforhealth.core.resource.ResourceResult;
 import io.github.linuxforhealth.hl7.resource.HL7DataBasedResourceModel;
 import io.github.linuxforhealth.hl7.resource.ResourceReader;
@@ -32,6 +33,7 @@ import io.github.linuxforhealth.hl7.resource.ResourceReader;
  */
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class ReferenceExpression extends AbstractExpression {
+  private static final long serialVersionUID = 1L;
 
 
   private static final Logger LOGGER = LoggerFactory.getLogger(ReferenceExpression.class);
@@ -72,10 +74,10 @@ public class ReferenceExpression extends AbstractExpression {
       EvaluationResult genBaseValue = EvaluationResultFactory
           .getEvaluationResult(primaryResourceResult.getValue().getResource());
 
-      Map<String, EvaluationResult> localContextValues = new HashMap<>(contextValues);
+      Map<String, EvaluationResult> localContextValues = new ScopedContextMap(contextValues);
 
       ResourceResult result = this.referenceModel.evaluate(dataSource,
-          ImmutableMap.copyOf(localContextValues), genBaseValue);
+          Collections.unmodifiableMap(localContextValues), genBaseValue);
       if (result != null && result.getValue() != null) {
         ResourceValue resolvedvalues = result.getValue();
 
@@ -96,7 +98,7 @@ public class ReferenceExpression extends AbstractExpression {
   private ResourceResult evaluateResource(InputDataExtractor dataSource,
       Map<String, EvaluationResult> contextValues, EvaluationResult hl7SpecValue) {
     ResourceResult result =
-        this.data.evaluate(dataSource, ImmutableMap.copyOf(contextValues), hl7SpecValue);
+        this.data.evaluate(dataSource, Collections.unmodifiableMap(contextValues), hl7SpecValue);
     if (result != null && result.getValue() != null) {
       return result;
     }
@@ -110,6 +112,13 @@ public class ReferenceExpression extends AbstractExpression {
     return this.reference;
   }
 
+  /**
+   * @return Model of the referenced resource and model of the reference to it
+   */
+  public List<ResourceModel> getResourceModels() {
+    return List.of(this.data, this.referenceModel);
+  }
+
 
 
 }
@@ -5,15 +5,16 @@
  */
 package io.github.linuxforhealth.hl7.expression;
 
+import java.util.Collections;
 import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.google.common.base.Preconditions;
-import com.google.common.collect.ImmutableMap;
 import io.github.linuxforhealth.api.EvaluationResult;
 import io.github.linuxforhealth.api.InputDataExtractor;
+import io.github.linuxforhealth.api.ResourceModel;
 import io.github.linuxforhealth.api.ResourceValue;
 import io.github.linuxforhealth.core.expression.EvaluationResultFactory;
 import io.github.linuxforhealth.core.resource.ResourceResult;
@@ -28,6 +29,7 @@ import io.github.linuxforhealth.hl7.resource.ResourceReader;
  */
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class ResourceExpression extends AbstractExpression {
+  private static final long serialVersionUID = 1L;
 
 
   private static final Logger LOGGER = LoggerFactory.getLogger(ResourceExpression.class);
@@ -58,7 +60,7 @@ public class ResourceExpression extends AbstractExpression {
     EvaluationResult evaluationResult = null;
 
     ResourceResult result =
-        this.data.evaluate(dataSource, ImmutableMap.copyOf(contextValues), baseValue);
+        this.data.evaluate(dataSource, Collections.unmodifiableMap(contextValues), baseValue);
     if (result != null && result.getValue() != null) {
       ResourceValue resolvedvalues = result.getValue();
 
@@ -80,6 +82,10 @@ public class ResourceExpression extends AbstractExpression {
     return this.resourceToGenerate;
   }
 
+  public ResourceModel getResourceModel() {
+    return this.data;
+  }
+
 
 
   HL7DataBasedResourceModel getData() {
@@ -5,7 +5,7 @@
  */
 package io.github.linuxforhealth.hl7.expression;
 
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.Map;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.ImmutablePair;
@@ -14,12 +14,12 @@ import org.slf4j.LoggerFactory;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.google.common.base.Preconditions;
-import com.google.common.collect.ImmutableMap;
 import io.github.linuxforhealth.api.EvaluationResult;
 import io.github.linuxforhealth.api.InputDataExtractor;
 import io.github.linuxforhealth.core.Constants;
 import io.github.linuxforhealth.core.expression.ContextValueUtils;
 import io.github.linuxforhealth.core.expression.EvaluationResultFactory;
+import io.github.linuxforhealth.core.expression.ScopedContextMap;
 import io.github.linuxforhealth.core.expression.VariableUtils;
 import io.github.linuxforhealth.hl7.data.SimpleDataTypeMapper;
 import io.github.linuxforhealth.hl7.data.ValueExtractor;
@@ -28,6 +28,8 @@ import io.github.linuxforhealth.hl7.util.ExpressionUtility;
 
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class SimpleExpression extends AbstractExpression {
+  private static final long serialVersionUID = 1L;
+
   private static final Logger LOGGER = LoggerFactory.getLogger(SimpleExpression.class);
 
   private String value;
@@ -56,7 +58,7 @@ public class SimpleExpression extends AbstractExpression {
       Map<String, EvaluationResult> contextValues, EvaluationResult baseValue) {
 
     Preconditions.checkArgument(contextValues != null, "contextValues cannot be null");
-    Map<String, EvaluationResult> localContextValues = new HashMap<>(contextValues);
+    Map<String, EvaluationResult> localContextValues = new ScopedContextMap(contextValues);
     if (baseValue != null && !baseValue.isEmpty()) {
       localContextValues.put(baseValue.getIdentifier(), baseValue);
       localContextValues.put(Constants.BASE_VALUE_NAME, baseValue);
@@ -75,7 +77,7 @@ public class SimpleExpression extends AbstractExpression {
       boolean fuzzyMatch = VariableUtils.isFuzzyMatch(value);
       EvaluationResult obj =
           ContextValueUtils.getVariableValuesFromVariableContextMap(value,
-              ImmutableMap.copyOf(localContextValues),
+              Collections.unmodifiableMap(localContextValues),
               this.getExpressionAttr().isUseGroup(), fuzzyMatch);
       if (obj != null && !obj.isEmpty()) {
         resolvedValue = obj.getValue();
@@ -1,5 +1,6 @@
 package io.github.linuxforhealth.hl7.expression.specification;
 
+import java.io.Serializable;
 import java.util.Map;
 import io.github.linuxforhealth.api.EvaluationResult;
 import io.github.linuxforhealth.api.InputDataExtractor;
@@ -8,7 +9,8 @@ import io.github.linuxforhealth.core.expression.ContextValueUtils;
 import io.github.linuxforhealth.core.expression.EmptyEvaluationResult;
 import io.github.linuxforhealth.core.expression.SimpleEvaluationResult;
 
-public class ContextMapData implements InputDataExtractor {
+public class ContextMapData implements InputDataExtractor, Serializable {
+  private static final long serialVersionUID = 1L;
 
 
 
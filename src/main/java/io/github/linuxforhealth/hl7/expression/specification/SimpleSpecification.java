@@ -5,13 +5,14 @@
  */
 package io.github.linuxforhealth.hl7.expression.specification;
 
-import java.util.HashMap;
+import java.io.Serializable;
 import java.util.Map;
 import io.github.linuxforhealth.api.EvaluationResult;
 import io.github.linuxforhealth.api.InputDataExtractor;
 import io.github.linuxforhealth.api.Specification;
 import io.github.linuxforhealth.core.Constants;
 import io.github.linuxforhealth.core.expression.EvaluationResultFactory;
+import io.github.linuxforhealth.core.expression.ScopedContextMap;
 import io.github.linuxforhealth.core.expression.VariableUtils;
 
 
@@ -23,7 +24,8 @@ import io.github.linuxforhealth.core.expression.VariableUtils;
  * @author pbhallam
  */
 
-public class SimpleSpecification implements Specification {
+public class SimpleSpecification implements Specification, Serializable {
+  private static final long serialVersionUID = 1L;
 
   private String variableName;
   private boolean isExtractMultiple;
@@ -58,7 +60,7 @@ public class SimpleSpecification implements Specification {
   @Override
   public EvaluationResult extractValueForSpec(InputDataExtractor dataSource,
       Map<String, EvaluationResult> contextValues) {
-    Map<String, EvaluationResult> localContextValues = new HashMap<>(contextValues);
+    Map<String, EvaluationResult> localContextValues = new ScopedContextMap(contextValues);
     localContextValues.put(Constants.USE_GROUP,
         EvaluationResultFactory.getEvaluationResult(useGroup));
     return primaryDataSource.extractValueForSpec(this, localContextValues);
@@ -68,7 +70,7 @@ public class SimpleSpecification implements Specification {
   @Override
   public EvaluationResult extractMultipleValuesForSpec(InputDataExtractor dataSource,
       Map<String, EvaluationResult> contextValues) {
-    Map<String, EvaluationResult> localContextValues = new HashMap<>(contextValues);
+    Map<String, EvaluationResult> localContextValues = new ScopedContextMap(contextValues);
     localContextValues.put(Constants.USE_GROUP,
         EvaluationResultFactory.getEvaluationResult(useGroup));
     return primaryDataSource.extractMultipleValuesForSpec(this, localContextValues);
@@ -5,6 +5,8 @@
  */
 package io.github.linuxforhealth.hl7.expression.variable;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.List;
 import java.util.Map;
 
@@ -21,9 +23,11 @@ import io.github.linuxforhealth.hl7.data.ValueExtractor;
  * @author pbhallam
  */
 public class DataTypeVariable extends SimpleVariable {
+    private static final long serialVersionUID = 1L;
 
     private String valueType;
-    private ValueExtractor<Object, ?> resolver;
+    // Resolvers are functions, they are looked up again from the value type when deserialized
+    private transient ValueExtractor<Object, ?> resolver;
 
     /**
      * 
@@ -69,4 +73,9 @@ public class DataTypeVariable extends SimpleVariable {
         return resolver;
     }
 
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        this.resolver = SimpleDataTypeMapper.getValueResolver(this.valueType);
+    }
+
 }
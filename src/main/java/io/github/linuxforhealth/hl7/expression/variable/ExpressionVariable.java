@@ -5,13 +5,17 @@
  */
 package io.github.linuxforhealth.hl7.expression.variable;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.apache.commons.lang3.StringUtils;
+
 import io.github.linuxforhealth.api.EvaluationResult;
 import io.github.linuxforhealth.api.InputDataExtractor;
+import io.github.linuxforhealth.core.data.CompiledJexlExpression;
+import io.github.linuxforhealth.core.data.JexlEngineUtil;
 import io.github.linuxforhealth.core.expression.EmptyEvaluationResult;
+import io.github.linuxforhealth.core.expression.ScopedContextMap;
 
 /**
  * Defines Variable object that can be used during the expression evaluation.
@@ -20,8 +24,10 @@ import io.github.linuxforhealth.core.expression.EmptyEvaluationResult;
  * @author pbhallam
  */
 public class ExpressionVariable extends SimpleVariable {
+    private static final long serialVersionUID = 1L;
 
     private String expression;
+    private CompiledJexlExpression compiledExpression;
 
     /**
      * Constructor for Variable with default type: Object
@@ -35,12 +41,14 @@ public class ExpressionVariable extends SimpleVariable {
             boolean extractMultiple) {
         super(name, spec, extractMultiple, false);
         this.expression = expression;
+        this.compiledExpression = compile(expression);
     }
 
     public ExpressionVariable(String name, String expression, List<String> spec,
             boolean extractMultiple, boolean retainEmpty) {
         super(name, spec, extractMultiple, false, retainEmpty);
         this.expression = expression;
+        this.compiledExpression = compile(expression);
     }
 
     // resolve variable value
@@ -57,16 +65,22 @@ public class ExpressionVariable extends SimpleVariable {
 
         if (this.expression != null) {
             // resolve expression
-            Map<String, EvaluationResult> localContextValues = new HashMap<>(contextValues);
+            Map<String, EvaluationResult> localContextValues = new ScopedContextMap(contextValues);
 
             localContextValues.put(this.getName(), result);
 
-            result = dataSource.evaluateJexlExpression(expression, localContextValues);
+            result = compiledExpression != null
+                    ? dataSource.evaluateJexlExpression(compiledExpression, localContextValues)
+                    : dataSource.evaluateJexlExpression(expression, localContextValues);
         }
         return result;
 
     }
 
+    private static CompiledJexlExpression compile(String expression) {
+        return StringUtils.isNotBlank(expression) ? JexlEngineUtil.compile(expression) : null;
+    }
+
     /**
      * @return String representation of expression
      */
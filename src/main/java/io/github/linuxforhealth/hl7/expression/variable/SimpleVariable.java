@@ -5,10 +5,11 @@
  */
 package io.github.linuxforhealth.hl7.expression.variable;
 
+import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import com.google.common.collect.ImmutableMap;
 import io.github.linuxforhealth.api.EvaluationResult;
 import io.github.linuxforhealth.api.InputDataExtractor;
 import io.github.linuxforhealth.api.Specification;
@@ -25,7 +26,9 @@ import io.github.linuxforhealth.hl7.expression.specification.SpecificationParser
  *
  * @author pbhallam
  */
-public class SimpleVariable implements Variable {
+public class SimpleVariable implements Variable, Serializable {
+  private static final long serialVersionUID = 1L;
+
   public static final String OBJECT_TYPE = Object.class.getSimpleName();
 
   private String name;
@@ -120,7 +123,7 @@ public class SimpleVariable implements Variable {
         boolean fuzzyMatch = VariableUtils.isFuzzyMatch(specValue);
         fetchedValue =
             ContextValueUtils.getVariableValuesFromVariableContextMap(specValue,
-                ImmutableMap.copyOf(contextValues),
+                Collections.unmodifiableMap(contextValues),
                 false, fuzzyMatch);
       } else {
         EvaluationResult gen;
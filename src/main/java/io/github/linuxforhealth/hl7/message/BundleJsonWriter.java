@@ -0,0 +1,116 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.message;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Date;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.hl7.fhir.r4.model.Bundle.BundleType;
+import org.hl7.fhir.r4.model.InstantType;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import io.github.linuxforhealth.api.ResourceValue;
+import io.github.linuxforhealth.core.ObjectMapperUtil;
+import io.github.linuxforhealth.fhir.FHIRContext;
+import io.github.linuxforhealth.fhir.FHIRResourceMapper;
+
+/**
+ * Writes a FHIR bundle as JSON directly from the resolved {@link ResourceValue} maps using the
+ * Jackson streaming generator, without building the HAPI {@link org.hl7.fhir.r4.model.Bundle}. Each
+ * entry is written as soon as it is added, so the bundle is never held in memory.
+ */
+class BundleJsonWriter {
+
+    private static final String RESOURCE_TYPE = "resourceType";
+    private static final String ID = "id";
+    // Empty values are left out, the same as when HAPI encodes a resource
+    private static final ObjectMapper OBJ_MAPPER = ObjectMapperUtil.getJSONInstance().copy()
+            .setDefaultPropertyInclusion(JsonInclude.Value.construct(Include.NON_EMPTY, Include.NON_EMPTY))
+            .disable(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+    private final JsonGenerator generator;
+    private final FHIRContext context;
+    private boolean hasEntries;
+
+    BundleJsonWriter(Writer writer, FHIRContext context) throws IOException {
+        this.generator = OBJ_MAPPER.getFactory().createGenerator(writer)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        if (context.isPrettyPrint()) {
+            this.generator.useDefaultPrettyPrinter();
+        }
+        this.context = context;
+    }
+
+    void writeStart(String id, BundleType bundleType, Date lastUpdated) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField(RESOURCE_TYPE, "Bundle");
+        generator.writeStringField(ID, id);
+        generator.writeObjectFieldStart("meta");
+        generator.writeStringField("lastUpdated", new InstantType(lastUpdated).getValueAsString());
+        generator.writeEndObject();
+        generator.writeStringField("type", bundleType.toCode());
+    }
+
+    /**
+     * Writes the resource as a bundle entry.
+     *
+     * @param resourceValue Resolved resource values
+     * @throws UncheckedIOException - if the entry cannot be written
+     */
+    void writeEntry(ResourceValue resourceValue) {
+        Map<String, Object> resource = resourceValue.getResource();
+        String resourceType = context.getCtx()
+                .getResourceDefinition(FHIRResourceMapper.getResourceClass(resourceValue.getFHIRResourceType()))
+                .getName();
+        try {
+            if (!hasEntries) {
+                generator.writeArrayFieldStart("entry");
+                hasEntries = true;
+            }
+            generator.writeStartObject();
+            Object id = resource.get(ID);
+            if (id != null) {
+                generator.writeStringField("fullUrl", resourceType + "/" + id);
+            }
+            generator.writeObjectFieldStart("resource");
+            generator.writeStringField(RESOURCE_TYPE, resourceType);
+            for (Entry<String, Object> e : resource.entrySet()) {
+                if (!RESOURCE_TYPE.equals(e.getKey()) && !isEmpty(e.getValue())) {
+                    generator.writeFieldName(e.getKey());
+                    OBJ_MAPPER.writeValue(generator, e.getValue());
+                }
+            }
+            generator.writeEndObject();
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    void writeEnd() throws IOException {
+        if (hasEntries) {
+            generator.writeEndArray();
+        }
+        generator.writeEndObject();
+        generator.flush();
+    }
+
+    private static boolean isEmpty(Object value) {
+        return value == null || (value instanceof String && ((String) value).isEmpty())
+                || (value instanceof Iterable && !((Iterable<?>) value).iterator().hasNext())
+                || (value instanceof Map && ((Map<?, ?>) value).isEmpty());
+    }
+
+}
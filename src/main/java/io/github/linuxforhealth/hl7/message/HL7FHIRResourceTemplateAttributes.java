@@ -5,6 +5,7 @@
  */
 package io.github.linuxforhealth.hl7.message;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 import org.apache.commons.lang3.StringUtils;
@@ -14,7 +15,8 @@ import io.github.linuxforhealth.api.ResourceModel;
 import io.github.linuxforhealth.hl7.resource.ResourceReader;
 
 @JsonDeserialize(builder = HL7FHIRResourceTemplateAttributes.Builder.class)
-public class HL7FHIRResourceTemplateAttributes {
+public class HL7FHIRResourceTemplateAttributes implements Serializable {
+  private static final long serialVersionUID = 1L;
 
   private String resourceName;
   private boolean repeats;
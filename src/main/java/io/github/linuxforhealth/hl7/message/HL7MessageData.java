@@ -6,7 +6,6 @@
 package io.github.linuxforhealth.hl7.message;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.regex.Pattern;
@@ -15,16 +14,20 @@ import org.apache.commons.lang3.math.NumberUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
 import ca.uhn.hl7v2.model.Segment;
 import ca.uhn.hl7v2.model.Type;
+import io.github.linuxforhealth.api.ConversionMetrics;
 import io.github.linuxforhealth.api.EvaluationResult;
 import io.github.linuxforhealth.api.InputDataExtractor;
 import io.github.linuxforhealth.api.Specification;
+import io.github.linuxforhealth.core.data.CompiledJexlExpression;
 import io.github.linuxforhealth.core.data.JexlEngineUtil;
 import io.github.linuxforhealth.core.exception.DataExtractionException;
 import io.github.linuxforhealth.core.expression.EmptyEvaluationResult;
 import io.github.linuxforhealth.core.expression.EvaluationResultFactory;
 import io.github.linuxforhealth.core.expression.SimpleEvaluationResult;
+import io.github.linuxforhealth.core.metrics.NoOpConversionMetrics;
 import io.github.linuxforhealth.hl7.data.Hl7RelatedGeneralUtils;
 import io.github.linuxforhealth.hl7.expression.specification.HL7Specification;
 import io.github.linuxforhealth.hl7.parsing.HL7DataExtractor;
@@ -32,6 +35,7 @@ import io.github.linuxforhealth.hl7.parsing.result.ParsingResult;
 
 public class HL7MessageData implements InputDataExtractor {
   private HL7DataExtractor hde;
+  private ConversionMetrics metrics;
 
   private static final Logger LOGGER = LoggerFactory.getLogger(HL7MessageData.class);
   protected static final Pattern HL7_SPEC_SPLITTER = Pattern.compile(".");
@@ -39,8 +43,14 @@ public class HL7MessageData implements InputDataExtractor {
       new JexlEngineUtil("GeneralUtils", Hl7RelatedGeneralUtils.class);
 
   public HL7MessageData(HL7DataExtractor hde) {
+    this(hde, NoOpConversionMetrics.INSTANCE);
+  }
+
+  public HL7MessageData(HL7DataExtractor hde, ConversionMetrics metrics) {
     Preconditions.checkArgument(hde != null, "Hl7DataExtractor cannot be null.");
+    Preconditions.checkArgument(metrics != null, "metrics cannot be null.");
     this.hde = hde;
+    this.metrics = metrics;
   }
 
 
@@ -175,14 +185,26 @@ public class HL7MessageData implements InputDataExtractor {
     Preconditions.checkArgument(StringUtils.isNotBlank(expression), "jexlExp cannot be blank");
     Preconditions.checkArgument(contextValues != null, "context cannot be null");
     String trimedJexlExp = StringUtils.trim(expression);
-    Map<String, Object> localContext = new HashMap<>();
-    Map<String, EvaluationResult> resolvedVariables = new HashMap<>(contextValues);
-    resolvedVariables.forEach((key, value) -> localContext.put(key, value.getValue()));
-    Object obj = JEXL.evaluate(trimedJexlExp, localContext);
+    Object obj = JEXL.evaluate(trimedJexlExp, getValues(contextValues));
     return EvaluationResultFactory.getEvaluationResult(obj);
   }
 
 
+  @Override
+  public EvaluationResult evaluateJexlExpression(CompiledJexlExpression expression,
+      Map<String, EvaluationResult> contextValues) {
+    Preconditions.checkArgument(expression != null, "jexlExp cannot be null");
+    Preconditions.checkArgument(contextValues != null, "context cannot be null");
+    Object obj = JEXL.evaluate(expression, getValues(contextValues));
+    return EvaluationResultFactory.getEvaluationResult(obj);
+  }
+
+  // View of the values of the context, the values are only read for the variables an expression uses
+  private static Map<String, Object> getValues(Map<String, EvaluationResult> contextValues) {
+    return Maps.transformValues(contextValues, value -> value != null ? value.getValue() : null);
+  }
+
+
   @Override
   public String getName() {
     return this.hde.getMessageType();
@@ -195,6 +217,12 @@ public class HL7MessageData implements InputDataExtractor {
   }
 
 
+  @Override
+  public ConversionMetrics getMetrics() {
+    return this.metrics;
+  }
+
+
   @Override
   public EvaluationResult extractValueForSpec(Specification spec,
       Map<String, EvaluationResult> contextValues) {
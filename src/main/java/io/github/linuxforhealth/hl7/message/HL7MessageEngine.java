@@ -5,13 +5,28 @@
  */
 package io.github.linuxforhealth.hl7.message;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import org.hl7.fhir.r4.model.Bundle;
@@ -22,13 +37,21 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
 import com.google.common.base.Preconditions;
-import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 
+import ca.uhn.fhir.parser.IJsonLikeParser;
+import ca.uhn.fhir.parser.json.jackson.JacksonStructure;
 import ca.uhn.hl7v2.model.Structure;
+import io.github.linuxforhealth.api.ConversionMetrics;
 import io.github.linuxforhealth.api.EvaluationResult;
 import io.github.linuxforhealth.api.FHIRResourceTemplate;
 import io.github.linuxforhealth.api.InputDataExtractor;
@@ -37,13 +60,17 @@ import io.github.linuxforhealth.api.ResourceModel;
 import io.github.linuxforhealth.api.ResourceValue;
 import io.github.linuxforhealth.core.Constants;
 import io.github.linuxforhealth.core.ObjectMapperUtil;
+import io.github.linuxforhealth.core.config.ConverterConfiguration;
 import io.github.linuxforhealth.core.exception.RequiredConstraintFailureException;
 import io.github.linuxforhealth.core.expression.EvaluationResultFactory;
+import io.github.linuxforhealth.core.expression.ScopedContextMap;
 import io.github.linuxforhealth.core.expression.SimpleEvaluationResult;
+import io.github.linuxforhealth.core.metrics.NoOpConversionMetrics;
 import io.github.linuxforhealth.core.resource.ResourceResult;
 import io.github.linuxforhealth.core.resource.SimpleResourceValue;
 import io.github.linuxforhealth.fhir.FHIRContext;
 import io.github.linuxforhealth.fhir.FHIRResourceMapper;
+import io.github.linuxforhealth.hl7.expression.EvaluationPath;
 import io.github.linuxforhealth.hl7.message.util.SegmentExtractorUtil;
 import io.github.linuxforhealth.hl7.message.util.SegmentGroup;
 import io.github.linuxforhealth.hl7.resource.ResourceEvaluationResult;
@@ -57,11 +84,18 @@ import io.github.linuxforhealth.hl7.util.ExpressionUtility;
  */
 public class HL7MessageEngine implements MessageEngine {
 
-    private static final String RESOURCE = "Resource";
     private static final Logger LOGGER = LoggerFactory.getLogger(HL7MessageEngine.class);
-    private static final ObjectMapper OBJ_MAPPER = ObjectMapperUtil.getJSONInstance();
+    // Decimals are kept as BigDecimal in the tree, the same as when HAPI parses JSON text. Floats
+    // are converted from their shortest text form, otherwise 7.3f would become 7.300000190734863.
+    private static final ObjectMapper OBJ_MAPPER = ObjectMapperUtil.getJSONInstance().copy()
+            .enable(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS)
+            .setNodeFactory(JsonNodeFactory.withExactBigDecimals(true))
+            .registerModule(
+                    new SimpleModule().addSerializer(Float.class, new FloatAsDecimalSerializer()));
     private FHIRContext context;
     private BundleType bundleType;
+    private ConversionMetrics metrics;
+    private Executor resourceExecutor;
 
     /**
      * 
@@ -77,8 +111,35 @@ public class HL7MessageEngine implements MessageEngine {
      * @param bundleType Type of bundel
      */
     public HL7MessageEngine(FHIRContext context, BundleType bundleType) {
+        this(context, bundleType, NoOpConversionMetrics.INSTANCE);
+    }
+
+    /**
+     * 
+     * @param context Context to be used
+     * @param bundleType Type of bundel
+     * @param metrics Metrics the conversion timings and counters are recorded to
+     */
+    public HL7MessageEngine(FHIRContext context, BundleType bundleType, ConversionMetrics metrics) {
+        this(context, bundleType, metrics, null);
+    }
+
+    /**
+     * 
+     * @param context Context to be used
+     * @param bundleType Type of bundel
+     * @param metrics Metrics the conversion timings and counters are recorded to
+     * @param resourceExecutor Executor the resource templates of a message that do not depend on
+     *        each other are generated on, null to generate them one after the other on the calling
+     *        thread
+     */
+    public HL7MessageEngine(FHIRContext context, BundleType bundleType, ConversionMetrics metrics,
+            Executor resourceExecutor) {
+        Preconditions.checkArgument(metrics != null, "metrics cannot be null");
         this.context = context;
         this.bundleType = bundleType;
+        this.metrics = metrics;
+        this.resourceExecutor = resourceExecutor;
     }
 
     /**
@@ -91,60 +152,123 @@ public class HL7MessageEngine implements MessageEngine {
     public Bundle transform(final InputDataExtractor dataInput,
             final Iterable<FHIRResourceTemplate> resources,
             final Map<String, EvaluationResult> contextValues) {
+        return transform(dataInput, resources, null, contextValues);
+    }
+
+    // The dependencies of the templates are found when the message template is loaded, when null
+    // they are found for each message if the templates are generated concurrently
+    Bundle transform(final InputDataExtractor dataInput, final Iterable<FHIRResourceTemplate> resources,
+            final ResourceTemplateDependencies dependencies, final Map<String, EvaluationResult> contextValues) {
         Preconditions.checkArgument(dataInput != null, "dataInput cannot be null");
         Preconditions.checkArgument(contextValues != null, "contextValues cannot be null");
         Preconditions.checkArgument(resources != null, "resources cannot be null");
 
-        HL7MessageData hl7DataInput = (HL7MessageData) dataInput;
         Bundle bundle = initBundle();
-        Map<String, EvaluationResult> localContextValues = new HashMap<>(contextValues);
+        String messageType = dataInput.getName();
+        transform((HL7MessageData) dataInput, resources, dependencies, contextValues, obj -> {
+            long start = System.nanoTime();
+            addEntry(obj.getFHIRResourceType(), obj, bundle);
+            metrics.recordTime(ConversionMetrics.ADD_ENTRY, messageType, obj.getFHIRResourceType(),
+                    System.nanoTime() - start);
+        });
+
+        LOGGER.info("Successfully converted message");
+        LOGGER.debug("Successfully converted Message: {} , Message Control Id: {} to FHIR bundle resource with id {}",
+                dataInput.getName(), dataInput.getId(), bundle.getId());
+        return bundle;
+    }
+
+    /**
+     * Converts a HL7 message to FHIR bundle JSON with the list of resources specified. The JSON is
+     * written to the writer as the resources are generated, without building a FHIR {@link Bundle}
+     * resource, so the bundle cannot be validated.
+     *
+     * @param dataInput - {@link InputDataExtractor}
+     * @param resources -{@link FHIRResourceTemplate}
+     * @param contextValues - Map of context values
+     * @param writer - Writer the bundle JSON is written to, it is not closed
+     * @throws IOException - if the JSON cannot be written
+     */
+    public void transform(final InputDataExtractor dataInput,
+            final Iterable<FHIRResourceTemplate> resources,
+            final Map<String, EvaluationResult> contextValues, final Writer writer) throws IOException {
+        transform(dataInput, resources, null, contextValues, writer);
+    }
+
+    void transform(final InputDataExtractor dataInput, final Iterable<FHIRResourceTemplate> resources,
+            final ResourceTemplateDependencies dependencies, final Map<String, EvaluationResult> contextValues,
+            final Writer writer) throws IOException {
+        Preconditions.checkArgument(dataInput != null, "dataInput cannot be null");
+        Preconditions.checkArgument(contextValues != null, "contextValues cannot be null");
+        Preconditions.checkArgument(resources != null, "resources cannot be null");
+        Preconditions.checkArgument(writer != null, "writer cannot be null");
+
+        String bundleId = UUID.randomUUID().toString();
+        BundleJsonWriter bundleWriter = new BundleJsonWriter(writer, context);
+        bundleWriter.writeStart(bundleId, bundleType, LocalDateTime.now().toDate());
+        try {
+            transform((HL7MessageData) dataInput, resources, dependencies, contextValues, bundleWriter::writeEntry);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        bundleWriter.writeEnd();
+
+        LOGGER.info("Successfully converted message");
+        LOGGER.debug("Successfully converted Message: {} , Message Control Id: {} to FHIR bundle JSON with id {}",
+                dataInput.getName(), dataInput.getId(), bundleId);
+    }
+
+    // Package-private for the benchmarks
+    void transform(final HL7MessageData hl7DataInput, final Iterable<FHIRResourceTemplate> resources,
+            final Map<String, EvaluationResult> contextValues, final Consumer<ResourceValue> bundleConsumer) {
+        transform(hl7DataInput, resources, null, contextValues, bundleConsumer);
+    }
+
+    private void transform(final HL7MessageData hl7DataInput, final Iterable<FHIRResourceTemplate> resources,
+            final ResourceTemplateDependencies dependencies, final Map<String, EvaluationResult> contextValues,
+            final Consumer<ResourceValue> bundleConsumer) {
+        Map<String, EvaluationResult> localContextValues = new ScopedContextMap(contextValues);
+        String messageType = hl7DataInput.getName();
+        Consumer<ResourceValue> entryConsumer = obj -> {
+            metrics.increment(ConversionMetrics.RESOURCES_GENERATED, messageType, obj.getFHIRResourceType());
+            bundleConsumer.accept(obj);
+        };
 
         // Add run-time properties to localContextVariables
         for (Map.Entry<String,String> entry : getFHIRContext().getProperties().entrySet()){
             localContextValues.put(entry.getKey(), new SimpleEvaluationResult<String>(entry.getValue()));
         }
  
+        EvaluationPath path = EvaluationPath.get();
         List<ResourceResult> resourceResultsWithEvalLater = new ArrayList<>();
-        for (FHIRResourceTemplate genericTemplate : resources) {
-            HL7FHIRResourceTemplate hl7ResourceTemplate = (HL7FHIRResourceTemplate) genericTemplate;
-            ResourceModel rs = genericTemplate.getResource();
-            List<ResourceResult> resourceResults = new ArrayList<>();
-            try {
-                MDC.put(RESOURCE, rs.getName());
-                List<ResourceResult> results = generateResources(hl7DataInput, hl7ResourceTemplate, localContextValues);
-                if (results != null) {
-                    resourceResults.addAll(results);
-                    results.stream()
-                            .filter(
-                                    r -> (r.getPendingExpressions() != null && !r.getPendingExpressions().isEmpty()))
-                            .forEach(re -> resourceResultsWithEvalLater.add(re));
-                    List<ResourceResult> resultsToAddToBundle = results.stream()
-                            .filter(
-                                    r -> (r.getPendingExpressions() == null || r.getPendingExpressions().isEmpty()))
-                            .collect(Collectors.toList());
-
-                    addResourceToBundle(bundle, resultsToAddToBundle);
-
-                }
-
-                resourceResults.removeIf(isEmpty());
-                Map<String, EvaluationResult> newContextValues = getContextValuesFromResource(hl7ResourceTemplate,
-                        resourceResults);
-                localContextValues.putAll(newContextValues);
-            } catch (IllegalArgumentException | IllegalStateException e) {
-                LOGGER.error("Exception during resource {} generation", rs.getName());
-                LOGGER.debug("Exception during resource {} generation", rs.getName(), e);
-
-            } finally {
-                MDC.remove(RESOURCE);
+        if (resourceExecutor == null) {
+            for (FHIRResourceTemplate genericTemplate : resources) {
+                GeneratedResources generated = generateTemplate(hl7DataInput,
+                        (HL7FHIRResourceTemplate) genericTemplate, localContextValues);
+                localContextValues.putAll(
+                        addGeneratedResources(generated, entryConsumer, resourceResultsWithEvalLater, messageType));
             }
+        } else {
+            List<FHIRResourceTemplate> templates = Lists.newArrayList(resources);
+            ResourceTemplateDependencies templateDependencies = dependencies;
+            if (templateDependencies == null || templateDependencies.size() != templates.size()) {
+                templateDependencies = ResourceTemplateDependencies.of(templates);
+            }
+            List<Map<String, EvaluationResult>> newContextValues = generateResourcesConcurrently(hl7DataInput,
+                    templates, templateDependencies, localContextValues, entryConsumer,
+                    resourceResultsWithEvalLater, messageType);
+            // No template is being generated anymore, so the context can be changed
+            newContextValues.forEach(localContextValues::putAll);
         }
         for (ResourceResult r : resourceResultsWithEvalLater) {
-            MDC.put(RESOURCE, "PendingExpressions");
+            path.startResource("PendingExpressions");
+            String resourceType = r.getValue().getFHIRResourceType();
+            long start = System.nanoTime();
             try {
-                Map<String, EvaluationResult> primaryContextValues = new HashMap<>(localContextValues);
-                r.getPendingExpressions().getContextValues().entrySet()
-                        .forEach(e -> primaryContextValues.putIfAbsent(e.getKey(), e.getValue()));
+                Map<String, EvaluationResult> primaryContextValues = new ScopedContextMap(localContextValues);
+                r.getPendingExpressions().getContextValues().entrySet().stream()
+                        .filter(e -> !primaryContextValues.containsKey(e.getKey()))
+                        .forEach(e -> primaryContextValues.put(e.getKey(), e.getValue()));
                 ResourceEvaluationResult res = ExpressionUtility.evaluate(hl7DataInput, primaryContextValues,
                         r.getPendingExpressions().getExpressions());
 
@@ -158,20 +282,193 @@ public class HL7MessageEngine implements MessageEngine {
                         new SimpleResourceValue(resolvedValues, r.getValue().getFHIRResourceType()),
                         additionalResources, r.getGroupId());
 
-                addResourceToBundle(bundle, Lists.newArrayList(updatedResourceResult));
+                addResourceToBundle(entryConsumer, Lists.newArrayList(updatedResourceResult));
             } catch (IllegalArgumentException | IllegalStateException e) {
                 LOGGER.error("Exception during resource PendingExpressions generation");
                 LOGGER.debug("Exception during resource PendingExpressions generation", e);
+                metrics.increment(ConversionMetrics.RESOURCES_FAILED, messageType, resourceType);
 
             } finally {
-                MDC.remove(RESOURCE);
+                path.endResource();
+                metrics.recordTime(ConversionMetrics.PENDING_EXPRESSIONS, messageType, resourceType,
+                        System.nanoTime() - start);
             }
         }
+    }
 
-        LOGGER.info("Successfully converted message");
-        LOGGER.debug("Successfully converted Message: {} , Message Control Id: {} to FHIR bundle resource with id {}",
-                dataInput.getName(), dataInput.getId(), bundle.getId());
-        return bundle;
+    /**
+     * Generates the resources of the templates on the resource executor. A template is submitted
+     * once the templates it depends on are added to the bundle, with a context made of the context
+     * values and the values published by those templates, which is what it would read if the
+     * templates were generated one after the other. The context of a template only depends on the
+     * dependencies, never on which other templates happen to be done, so the output does not depend
+     * on the thread timing. The calling thread adds the resources to the bundle in template order,
+     * generating any template no thread has started yet itself, so the bundle is the same as when
+     * generating sequentially and the conversion goes on if the executor is busy.
+     *
+     * @return Context values published by each template, in template order
+     */
+    private List<Map<String, EvaluationResult>> generateResourcesConcurrently(final HL7MessageData hl7DataInput,
+            final List<FHIRResourceTemplate> templates, final ResourceTemplateDependencies dependencies,
+            final Map<String, EvaluationResult> contextValues, final Consumer<ResourceValue> entryConsumer,
+            final List<ResourceResult> resourceResultsWithEvalLater, final String messageType) {
+        indexSegments(hl7DataInput, templates);
+        int count = templates.size();
+        List<CompletableFuture<Map<String, EvaluationResult>>> published = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            published.add(new CompletableFuture<>());
+        }
+        List<GenerationTask> tasks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            HL7FHIRResourceTemplate template = (HL7FHIRResourceTemplate) templates.get(i);
+            int[] templateDependencies = dependencies.getDependencies(i);
+            GenerationTask task = new GenerationTask(inConversionContext(() -> {
+                Map<String, EvaluationResult> templateContextValues = new ScopedContextMap(contextValues);
+                for (int dependency : templateDependencies) {
+                    templateContextValues.putAll(published.get(dependency).join());
+                }
+                return generateTemplate(hl7DataInput, template, templateContextValues);
+            }));
+            tasks.add(task);
+            CompletableFuture.allOf(Arrays.stream(templateDependencies).mapToObj(published::get)
+                    .toArray(CompletableFuture[]::new)).thenRun(() -> submit(task));
+        }
+
+        List<Map<String, EvaluationResult>> newContextValues = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            GenerationTask task = tasks.get(i);
+            task.run();
+            Map<String, EvaluationResult> values = addGeneratedResources(task.getResult(), entryConsumer,
+                    resourceResultsWithEvalLater, messageType);
+            newContextValues.add(values);
+            published.get(i).complete(values);
+        }
+        return newContextValues;
+    }
+
+    /**
+     * Searches the segments of all the templates on the calling thread, so the segment index of
+     * the message is complete before the templates are generated concurrently. The executor threads
+     * then find the structures in the index and mostly read fields and components, which takes no
+     * lock.
+     */
+    private static void indexSegments(HL7MessageData hl7DataInput, List<FHIRResourceTemplate> templates) {
+        for (FHIRResourceTemplate genericTemplate : templates) {
+            HL7FHIRResourceTemplate template = (HL7FHIRResourceTemplate) genericTemplate;
+            try {
+                getMultipleSegments(hl7DataInput, template, template.getAttributes().getSegment().getGroup(),
+                        template.getAttributes().getSegment().getSegment());
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                // Reported when the template is generated
+                LOGGER.debug("Cannot search the segments of resource {}", template.getResourceName(), e);
+            }
+        }
+    }
+
+    private void submit(GenerationTask task) {
+        try {
+            resourceExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // The calling thread generates the template when it gets to it
+            LOGGER.debug("Resource generation task rejected by the executor", e);
+        }
+    }
+
+    // Runs the supplier with the logging context and the zone of the conversion, on any thread
+    private static <T> Supplier<T> inConversionContext(Supplier<T> supplier) {
+        Map<String, String> mdc = MDC.getCopyOfContextMap();
+        ZoneId zoneId = ConverterConfiguration.getConversionZoneId();
+        return () -> {
+            Map<String, String> previousMdc = MDC.getCopyOfContextMap();
+            ZoneId previousZoneId = ConverterConfiguration.getConversionZoneId();
+            setLoggingContext(mdc);
+            ConverterConfiguration.setConversionZoneId(zoneId);
+            try {
+                return supplier.get();
+            } finally {
+                setLoggingContext(previousMdc);
+                ConverterConfiguration.setConversionZoneId(previousZoneId);
+            }
+        };
+    }
+
+    private static void setLoggingContext(Map<String, String> values) {
+        if (values != null) {
+            MDC.setContextMap(values);
+        } else {
+            MDC.clear();
+        }
+    }
+
+    private GeneratedResources generateTemplate(HL7MessageData hl7DataInput, HL7FHIRResourceTemplate template,
+            Map<String, EvaluationResult> contextValues) {
+        EvaluationPath path = EvaluationPath.get();
+        String resourceName = template.getResource().getName();
+        List<ResourceResult> results = null;
+        boolean failed = false;
+        long start = System.nanoTime();
+        try {
+            path.startResource(resourceName);
+            results = generateResources(hl7DataInput, template, contextValues);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            LOGGER.error("Exception during resource {} generation", resourceName);
+            LOGGER.debug("Exception during resource {} generation", resourceName, e);
+            metrics.increment(ConversionMetrics.RESOURCES_FAILED, hl7DataInput.getName(), resourceName);
+            failed = true;
+        } finally {
+            path.endResource();
+        }
+        return new GeneratedResources(template, results, failed, System.nanoTime() - start);
+    }
+
+    /**
+     * Adds the generated resources without pending expressions to the bundle and keeps the others
+     * for later.
+     *
+     * @return Context values published by the template
+     */
+    private Map<String, EvaluationResult> addGeneratedResources(GeneratedResources generated,
+            Consumer<ResourceValue> entryConsumer, List<ResourceResult> resourceResultsWithEvalLater,
+            String messageType) {
+        if (generated.failed) {
+            metrics.recordTime(ConversionMetrics.TRANSFORM_RESOURCE, messageType, generated.getName(),
+                    generated.nanos);
+            return Collections.emptyMap();
+        }
+        EvaluationPath path = EvaluationPath.get();
+        List<ResourceResult> resourceResults = new ArrayList<>();
+        long start = System.nanoTime();
+        try {
+            path.startResource(generated.getName());
+            List<ResourceResult> results = generated.results;
+            if (results != null) {
+                resourceResults.addAll(results);
+                results.stream()
+                        .filter(
+                                r -> (r.getPendingExpressions() != null && !r.getPendingExpressions().isEmpty()))
+                        .forEach(re -> resourceResultsWithEvalLater.add(re));
+                List<ResourceResult> resultsToAddToBundle = results.stream()
+                        .filter(
+                                r -> (r.getPendingExpressions() == null || r.getPendingExpressions().isEmpty()))
+                        .collect(Collectors.toList());
+
+                addResourceToBundle(entryConsumer, resultsToAddToBundle);
+
+            }
+
+            resourceResults.removeIf(isEmpty());
+            return getContextValuesFromResource(generated.template, resourceResults);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            LOGGER.error("Exception during resource {} generation", generated.getName());
+            LOGGER.debug("Exception during resource {} generation", generated.getName(), e);
+            metrics.increment(ConversionMetrics.RESOURCES_FAILED, messageType, generated.getName());
+            return Collections.emptyMap();
+
+        } finally {
+            path.endResource();
+            metrics.recordTime(ConversionMetrics.TRANSFORM_RESOURCE, messageType, generated.getName(),
+                    generated.nanos + System.nanoTime() - start);
+        }
     }
 
     private List<ResourceResult> generateResources(HL7MessageData hl7DataInput,
@@ -190,11 +487,12 @@ public class HL7MessageEngine implements MessageEngine {
         return resourceResults;
     }
 
-    private void addResourceToBundle(Bundle bundle, List<ResourceResult> resourceResults) {
+    private static void addResourceToBundle(Consumer<ResourceValue> entryConsumer,
+            List<ResourceResult> resourceResults) {
         if (resourceResults != null && !resourceResults.isEmpty()) {
             for (ResourceResult resReult : resourceResults) {
-                addToBundle(bundle, Lists.newArrayList(resReult.getValue()));
-                addToBundle(bundle, resReult.getAdditionalResources());
+                addToBundle(entryConsumer, Lists.newArrayList(resReult.getValue()));
+                addToBundle(entryConsumer, resReult.getAdditionalResources());
             }
         }
     }
@@ -284,7 +582,7 @@ public class HL7MessageEngine implements MessageEngine {
         List<ResourceResult> resourceResults = new ArrayList<>();
         for (SegmentGroup currentGroup : multipleSegments) {
 
-            Map<String, EvaluationResult> localContextValues = new HashMap<>(contextValues);
+            Map<String, EvaluationResult> localContextValues = new ScopedContextMap(contextValues);
             localContextValues.put(Constants.GROUP_ID,
                     EvaluationResultFactory.getEvaluationResult(currentGroup.getGroupId()));
             // Resource needs to be generated for each base value in the group
@@ -296,7 +594,7 @@ public class HL7MessageEngine implements MessageEngine {
 
             for (EvaluationResult baseValue : baseValues) {
                 try {
-                    ResourceResult result = rs.evaluate(hl7DataInput, ImmutableMap.copyOf(localContextValues),
+                    ResourceResult result = rs.evaluate(hl7DataInput, Collections.unmodifiableMap(localContextValues),
                             baseValue);
                     if (result != null && result.getValue() != null) {
                         resourceResults.add(result);
@@ -309,35 +607,66 @@ public class HL7MessageEngine implements MessageEngine {
                         | IllegalStateException e) {
                     LOGGER.warn("generateMultipleResources - Exception encountered");
                     LOGGER.debug("generateMultipleResources - Exception encountered", e);
+                    hl7DataInput.getMetrics().increment(ConversionMetrics.RESOURCES_FAILED,
+                            hl7DataInput.getName(), rs.getName());
                 }
             }
         }
         return resourceResults;
     }
 
-    private void addToBundle(Bundle bundle, List<ResourceValue> objects) {
+    private static void addToBundle(Consumer<ResourceValue> entryConsumer, List<ResourceValue> objects) {
         if (objects != null && !objects.isEmpty()) {
-            objects.forEach(obj -> addEntry(obj.getFHIRResourceType(), obj, bundle));
+            objects.stream().filter(Objects::nonNull).forEach(entryConsumer);
         }
     }
 
-    private void addEntry(String resourceClass, ResourceValue obj, Bundle bundle) {
+    // Package-private for the benchmarks
+    void addEntry(String resourceClass, ResourceValue obj, Bundle bundle) {
+
+        if (obj != null) {
+            LOGGER.debug("Converting resourceName {} to FHIR {}", resourceClass, obj.getResource());
+            ObjectNode json = toJsonTree(obj);
+            LOGGER.debug("Adding resourceName {} to FHIR {}", resourceClass, json);
+            if (json != null) {
+                // HAPI builds the resource from the JSON tree directly, so the resolved values are
+                // never written out as JSON text and parsed back.
+                JacksonStructure structure = new JacksonStructure();
+                structure.setNativeObject(json);
+                org.hl7.fhir.r4.model.Resource parsed = ((IJsonLikeParser) context.getParser())
+                        .parseResource(FHIRResourceMapper.getResourceClass(resourceClass), structure);
+
+                bundle.addEntry().setResource(parsed).setFullUrl(parsed.getId());
+            }
+        }
+    }
 
-        try {
-            if (obj != null) {
-                LOGGER.debug("Converting resourceName {} to FHIR {}", resourceClass, obj.getResource());
-                String json = OBJ_MAPPER.writeValueAsString(obj.getResource());
-                LOGGER.debug("Adding resourceName {} to FHIR {}", resourceClass, json);
-                if (json != null) {
-                    org.hl7.fhir.r4.model.Resource parsed = context.getParser()
-                            .parseResource(FHIRResourceMapper.getResourceClass(resourceClass), json);
-
-                    bundle.addEntry().setResource(parsed).setFullUrl(parsed.getId());
-                }
+    private static final class FloatAsDecimalSerializer extends StdSerializer<Float> {
+
+        private static final long serialVersionUID = 1L;
+
+        FloatAsDecimalSerializer() {
+            super(Float.class);
+        }
+
+        @Override
+        public void serialize(Float value, JsonGenerator generator, SerializerProvider provider)
+                throws IOException {
+            if (value.isNaN() || value.isInfinite()) {
+                generator.writeNumber(value);
+            } else {
+                generator.writeNumber(new BigDecimal(value.toString()));
             }
-        } catch (JsonProcessingException e) {
+        }
+    }
+
+    private static ObjectNode toJsonTree(ResourceValue obj) {
+        try {
+            return OBJ_MAPPER.valueToTree(obj.getResource());
+        } catch (IllegalArgumentException e) {
             LOGGER.error("Processing exception when serialization");
             LOGGER.debug("Processing exception when serialization", e);
+            return null;
         }
     }
 
@@ -345,4 +674,69 @@ public class HL7MessageEngine implements MessageEngine {
     public FHIRContext getFHIRContext() {
         return context;
     }
+
+    @Override
+    public ConversionMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Resources generated from a template, waiting to be added to the bundle.
+     */
+    private static final class GeneratedResources {
+        private final HL7FHIRResourceTemplate template;
+        private final List<ResourceResult> results;
+        private final boolean failed;
+        private final long nanos;
+
+        private GeneratedResources(HL7FHIRResourceTemplate template, List<ResourceResult> results, boolean failed,
+                long nanos) {
+            this.template = template;
+            this.results = results;
+            this.failed = failed;
+            this.nanos = nanos;
+        }
+
+        private String getName() {
+            return template.getResource().getName();
+        }
+    }
+
+    /**
+     * Generates the resources of a template once, on the first thread to run the task.
+     */
+    private static final class GenerationTask implements Runnable {
+        private final Supplier<GeneratedResources> generation;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private final CompletableFuture<GeneratedResources> result = new CompletableFuture<>();
+
+        private GenerationTask(Supplier<GeneratedResources> generation) {
+            this.generation = generation;
+        }
+
+        @Override
+        public void run() {
+            if (claimed.compareAndSet(false, true)) {
+                try {
+                    result.complete(generation.get());
+                } catch (RuntimeException | Error e) {
+                    result.completeExceptionally(e);
+                }
+            }
+        }
+
+        // Waits for the thread running the task, failures are thrown as if it ran on this thread
+        private GeneratedResources getResult() {
+            try {
+                return result.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                } else if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw e;
+            }
+        }
+    }
 }
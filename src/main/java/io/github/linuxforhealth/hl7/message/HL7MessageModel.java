@@ -6,6 +6,8 @@
 package io.github.linuxforhealth.hl7.message;
 
 import java.io.IOException;
+import java.io.Serializable;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -17,6 +19,7 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.base.Preconditions;
 import ca.uhn.hl7v2.HL7Exception;
 import ca.uhn.hl7v2.model.Message;
+import io.github.linuxforhealth.api.ConversionMetrics;
 import io.github.linuxforhealth.api.FHIRResourceTemplate;
 import io.github.linuxforhealth.api.MessageEngine;
 import io.github.linuxforhealth.api.MessageTemplate;
@@ -26,10 +29,13 @@ import io.github.linuxforhealth.hl7.parsing.HL7HapiParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class HL7MessageModel implements MessageTemplate<Message> {
+public class HL7MessageModel implements MessageTemplate<Message>, Serializable {
+    private static final long serialVersionUID = 1L;
 
     private List<FHIRResourceTemplate> resources;
     private String messageName;
+    // Which templates read the resources of earlier templates, so the others can be generated concurrently
+    private final ResourceTemplateDependencies dependencies;
     private static final Logger LOGGER = LoggerFactory.getLogger(HL7MessageModel.class);
 
     @JsonCreator
@@ -40,6 +46,7 @@ public class HL7MessageModel implements MessageTemplate<Message> {
         if (resources != null && !resources.isEmpty()) {
             this.resources.addAll(resources);
         }
+        this.dependencies = ResourceTemplateDependencies.of(this.resources);
 
     }
 
@@ -57,20 +64,14 @@ public class HL7MessageModel implements MessageTemplate<Message> {
     public String convert(String message, MessageEngine engine) throws IOException {
         Preconditions.checkArgument(StringUtils.isNotBlank(message),
                 "Input Hl7 message cannot be blank");
-        HL7HapiParser hparser = null;
         try {
-            hparser = new HL7HapiParser();
-
-            Message hl7message = hparser.getParser().parse(message);
+            // Creating a HAPI context is expensive, so every conversion uses the shared parser
+            Message hl7message = HL7HapiParser.getSharedInstance().getParser().parse(message);
             Bundle bundle = convert(hl7message, engine);
             return engine.getFHIRContext().encodeResourceToString(bundle);
 
         } catch (HL7Exception e) {
             throw new IllegalArgumentException("Cannot parse the message.", e);
-        } finally {
-            if (hparser != null) {
-                hparser.getContext().close();
-            }
         }
 
     }
@@ -81,16 +82,27 @@ public class HL7MessageModel implements MessageTemplate<Message> {
         Preconditions.checkArgument(message != null, "Input Hl7 message cannot be null");
         Preconditions.checkArgument(engine != null, "MessageEngine cannot be null");
 
+        // One extractor per message, all resource templates share its segment index
         HL7DataExtractor hl7DTE = new HL7DataExtractor(message);
-        HL7MessageData dataSource = new HL7MessageData(hl7DTE);
+        HL7MessageData dataSource = new HL7MessageData(hl7DTE, engine.getMetrics());
 
         Bundle bundle = null;
 
         // Catch any exceptions and log them without the message.
         // NOTE: We have seen PHI in these exception messages.
         try {
-            bundle = engine.transform(dataSource, this.getResources(), new HashMap<>());
-            engine.getFHIRContext().validate(bundle);
+            if (engine instanceof HL7MessageEngine) {
+                bundle = ((HL7MessageEngine) engine).transform(dataSource, this.getResources(), dependencies,
+                        new HashMap<>());
+            } else {
+                bundle = engine.transform(dataSource, this.getResources(), new HashMap<>());
+            }
+            if (engine.getFHIRContext().isValidateResource()) {
+                long start = System.nanoTime();
+                engine.getFHIRContext().validate(bundle);
+                engine.getMetrics().recordTime(ConversionMetrics.VALIDATE, dataSource.getName(), null,
+                        System.nanoTime() - start);
+            }
 
         } catch (Exception e) {
             // Print stack class and trace without the error message.
@@ -102,6 +114,38 @@ public class HL7MessageModel implements MessageTemplate<Message> {
     }
 
 
+    /**
+     * Converts the message to FHIR bundle JSON, written directly to the writer without building a
+     * FHIR {@link Bundle} resource.
+     *
+     * @param message HL7 message to convert
+     * @param engine Engine used for the conversion
+     * @param writer Writer the bundle JSON is written to, it is not closed
+     * @throws IOException - if the JSON cannot be written
+     * @throws IllegalStateException - if the message cannot be transformed
+     */
+    public void convert(Message message, HL7MessageEngine engine, Writer writer) throws IOException {
+        Preconditions.checkArgument(message != null, "Input Hl7 message cannot be null");
+        Preconditions.checkArgument(engine != null, "MessageEngine cannot be null");
+
+        // One extractor per message, all resource templates share its segment index
+        HL7DataExtractor hl7DTE = new HL7DataExtractor(message);
+        HL7MessageData dataSource = new HL7MessageData(hl7DTE, engine.getMetrics());
+
+        // Catch any exceptions and log them without the message.
+        // NOTE: We have seen PHI in these exception messages.
+        try {
+            engine.transform(dataSource, this.getResources(), dependencies, new HashMap<>(), writer);
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            // Print stack class and trace without the error message.
+            handleException(e);
+            throw new IllegalStateException("Error transforming HL7 message.");
+        }
+    }
+
+
     @Override
     public String getMessageName() {
         return messageName;
@@ -0,0 +1,185 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.message;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import com.google.common.collect.ImmutableSet;
+
+import io.github.linuxforhealth.api.Expression;
+import io.github.linuxforhealth.api.FHIRResourceTemplate;
+import io.github.linuxforhealth.api.ResourceModel;
+import io.github.linuxforhealth.hl7.expression.AbstractExpression;
+import io.github.linuxforhealth.hl7.expression.Hl7Expression;
+import io.github.linuxforhealth.hl7.expression.JEXLExpression;
+import io.github.linuxforhealth.hl7.expression.NestedExpression;
+import io.github.linuxforhealth.hl7.expression.ReferenceExpression;
+import io.github.linuxforhealth.hl7.expression.ResourceExpression;
+import io.github.linuxforhealth.hl7.expression.SimpleExpression;
+import io.github.linuxforhealth.hl7.resource.HL7DataBasedResourceModel;
+
+/**
+ * Dependencies between the resource templates of a message template. The resources generated from a
+ * referenced template (isReferenced) are added to the context values under the template's resource
+ * name, or the resource name followed by _ and the group id, for the templates after it. A template
+ * depends on the earlier referenced templates whose resource name matches a name its expressions
+ * use, including the names of the resource, data type and nested expressions it evaluates, see
+ * {@link io.github.linuxforhealth.hl7.expression.ExpressionAttributes#getReferencedNames()}.
+ *
+ * Expressions that are evaluated later (evaluateLater) are left out: they are evaluated once all
+ * the templates are generated, with all the context values.
+ *
+ * The analysis is conservative: a template depends on all the earlier referenced templates when one
+ * of the names it may read cannot be found, that is when it uses a resource model that is missing
+ * or an expression type other than the ones of this package, and every later template depends on a
+ * referenced template whose resource name cannot be told apart in the names.
+ */
+final class ResourceTemplateDependencies implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    // Expressions whose names are all in their attributes and in the expressions they evaluate
+    private static final Set<Class<?>> ANALYSED_EXPRESSIONS = ImmutableSet.of(Hl7Expression.class,
+            JEXLExpression.class, SimpleExpression.class, NestedExpression.class, ResourceExpression.class,
+            ReferenceExpression.class);
+
+    // Resource names the names of the expressions are matched against, see ExpressionAttributes
+    private static final Pattern RESOURCE_NAME_PATTERN = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
+    private final int[][] dependencies;
+
+    private ResourceTemplateDependencies(int[][] dependencies) {
+        this.dependencies = dependencies;
+    }
+
+    /**
+     * Finds the dependencies of the resource templates.
+     *
+     * @param templates Resource templates, in the order they are generated
+     * @return Dependencies of each template
+     */
+    static ResourceTemplateDependencies of(List<FHIRResourceTemplate> templates) {
+        int[][] dependencies = new int[templates.size()][];
+        for (int i = 0; i < templates.size(); i++) {
+            Set<String> names = getReferencedNames(templates.get(i).getResource());
+            List<Integer> earlier = new ArrayList<>();
+            for (int j = 0; j < i; j++) {
+                FHIRResourceTemplate template = templates.get(j);
+                if (template.isReferenced() && (names == null || isUsed(template.getResourceName(), names))) {
+                    earlier.add(j);
+                }
+            }
+            dependencies[i] = earlier.stream().mapToInt(Integer::intValue).toArray();
+        }
+        return new ResourceTemplateDependencies(dependencies);
+    }
+
+    /**
+     * @return Number of templates
+     */
+    int size() {
+        return dependencies.length;
+    }
+
+    /**
+     * @param index Index of the template
+     * @return Indexes of the earlier templates the template depends on, in ascending order
+     */
+    int[] getDependencies(int index) {
+        return dependencies[index].clone();
+    }
+
+    // True if one of the names can read the context values of the resource
+    private static boolean isUsed(String resourceName, Set<String> names) {
+        if (resourceName == null || !RESOURCE_NAME_PATTERN.matcher(resourceName).matches()) {
+            return true;
+        }
+        for (String name : names) {
+            // A name used with a group reads the name followed by _ and the group id
+            if (name.equals(resourceName) || name.startsWith(resourceName + "_")
+                    || resourceName.startsWith(name + "_")) {
+                return true;
+            }
+            // Fuzzy matched variables read every context value whose name starts with theirs
+            if (name.endsWith("?")) {
+                String prefix = name.substring(0, name.length() - 1);
+                if (resourceName.startsWith(prefix) || prefix.startsWith(resourceName)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // Null if one of the expressions cannot be analysed
+    private static Set<String> getReferencedNames(ResourceModel resource) {
+        if (!isAnalysed(resource)) {
+            return null;
+        }
+        Set<String> names = new HashSet<>();
+        Set<ResourceModel> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        visited.add(resource);
+        for (Expression expression : resource.getExpressions().values()) {
+            if ((expression == null || !expression.isEvaluateLater())
+                    && !addReferencedNames(expression, names, visited)) {
+                return null;
+            }
+        }
+        return names;
+    }
+
+    private static boolean addReferencedNames(ResourceModel resource, Set<String> names,
+            Set<ResourceModel> visited) {
+        if (!isAnalysed(resource)) {
+            return false;
+        }
+        if (!visited.add(resource)) {
+            return true;
+        }
+        for (Expression expression : resource.getExpressions().values()) {
+            if (!addReferencedNames(expression, names, visited)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Only the models of the templates are known to read nothing but what their expressions read
+    private static boolean isAnalysed(ResourceModel resource) {
+        return resource instanceof HL7DataBasedResourceModel && resource.getExpressions() != null;
+    }
+
+    private static boolean addReferencedNames(Expression expression, Set<String> names,
+            Set<ResourceModel> visited) {
+        if (expression == null || !ANALYSED_EXPRESSIONS.contains(expression.getClass())) {
+            return false;
+        }
+        names.addAll(((AbstractExpression) expression).getExpressionAttr().getReferencedNames());
+        if (expression instanceof ResourceExpression) {
+            return addReferencedNames(((ResourceExpression) expression).getResourceModel(), names, visited);
+        } else if (expression instanceof ReferenceExpression) {
+            for (ResourceModel model : ((ReferenceExpression) expression).getResourceModels()) {
+                if (!addReferencedNames(model, names, visited)) {
+                    return false;
+                }
+            }
+        } else if (expression instanceof NestedExpression) {
+            for (Expression child : ((NestedExpression) expression).getChildExpressions()) {
+                if (!addReferencedNames(child, names, visited)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+}
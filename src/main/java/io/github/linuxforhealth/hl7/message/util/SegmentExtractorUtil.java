@@ -111,7 +111,7 @@ public class SegmentExtractorUtil {
                 Map<String, List<Structure>> additionalSegmentValues = extractAdditionalSegmentValue(primary,
                         primaryGroup, additionalSegments, dataExtractor);
 
-                String groupId = generateGroupId(parent, parentGroupUsedForParentSegment);
+                String groupId = generateGroupId(parent, parentGroupUsedForParentSegment, dataExtractor);
                 if (primarySegments != null && !primarySegments.isEmpty()) {
                     returnValues
                             .add(new SegmentGroup(Lists.newArrayList(primary), additionalSegmentValues, groupId));
@@ -141,8 +141,19 @@ public class SegmentExtractorUtil {
 
     }
 
+    // The structures of a group path are the same for every resource template of the message, so
+    // they are kept in the segment index of the message.
     private static List<Structure> getChildStructures(List<String> parentGroup,
             HL7DataExtractor dataExtractor) {
+        if (parentGroup.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return dataExtractor.getSegmentIndex().getStructures(parentGroup,
+                () -> Collections.unmodifiableList(searchChildStructures(parentGroup, dataExtractor)));
+    }
+
+    private static List<Structure> searchChildStructures(List<String> parentGroup,
+            HL7DataExtractor dataExtractor) {
 
         if (parentGroup.isEmpty()) {
             return new ArrayList<>();
@@ -215,14 +226,16 @@ public class SegmentExtractorUtil {
             }
         } else if (CollectionUtils.containsAll(primaryGroups, groups)) {
             String commonParentGroup = getCommonParent(groups, primaryGroups);
-            Structure commonParent = getParentGroup(primaryStruct, commonParentGroup);
+            Structure commonParent = dataExtractor.getSegmentIndex().getParentGroup(primaryStruct,
+                    commonParentGroup);
 
             values = getStructures(commonParent, seg.getSegment(), dataExtractor);
         } else if (getCommonParent(groups, primaryGroups) != null) {
 
             String commonParentGroup = getCommonParent(groups, primaryGroups);
 
-            Structure commonParent = getParentGroup(primaryStruct, commonParentGroup);
+            Structure commonParent = dataExtractor.getSegmentIndex().getParentGroup(primaryStruct,
+                    commonParentGroup);
             List<String> relativeGroupsToCommonParent = new ArrayList<>(groups);
             relativeGroupsToCommonParent.removeAll(primaryGroups);
 
@@ -298,19 +311,20 @@ public class SegmentExtractorUtil {
 
     }
 
-    private static String generateGroupId(Structure struct, List<String> groups) {
+    private static String generateGroupId(Structure struct, List<String> groups, HL7DataExtractor dataExtractor) {
 
-        Structure parent = getParentGroup(struct, groups);
+        Structure parent = getParentGroup(struct, groups, dataExtractor);
 
         if (parent != null) {
-            return parent.getName() + "_" + parent.hashCode();
+            return dataExtractor.getSegmentIndex().getGroupId(parent);
 
         } else {
             return null;
         }
     }
 
-    private static Structure getParentGroup(Structure struct, List<String> groups) {
+    private static Structure getParentGroup(Structure struct, List<String> groups,
+            HL7DataExtractor dataExtractor) {
         if (groups == null || groups.isEmpty()) {
             return null;
         }
@@ -324,7 +338,7 @@ public class SegmentExtractorUtil {
         int i = 0;
 
         while (!foundParentGroup && i < numGroups) {
-            parent = getParentGroup(parent, reversedGroups.get(i));
+            parent = dataExtractor.getSegmentIndex().getParentGroup(parent, reversedGroups.get(i));
             if (parent != null) {
                 foundParentGroup = true;
             }
@@ -339,29 +353,4 @@ public class SegmentExtractorUtil {
         }
     }
 
-    private static Structure getParentGroup(Structure struct, String group) {
-        boolean parentMatchFound = false;
-        Structure parent = struct;
-        boolean noMoreParent = false;
-        while (!parentMatchFound && !noMoreParent) {
-
-            if (parent != null && StringUtils.endsWith(parent.getName(), group)) {
-                parentMatchFound = true;
-            } else if (parent == null
-                    || parent.getName().equalsIgnoreCase(parent.getMessage().getName())) {
-                noMoreParent = true;
-            } else {
-                parent = parent.getParent();
-            }
-
-        }
-
-        if (parentMatchFound) {
-            return parent;
-        } else {
-            return null;
-        }
-
-    }
-
-}
+}
\ No newline at end of file
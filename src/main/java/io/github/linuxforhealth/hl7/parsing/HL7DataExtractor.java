@@ -7,6 +7,8 @@ package io.github.linuxforhealth.hl7.parsing;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Predicate;
 
 import org.apache.commons.lang3.StringUtils;
@@ -18,6 +20,7 @@ import com.google.common.collect.Lists;
 
 import ca.uhn.hl7v2.HL7Exception;
 import ca.uhn.hl7v2.model.Composite;
+import ca.uhn.hl7v2.model.ExtraComponents;
 import ca.uhn.hl7v2.model.Group;
 import ca.uhn.hl7v2.model.Message;
 import ca.uhn.hl7v2.model.Primitive;
@@ -42,12 +45,29 @@ public class HL7DataExtractor {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(HL7DataExtractor.class);
 
+    // HAPI adds the structures, fields and components it is asked for to the message, even when
+    // only reading. Structures are searched holding the lock of the extractor, once per message
+    // thanks to the segment index, which searches under its own locks and calls back here, so it is
+    // never called while holding the lock of the extractor. Fields and components are read with the
+    // methods below that only return what the message already has, so they are read without any
+    // lock.
     private final Message message;
+    private final SegmentIndex segmentIndex = new SegmentIndex();
+    // Terser paths like /PID-3 resolved to their segment and field indices
+    private final Map<String, TerserPath> terserPaths = new ConcurrentHashMap<>();
+    private Terser terser;
 
     public HL7DataExtractor(Message message) {
         this.message = message;
     }
 
+    /**
+     * @return Index of the structures of the message searched so far
+     */
+    public SegmentIndex getSegmentIndex() {
+        return segmentIndex;
+    }
+
     private static Predicate<Structure> isEmpty() {
         return (Structure p) -> {
             try {
@@ -59,7 +79,7 @@ public class HL7DataExtractor {
         };
     }
 
-    public ParsingResult<Structure> getStructure(String group, int groupRep, String segment,
+    public synchronized ParsingResult<Structure> getStructure(String group, int groupRep, String segment,
             int rep) {
 
         LOGGER.debug("Fetching segment: {} {} {} {}", group, groupRep, segment, rep);
@@ -95,7 +115,7 @@ public class HL7DataExtractor {
         }
     }
 
-    public ParsingResult<Structure> getAllStructures(String group, int groupRep, String segment) {
+    public synchronized ParsingResult<Structure> getAllStructures(String group, int groupRep, String segment) {
 
         LOGGER.debug("Fetching segment: {} {} {} ", group, groupRep, segment);
         try {
@@ -127,7 +147,7 @@ public class HL7DataExtractor {
         }
     }
 
-    public boolean doesSegmentExists(String spec) {
+    public synchronized boolean doesSegmentExists(String spec) {
         LOGGER.debug("Checking if segment exists: {}", spec);
         try {
             Preconditions.checkArgument(StringUtils.isNotBlank(spec),
@@ -144,7 +164,7 @@ public class HL7DataExtractor {
         }
     }
 
-    public boolean doesSegmentExists(String spec, int rep) {
+    public synchronized boolean doesSegmentExists(String spec, int rep) {
         LOGGER.debug("Checking if segment exists: {}", spec);
         try {
             Preconditions.checkArgument(StringUtils.isNotBlank(spec),
@@ -163,7 +183,7 @@ public class HL7DataExtractor {
         }
     }
 
-    public ParsingResult<Structure> getStructure(String structure, int rep) {
+    public synchronized ParsingResult<Structure> getStructure(String structure, int rep) {
         try {
             ParsingResult<Structure> parsingResult = null;
             if (doesSegmentExists(structure, rep)) {
@@ -185,7 +205,21 @@ public class HL7DataExtractor {
         }
     }
 
+    /**
+     * Returns all the repetitions of the structure at message level. Each structure is searched once
+     * per message, see {@link SegmentIndex}.
+     * 
+     * @param structure Structure name
+     * @return {@link ParsingResult}
+     */
     public ParsingResult<Structure> getAllStructures(String structure) {
+        if (structure == null) {
+            return searchAllStructures(structure);
+        }
+        return segmentIndex.getStructures(structure, this::searchAllStructures);
+    }
+
+    private synchronized ParsingResult<Structure> searchAllStructures(String structure) {
         try {
             ParsingResult<Structure> parsingResult = null;
             if (doesSegmentExists(structure)) {
@@ -215,7 +249,11 @@ public class HL7DataExtractor {
             Preconditions.checkArgument(field >= 1, "field cannot be negative");
             Preconditions.checkArgument(rep >= 0, REP_CANNOT_BE_NEGATIVE);
             LOGGER.debug("fetching values for Segment {} field {} rep {}, ", segment, field, rep);
-            return new Hl7ParsingTypeResult(segment.getField(field, rep));
+            Type[] reps = getRepetitions(segment, field);
+            if (rep < reps.length) {
+                return new Hl7ParsingTypeResult(reps[rep]);
+            }
+            return new Hl7ParsingTypeResult(new ArrayList<>());
 
         } catch (HL7Exception | IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
 
@@ -233,7 +271,7 @@ public class HL7DataExtractor {
             Preconditions.checkArgument(field >= 1, "field cannot be negative");
 
             LOGGER.debug("fetching values for Segment {} field {}  ", segment, field);
-            Type[] fields = segment.getField(field);
+            Type[] fields = getRepetitions(segment, field);
 
             return new Hl7ParsingTypeResult(Lists.newArrayList(fields));
 
@@ -255,9 +293,9 @@ public class HL7DataExtractor {
                 type = ((Variable) inputType).getData();
             }
             if (type instanceof Composite) {
-                Type value = ((Composite) type).getComponent(component - 1);
+                Type value = ((Composite) type).getComponents()[component - 1];
                 if (value != null && !value.isEmpty()) {
-                    result = new Hl7ParsingTypeResult(((Composite) type).getComponent(component - 1));
+                    result = new Hl7ParsingTypeResult(value);
                 } else {
                     result = new Hl7ParsingTypeResult(new ArrayList<>());
                 }
@@ -283,7 +321,7 @@ public class HL7DataExtractor {
             if (inputType instanceof Variable) {
                 type = ((Variable) inputType).getData();
             }
-            Primitive prim = Terser.getPrimitive(type, component, subComponent);
+            Primitive prim = getPrimitive(type, component, subComponent);
             if (prim != null && !prim.isEmpty()) {
                 result = new Hl7ParsingTypeResult(prim);
             } else {
@@ -300,9 +338,101 @@ public class HL7DataExtractor {
         }
     }
 
-    private Terser getTerser() {
-        Message unmodifiableMessage = Unmodifiable.unmodifiableMessage(message);
-        return new Terser(unmodifiableMessage);
+    private synchronized Terser getTerser() {
+        if (terser == null) {
+            Message unmodifiableMessage = Unmodifiable.unmodifiableMessage(message);
+            terser = new Terser(unmodifiableMessage);
+        }
+        return terser;
+    }
+
+    /**
+     * Same as {@link Terser#get(String)}, but the segment and the field indices of the path are
+     * resolved once per message and a value the message does not have is not added to it.
+     */
+    private String getTerserValue(String path) throws HL7Exception {
+        TerserPath resolved = terserPaths.get(path);
+        if (resolved == null) {
+            resolved = resolveTerserPath(path);
+            terserPaths.putIfAbsent(path, resolved);
+        }
+        Type[] reps = getRepetitions(resolved.segment, resolved.indices[0]);
+        if (resolved.indices[1] >= reps.length) {
+            return null;
+        }
+        Primitive prim = getPrimitive(reps[resolved.indices[1]], resolved.indices[2], resolved.indices[3]);
+        return prim != null ? prim.getValue() : null;
+    }
+
+    private TerserPath resolveTerserPath(String path) throws HL7Exception {
+        Terser t = getTerser();
+        Segment segment;
+        // The terser keeps its search position between calls
+        synchronized (t) {
+            segment = t.getSegment(StringUtils.substringBefore(path, "-"));
+        }
+        return new TerserPath(segment, Terser.getIndices(path));
+    }
+
+    /**
+     * Same as {@link Segment#getField(int)}, but a field the segment does not have is not added to
+     * it.
+     *
+     * @param segment Segment
+     * @param field Field number, starting at 1
+     * @return Repetitions of the field, empty if the segment does not have the field
+     * @throws HL7Exception if the field cannot be read
+     */
+    public static Type[] getRepetitions(Segment segment, int field) throws HL7Exception {
+        if (field < 1 || field > segment.numFields()) {
+            return new Type[0];
+        }
+        return segment.getField(field);
+    }
+
+    /**
+     * Returns a component of the type the way {@link Terser#getPrimitive(Type, int, int)} finds it,
+     * but a component the type does not have is not added to it: the component of a composite, the
+     * type itself for the first component of a primitive, then the extra components.
+     *
+     * @param type Type, the data of a variable type is used
+     * @param component Component number, starting at 1
+     * @return Component or null if the type does not have it
+     */
+    public static Type getExistingComponent(Type type, int component) {
+        if (type instanceof Variable) {
+            return getExistingComponent(((Variable) type).getData(), component);
+        }
+        if (type == null || component < 1) {
+            return null;
+        }
+        int standardComponents = 1;
+        if (type instanceof Composite) {
+            Type[] components = ((Composite) type).getComponents();
+            if (component <= components.length) {
+                return components[component - 1];
+            }
+            standardComponents = components.length;
+        } else if (type instanceof Primitive && component == 1) {
+            return type;
+        }
+        ExtraComponents extra = type.getExtraComponents();
+        int index = component - standardComponents - 1;
+        return index < extra.numComponents() ? extra.getComponent(index) : null;
+    }
+
+    // Same as Terser.getPrimitive, without adding the components it is asked for
+    private static Primitive getPrimitive(Type type, int component, int subComponent) {
+        Type value = getExistingComponent(getExistingComponent(type, component), subComponent);
+        while (value instanceof Variable || value instanceof Composite) {
+            if (value instanceof Variable) {
+                value = ((Variable) value).getData();
+            } else {
+                Type[] components = ((Composite) value).getComponents();
+                value = components.length > 0 ? components[0] : null;
+            }
+        }
+        return value instanceof Primitive ? (Primitive) value : null;
     }
 
     public static String getMessageType(Message message) {
@@ -333,7 +463,7 @@ public class HL7DataExtractor {
         Preconditions.checkArgument(StringUtils.isNotBlank(field), "field cannot be blank");
 
         try {
-            return new Hl7ParsingStringResult(getTerser().get("/" + segment + "-" + field));
+            return new Hl7ParsingStringResult(getTerserValue("/" + segment + "-" + field));
 
         } catch (HL7Exception | IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
             LOGGER.debug("Cannot extract value for Segment {} field {}   ", segment, field, e);
@@ -346,7 +476,7 @@ public class HL7DataExtractor {
 
     public String getMessageId() {
         try {
-            return getTerser().get("/MSH-10");
+            return getTerserValue("/MSH-10");
         } catch (HL7Exception | IllegalArgumentException e) {
             LOGGER.warn("Cannot extract message control id.");
             LOGGER.debug("Cannot extract message control id", e);
@@ -354,7 +484,22 @@ public class HL7DataExtractor {
         }
     }
 
+    /**
+     * Returns the non empty repetitions of the segment in the group. Each segment is searched once per
+     * group, see {@link SegmentIndex}.
+     * 
+     * @param struct Group
+     * @param segment Segment or group name
+     * @return {@link ParsingResult}
+     */
     public ParsingResult<Structure> getAllStructures(Structure struct, String segment) {
+        if (struct == null || segment == null) {
+            return searchAllStructures(struct, segment);
+        }
+        return segmentIndex.getStructures(struct, segment, s -> searchAllStructures(struct, s));
+    }
+
+    private synchronized ParsingResult<Structure> searchAllStructures(Structure struct, String segment) {
         LOGGER.debug("Fetching segment: {} {}  ", struct, segment);
         try {
             ParsingResult<Structure> parsingResult = null;
@@ -381,4 +526,14 @@ public class HL7DataExtractor {
             return new Hl7ParsingStructureResult(new ArrayList<>());
         }
     }
+
+    private static final class TerserPath {
+        private final Segment segment;
+        private final int[] indices;
+
+        private TerserPath(Segment segment, int[] indices) {
+            this.segment = segment;
+            this.indices = indices;
+        }
+    }
 }
@@ -12,6 +12,7 @@ import ca.uhn.hl7v2.parser.GenericParser;
 public class HL7HapiParser {
 
   private static final String SUPPORTED_HL7_VERSION = "2.6";
+  private static volatile HL7HapiParser sharedParser;
   private DefaultHapiContext context;
   private GenericParser parser;
 
@@ -41,6 +42,26 @@ public class HL7HapiParser {
   }
 
 
+  /**
+   * Returns a parser shared by all callers. The HAPI parser keeps no state between parse calls, so
+   * the shared instance can be used by multiple threads at once. It must not be closed.
+   *
+   * @return Shared {@link HL7HapiParser}
+   */
+  public static HL7HapiParser getSharedInstance() {
+    HL7HapiParser parser = sharedParser;
+    if (parser == null) {
+      synchronized (HL7HapiParser.class) {
+        parser = sharedParser;
+        if (parser == null) {
+          parser = new HL7HapiParser();
+          sharedParser = parser;
+        }
+      }
+    }
+    return parser;
+  }
+
   public DefaultHapiContext getContext() {
     return context;
   }
@@ -0,0 +1,111 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.parsing;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.apache.commons.lang3.StringUtils;
+
+import ca.uhn.hl7v2.model.Structure;
+import io.github.linuxforhealth.hl7.parsing.result.ParsingResult;
+
+/**
+ * Index of the structures of one HL7 message, kept by the {@link HL7DataExtractor} of the message.
+ * Every resource template of a message searches the same message tree, so the index remembers the
+ * answers to the searches made so far: structures by name at message level, structures by name in a
+ * group, structures by group path, parent groups and group ids. A search is made on the message once
+ * and answered from the index afterwards.
+ *
+ * Structures do not override equals and hashCode, so they are indexed by identity. The message must
+ * not be changed while it is indexed.
+ */
+public class SegmentIndex {
+
+  private final Map<String, ParsingResult<Structure>> messageStructures = new ConcurrentHashMap<>();
+  private final Map<Structure, Map<String, ParsingResult<Structure>>> groupStructures =
+      new ConcurrentHashMap<>();
+  private final Map<List<String>, List<Structure>> groupPathStructures = new ConcurrentHashMap<>();
+  private final Map<Structure, Map<String, Optional<Structure>>> parentGroups = new ConcurrentHashMap<>();
+  private final Map<Structure, String> groupIds = new ConcurrentHashMap<>();
+
+  ParsingResult<Structure> getStructures(String name,
+      Function<String, ParsingResult<Structure>> search) {
+    return messageStructures.computeIfAbsent(name, search);
+  }
+
+  ParsingResult<Structure> getStructures(Structure parent, String name,
+      Function<String, ParsingResult<Structure>> search) {
+    return groupStructures.computeIfAbsent(parent, p -> new ConcurrentHashMap<>())
+        .computeIfAbsent(name, search);
+  }
+
+  /**
+   * Returns the structures found by following the group path from the message, for example all the
+   * ORDER_OBSERVATION groups of all the PATIENT_RESULT groups.
+   *
+   * @param groupPath Group names, from the message down
+   * @param search Search made on the message when the path was not searched before
+   * @return Structures for the path, the list must not be changed
+   */
+  public List<Structure> getStructures(List<String> groupPath, Supplier<List<Structure>> search) {
+    List<Structure> structures = groupPathStructures.get(groupPath);
+    if (structures == null) {
+      structures = search.get();
+      // The key is copied as callers may pass views of their own lists
+      List<Structure> existing = groupPathStructures.putIfAbsent(List.copyOf(groupPath), structures);
+      if (existing != null) {
+        structures = existing;
+      }
+    }
+    return structures;
+  }
+
+  /**
+   * Returns the closest group of the structure, the structure itself included, whose name ends with
+   * the group name.
+   *
+   * @param struct Structure to start from
+   * @param group Group name
+   * @return Parent group or null if the structure is not in a group with that name
+   */
+  public Structure getParentGroup(Structure struct, String group) {
+    if (struct == null) {
+      return null;
+    }
+    return parentGroups.computeIfAbsent(struct, s -> new ConcurrentHashMap<>())
+        .computeIfAbsent(group, g -> Optional.ofNullable(findParentGroup(struct, g))).orElse(null);
+  }
+
+  /**
+   * Returns the id of a group, which is the same for all the segments of one repetition of the group
+   * and different between repetitions.
+   *
+   * @param group Group
+   * @return Group id
+   */
+  public String getGroupId(Structure group) {
+    return groupIds.computeIfAbsent(group, g -> g.getName() + "_" + g.hashCode());
+  }
+
+  private static Structure findParentGroup(Structure struct, String group) {
+    Structure parent = struct;
+    while (parent != null) {
+      if (StringUtils.endsWith(parent.getName(), group)) {
+        return parent;
+      } else if (parent.getName().equalsIgnoreCase(parent.getMessage().getName())) {
+        return null;
+      }
+      parent = parent.getParent();
+    }
+    return null;
+  }
+
+}
@@ -5,6 +5,7 @@
  */
 package io.github.linuxforhealth.hl7.resource;
 
+import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -13,6 +14,7 @@ import org.slf4j.LoggerFactory;
 
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 
+import io.github.linuxforhealth.api.ConversionMetrics;
 import io.github.linuxforhealth.api.EvaluationResult;
 import io.github.linuxforhealth.api.Expression;
 import io.github.linuxforhealth.api.InputDataExtractor;
@@ -26,7 +28,8 @@ import io.github.linuxforhealth.hl7.resource.deserializer.HL7DataBasedResourceDe
 import io.github.linuxforhealth.hl7.util.ExpressionUtility;
 
 @JsonDeserialize(using = HL7DataBasedResourceDeserializer.class)
-public class HL7DataBasedResourceModel implements ResourceModel {
+public class HL7DataBasedResourceModel implements ResourceModel, Serializable {
+    private static final long serialVersionUID = 1L;
 
     private static final Logger LOGGER = LoggerFactory.getLogger(HL7DataBasedResourceModel.class);
 
@@ -86,6 +89,7 @@ public class HL7DataBasedResourceModel implements ResourceModel {
         } catch (IllegalArgumentException | IllegalStateException | DataExtractionException e) {
             LOGGER.error("Exception during resource {} evaluation reason", this.name);
             LOGGER.debug("Exception during resource {} evaluation reason {}", this.name, e.toString());
+            dataSource.getMetrics().increment(ConversionMetrics.RESOURCES_FAILED, dataSource.getName(), this.name);
             return null;
 
         }
@@ -7,13 +7,29 @@ package io.github.linuxforhealth.hl7.resource;
 
 import java.io.File;
 import java.io.IOException;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.CodeSource;
 import java.util.ArrayList;
+import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -43,9 +59,34 @@ public class ResourceReader {
 
   private final Logger LOGGER = LoggerFactory.getLogger(ResourceReader.class);
 
-  private static ResourceReader reader;
+  private static volatile ResourceReader reader;
 
-  private final ConverterConfiguration converterConfig = ConverterConfiguration.getInstance();
+  private static final AtomicInteger LOADER_THREAD_COUNT = new AtomicInteger();
+
+  // Reader the templates are being read with on the current thread, see getInstance
+  private static final ThreadLocal<ResourceReader> TEMPLATE_READER = new ThreadLocal<>();
+
+  private final ConverterConfiguration converterConfig;
+
+  // Resource models by template path
+  private final Map<String, ResourceModel> resourceModels = new ConcurrentHashMap<>();
+
+  // Template paths being read by the current thread, in the order they were requested
+  private final ThreadLocal<Set<String>> resourceModelsInProgress = ThreadLocal.withInitial(LinkedHashSet::new);
+
+  private ResourceReader() {
+    this(ConverterConfiguration.getInstance());
+  }
+
+  /**
+   * Creates a reader for the configuration, which is not the shared instance until it is set with
+   * {@link #setInstance(ResourceReader)}.
+   *
+   * @param converterConfig Configuration of the resource locations
+   */
+  ResourceReader(ConverterConfiguration converterConfig) {
+    this.converterConfig = converterConfig;
+  }
 
   /**
    * Loads a file resource configuration, returning a String
@@ -81,7 +122,9 @@ public class ResourceReader {
    */
   public String getResource(String resourcePath) {
     Path resourceFolderFilePath = Paths.get(converterConfig.getResourceFolder(), resourcePath);
-    Path alternateResourceFolderFilePath = Paths.get(converterConfig.getAdditionalResourcesLocation(), resourcePath);
+    Path alternateResourceFolderFilePath = converterConfig.getAdditionalResourcesLocation() != null
+        ? Paths.get(converterConfig.getAdditionalResourcesLocation(), resourcePath)
+        : null;
     String resource = null;
 
     try {
@@ -103,25 +146,205 @@ public class ResourceReader {
 
   /**
    * Returns all message templates in the configured location(s)
-   * Relies on the values in config.properties.
+   * Relies on the values in config.properties. If a template snapshot file is configured
+   * (template.snapshot.file), the templates are read from the snapshot when it was built by the same
+   * converter version from the same configuration and template files; otherwise they are built from
+   * the templates and the snapshot is written.
    * 
    * @return Map of messages, by message title.
    */
   public Map<String, HL7MessageModel> getMessageTemplates() {
-    Map<String, HL7MessageModel> messagetemplates = new HashMap<>();
-    List<String> supportedMessageTemplates = ConverterConfiguration.getInstance().getSupportedMessageTemplates();
+    String snapshotFile = converterConfig.getTemplateSnapshotFile();
+    if (StringUtils.isBlank(snapshotFile)) {
+      return readMessageTemplates();
+    }
+
+    Path snapshotPath = Paths.get(snapshotFile);
+    String snapshotKey = getSnapshotKey();
+    if (snapshotKey == null) {
+      return readMessageTemplates();
+    }
+    if (snapshotPath.toFile().exists()) {
+      try {
+        Map<String, HL7MessageModel> messagetemplates = TemplateSnapshot.read(snapshotPath, snapshotKey);
+        if (messagetemplates != null) {
+          return messagetemplates;
+        }
+        LOGGER.info("Template snapshot was built from a different configuration, rebuilding it");
+      } catch (IOException | RuntimeException e) {
+        LOGGER.warn("Cannot read template snapshot, rebuilding it");
+        LOGGER.debug("Cannot read template snapshot " + snapshotPath, e);
+      }
+    }
+
+    Map<String, HL7MessageModel> messagetemplates = readMessageTemplates();
+    writeSnapshot(snapshotPath, snapshotKey, messagetemplates);
+    return messagetemplates;
+  }
+
+  /**
+   * Returns all message templates in the configured location(s), always built from the templates.
+   * If a template snapshot file is configured, it is rewritten with the templates.
+   * 
+   * @return Map of messages, by message title.
+   */
+  public Map<String, HL7MessageModel> reloadMessageTemplates() {
+    Map<String, HL7MessageModel> messagetemplates = readMessageTemplates();
+    String snapshotFile = converterConfig.getTemplateSnapshotFile();
+    String snapshotKey = StringUtils.isNotBlank(snapshotFile) ? getSnapshotKey() : null;
+    if (snapshotKey != null) {
+      writeSnapshot(Paths.get(snapshotFile), snapshotKey, messagetemplates);
+    }
+    return messagetemplates;
+  }
+
+  private void writeSnapshot(Path snapshotPath, String snapshotKey, Map<String, HL7MessageModel> messagetemplates) {
+    try {
+      TemplateSnapshot.write(snapshotPath, snapshotKey, messagetemplates);
+    } catch (IOException | RuntimeException e) {
+      LOGGER.warn("Cannot write template snapshot");
+      LOGGER.debug("Cannot write template snapshot " + snapshotPath, e);
+    }
+  }
+
+  // Null if the templates cannot be digested, the snapshot is not used then
+  private String getSnapshotKey() {
+    try {
+      return String.join("|",
+          String.valueOf(ResourceReader.class.getPackage().getImplementationVersion()),
+          converterConfig.getResourceFolder(),
+          String.valueOf(converterConfig.getAdditionalResourcesLocation()),
+          String.join(",", converterConfig.getSupportedMessageTemplates()),
+          TemplateSnapshot.digest(getTemplateLocations()));
+    } catch (IOException | RuntimeException e) {
+      LOGGER.warn("Cannot read the templates for the template snapshot, not using it");
+      LOGGER.debug("Cannot read the templates for the template snapshot", e);
+      return null;
+    }
+  }
+
+  // The converter jar and the locations the templates are read from, see getResource
+  private List<Path> getTemplateLocations() throws IOException {
+    List<Path> locations = new ArrayList<>();
+    CodeSource codeSource = ResourceReader.class.getProtectionDomain().getCodeSource();
+    Path converterJar = codeSource != null ? toPath(codeSource.getLocation()) : null;
+    if (converterJar != null && converterJar.toFile().isFile()) {
+      locations.add(converterJar);
+    }
+    locations.add(Paths.get(converterConfig.getResourceFolder(), Constants.HL7_BASE_PATH));
+    if (converterConfig.getAdditionalResourcesLocation() != null) {
+      locations.add(Paths.get(converterConfig.getAdditionalResourcesLocation(), Constants.HL7_BASE_PATH));
+    }
+    Enumeration<URL> classPathLocations = ResourceReader.class.getClassLoader()
+        .getResources(Constants.HL7_BASE_PATH);
+    while (classPathLocations.hasMoreElements()) {
+      URL url = classPathLocations.nextElement();
+      if ("jar".equals(url.getProtocol())) {
+        url = ((JarURLConnection) url.openConnection()).getJarFileURL();
+      }
+      Path location = toPath(url);
+      if (location != null) {
+        locations.add(location);
+      }
+    }
+    return locations;
+  }
+
+  private static Path toPath(URL url) {
+    if (url == null || !"file".equals(url.getProtocol())) {
+      return null;
+    }
+    try {
+      return Paths.get(url.toURI());
+    } catch (URISyntaxException e) {
+      throw new IllegalArgumentException("Invalid template location " + url, e);
+    }
+  }
+
+  private Map<String, HL7MessageModel> readMessageTemplates() {
+    return withTemplateReader(this::readSupportedMessageTemplates);
+  }
+
+  // The resources a template uses are read with the reader reading the template, also when it is
+  // not the shared instance, see getInstance
+  private <T> T withTemplateReader(Supplier<T> supplier) {
+    ResourceReader previous = TEMPLATE_READER.get();
+    TEMPLATE_READER.set(this);
+    try {
+      return supplier.get();
+    } finally {
+      if (previous != null) {
+        TEMPLATE_READER.set(previous);
+      } else {
+        TEMPLATE_READER.remove();
+      }
+    }
+  }
+
+  private Map<String, HL7MessageModel> readSupportedMessageTemplates() {
+    List<String> supportedMessageTemplates = converterConfig.getSupportedMessageTemplates();
     if (hasWildcard(supportedMessageTemplates)) {
       // Code currently assumes we do no use the list of supported messages, once we see an *.
       // In future if needed to merge, it would go here.
       supportedMessageTemplates.clear();
       supportedMessageTemplates = findAllMessageTemplateNames();
     }
-    for (String template : supportedMessageTemplates) {
-      HL7MessageModel rm = getMessageModel(template);
-      messagetemplates.put(com.google.common.io.Files.getNameWithoutExtension(template),
-          rm);
+
+    int threads = Math.min(converterConfig.getTemplateLoadThreads(), supportedMessageTemplates.size());
+    if (threads <= 1) {
+      Map<String, HL7MessageModel> messagetemplates = new HashMap<>();
+      for (String template : supportedMessageTemplates) {
+        HL7MessageModel rm = getMessageModel(template);
+        messagetemplates.put(com.google.common.io.Files.getNameWithoutExtension(template),
+            rm);
+      }
+      return messagetemplates;
+    }
+    return readMessageTemplates(supportedMessageTemplates, threads);
+  }
+
+  // The message templates are independent of each other, so they are read concurrently. Resource
+  // models shared by several templates are cached, a model requested by two templates at the same
+  // time may be read twice but only one is kept.
+  private Map<String, HL7MessageModel> readMessageTemplates(List<String> templateNames, int threads) {
+    ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+      Thread t = new Thread(r, "hl7-template-loader-" + LOADER_THREAD_COUNT.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    });
+    try {
+      Map<String, Future<HL7MessageModel>> futures = new LinkedHashMap<>();
+      for (String template : templateNames) {
+        futures.put(template, executor.submit(() -> withTemplateReader(() -> getMessageModel(template))));
+      }
+
+      Map<String, HL7MessageModel> messagetemplates = new HashMap<>();
+      for (Entry<String, Future<HL7MessageModel>> entry : futures.entrySet()) {
+        messagetemplates.put(com.google.common.io.Files.getNameWithoutExtension(entry.getKey()),
+            getLoadedTemplate(entry.getKey(), entry.getValue()));
+      }
+      return messagetemplates;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static HL7MessageModel getLoadedTemplate(String templateName, Future<HL7MessageModel> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while loading the template " + templateName, e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      if (e.getCause() instanceof Error) {
+        throw (Error) e.getCause();
+      }
+      throw new IllegalArgumentException("Error encountered in processing the template" + templateName,
+          e.getCause());
     }
-    return messagetemplates;
   }
 
   private boolean hasWildcard(List<String> supportedMessageTemplates) {
@@ -196,14 +419,49 @@ public class ResourceReader {
 
   }
 
+  /**
+   * Returns the resource model for the template at the path. Each template is read and deserialized
+   * once, later calls return the cached model. A template that references itself, directly or
+   * through other templates, cannot be generated.
+   * 
+   * @param path Path of the template relative to the hl7 folder, without the .yml extension
+   * @return {@link ResourceModel}
+   * @throws IllegalArgumentException - if the template cannot be read or references itself
+   */
   public ResourceModel generateResourceModel(String path) {
     Preconditions.checkArgument(StringUtils.isNotBlank(path), "Path for resource cannot be blank");
+    ResourceModel model = resourceModels.get(path);
+    if (model == null) {
+      // Templates referenced by this template are generated while it is deserialized, so the cache
+      // cannot be locked (computeIfAbsent) while a template is read.
+      Set<String> inProgress = resourceModelsInProgress.get();
+      if (!inProgress.add(path)) {
+        throw new IllegalArgumentException("Resource template references itself: " + inProgress + " -> " + path);
+      }
+      try {
+        model = readResourceModel(path);
+      } finally {
+        inProgress.remove(path);
+        if (inProgress.isEmpty()) {
+          resourceModelsInProgress.remove();
+        }
+      }
+      ResourceModel existing = resourceModels.putIfAbsent(path, model);
+      if (existing != null) {
+        model = existing;
+      }
+    }
+    return model;
+  }
+
+  private ResourceModel readResourceModel(String path) {
     String templateFileContent = getResourceInHl7Folder(path + ".yml");
 
     try {
       InjectableValues injValues = new InjectableValues.Std().addValue("resourceName", path);
-      return ObjectMapperUtil.getYAMLInstance().setInjectableValues(injValues)
-          .readValue(templateFileContent, HL7DataBasedResourceModel.class);
+      // Use a reader so the shared mapper is not mutated while other templates are being read.
+      return ObjectMapperUtil.getYAMLInstance().readerFor(HL7DataBasedResourceModel.class)
+          .with(injValues).readValue(templateFileContent);
 
     } catch (IOException e) {
       throw new IllegalArgumentException("Error encountered in processing the template" + path, e);
@@ -211,17 +469,42 @@ public class ResourceReader {
 
   }
 
+  /**
+   * Returns the shared reader, or on a thread reading message templates, the reader reading them.
+   *
+   * @return ResourceReader
+   */
   public static ResourceReader getInstance() {
-    if (reader == null) {
-      reader = new ResourceReader();
+    ResourceReader templateReader = TEMPLATE_READER.get();
+    if (templateReader != null) {
+      return templateReader;
     }
-    return reader;
+    ResourceReader resourceReader = reader;
+    if (resourceReader == null) {
+      synchronized (ResourceReader.class) {
+        resourceReader = reader;
+        if (resourceReader == null) {
+          resourceReader = new ResourceReader();
+          reader = resourceReader;
+        }
+      }
+    }
+    return resourceReader;
   }
 
   public static void reset() {
     reader = null;
   }
 
+  /**
+   * Replaces the shared reader.
+   *
+   * @param resourceReader The reader returned by {@link #getInstance()} from now on
+   */
+  static void setInstance(ResourceReader resourceReader) {
+    reader = resourceReader;
+  }
+
   public String getResourceInHl7Folder(String path) {
     return getResource(Constants.HL7_BASE_PATH + path);
   }
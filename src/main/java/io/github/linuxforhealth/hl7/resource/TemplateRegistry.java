@@ -0,0 +1,123 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.resource;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ImmutableMap;
+
+import io.github.linuxforhealth.core.config.ConverterConfiguration;
+import io.github.linuxforhealth.core.terminology.UrlLookup;
+import io.github.linuxforhealth.hl7.message.HL7MessageModel;
+
+/**
+ * Holds the current version of the message templates. A reload reads the configuration, the
+ * templates (base.path.resource and additional.resources.location) and the coding system mappings
+ * (additional.conceptmap.file) again on a background thread, and replaces the current version once
+ * the new one is completely loaded. Conversions that already got the previous version finish with
+ * it; a reload that fails keeps the previous version.
+ */
+public class TemplateRegistry {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(TemplateRegistry.class);
+
+  // Reloads replace shared state (configuration, resource reader, coding system mappings), so all
+  // registries reload on the same single thread, one at a time.
+  private static final ExecutorService RELOAD_EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+    Thread t = new Thread(r, "hl7-template-reloader");
+    t.setDaemon(true);
+    return t;
+  });
+
+  private volatile TemplateVersion current;
+
+  /**
+   * Loads the first version of the message templates.
+   *
+   * @throws IllegalArgumentException - If any issues are encountered when loading the templates.
+   */
+  public TemplateRegistry() {
+    current = new TemplateVersion(1, ResourceReader.getInstance().getMessageTemplates());
+  }
+
+  /**
+   * @return The current version of the message templates
+   */
+  public TemplateVersion getCurrent() {
+    return current;
+  }
+
+  /**
+   * Loads a new version of the message templates in the background. The template snapshot file, if
+   * configured, is rebuilt from the templates.
+   *
+   * @return Future completed with the new version once it replaced the current one, or completed
+   *         exceptionally if the templates cannot be loaded
+   */
+  public CompletableFuture<TemplateVersion> reload() {
+    return CompletableFuture.supplyAsync(this::load, RELOAD_EXECUTOR);
+  }
+
+  private TemplateVersion load() {
+    int version = current.getVersion() + 1;
+    LOGGER.info("Loading message templates version {}", version);
+    // The shared configuration, reader and coding system mappings are only replaced once the
+    // templates and the mappings are loaded, so a reload that fails leaves them as they were
+    ConverterConfiguration configuration = ConverterConfiguration.load();
+    ResourceReader reader = new ResourceReader(configuration);
+    Map<String, HL7MessageModel> messageTemplates = reader.reloadMessageTemplates();
+    Map<String, Map<String, String>> urls = UrlLookup.load(configuration, reader);
+    TemplateVersion loaded = new TemplateVersion(version, messageTemplates);
+    ConverterConfiguration.setInstance(configuration);
+    ResourceReader.setInstance(reader);
+    UrlLookup.setUrls(urls);
+    current = loaded;
+    LOGGER.info("Message templates version {} loaded", version);
+    return loaded;
+  }
+
+  /**
+   * A loaded, immutable set of message templates.
+   */
+  public static final class TemplateVersion {
+    private final int version;
+    private final Map<String, HL7MessageModel> messageTemplates;
+
+    private TemplateVersion(int version, Map<String, HL7MessageModel> messageTemplates) {
+      this.version = version;
+      this.messageTemplates = ImmutableMap.copyOf(messageTemplates);
+    }
+
+    /**
+     * @return Version number, starting with 1 for the templates loaded when the registry was created
+     */
+    public int getVersion() {
+      return version;
+    }
+
+    /**
+     * @param messageType Message type, for example ADT_A01
+     * @return Message template for the type or null if the type is not supported
+     */
+    public HL7MessageModel getMessageTemplate(String messageType) {
+      return messageTemplates.get(messageType);
+    }
+
+    /**
+     * @return Message templates by message type
+     */
+    public Map<String, HL7MessageModel> getMessageTemplates() {
+      return messageTemplates;
+    }
+  }
+
+}
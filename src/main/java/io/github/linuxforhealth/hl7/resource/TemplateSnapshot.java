@@ -0,0 +1,143 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.resource;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import com.google.common.io.BaseEncoding;
+import io.github.linuxforhealth.hl7.message.HL7MessageModel;
+
+/**
+ * Stores the compiled message templates in a file using Java serialization, so a converter can
+ * start without reading and deserializing the YAML templates again. The snapshot records the key
+ * of the configuration it was built from and is only used when the key still matches. A snapshot
+ * written by different versions of the template classes cannot be read and is ignored.
+ *
+ * The template classes declare their serialVersionUID, so compatible changes to them can still read
+ * older snapshots; FORMAT_VERSION must be increased when their serialized form changes. Only the
+ * template classes and the collections and values they hold are read from a snapshot.
+ */
+final class TemplateSnapshot {
+
+  private static final int FORMAT_VERSION = 2;
+
+  private static final ObjectInputFilter FILTER = ObjectInputFilter.Config.createFilter(
+      "io.github.linuxforhealth.**;java.util.**;java.lang.*;java.math.*;java.time.**;"
+          + "com.google.common.collect.**;org.apache.commons.lang3.tuple.*;!*");
+
+  private TemplateSnapshot() {}
+
+  /**
+   * Reads the message templates from the snapshot file.
+   *
+   * @param file The snapshot file
+   * @param key Key of the configuration the templates are needed for
+   * @return Map of messages by message title, or null if the snapshot was built from another
+   *         configuration
+   * @throws IOException - if the snapshot cannot be read, including snapshots written by other
+   *         versions of the template classes
+   */
+  @SuppressWarnings("unchecked")
+  static Map<String, HL7MessageModel> read(Path file, String key) throws IOException {
+    try (ObjectInputStream in =
+        new ObjectInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+      in.setObjectInputFilter(FILTER);
+      if (in.readInt() != FORMAT_VERSION || !key.equals(in.readUTF())) {
+        return null;
+      }
+      return (Map<String, HL7MessageModel>) in.readObject();
+    } catch (ClassNotFoundException | ClassCastException e) {
+      throw new InvalidClassException("Template snapshot " + file + " is not compatible: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Writes the message templates to the snapshot file. The snapshot is written to a temporary file
+   * first and then moved into place, so a reader never sees a partially written snapshot.
+   *
+   * @param file The snapshot file
+   * @param key Key of the configuration the templates were built from
+   * @param messageTemplates Map of messages by message title
+   * @throws IOException - if the snapshot cannot be written
+   */
+  static void write(Path file, String key, Map<String, HL7MessageModel> messageTemplates)
+      throws IOException {
+    Path parent = file.toAbsolutePath().getParent();
+    Files.createDirectories(parent);
+    Path tempFile = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+    try {
+      try (ObjectOutputStream out =
+          new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+        out.writeInt(FORMAT_VERSION);
+        out.writeUTF(key);
+        out.writeObject(new HashMap<>(messageTemplates));
+      }
+      Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(tempFile);
+    }
+  }
+
+  /**
+   * Returns a digest of the template files at the locations, so a snapshot is only used with the
+   * templates it was built from. Folders are digested by the path and the content of each file in
+   * them, archives by their size and modification time. Locations that do not exist are skipped.
+   *
+   * @param locations Folders and archives the templates are read from
+   * @return Digest text
+   * @throws IOException - if the templates cannot be read
+   */
+  static String digest(List<Path> locations) throws IOException {
+    MessageDigest digest = newDigest();
+    for (Path location : locations) {
+      update(digest, location.toAbsolutePath().toString());
+      if (Files.isDirectory(location)) {
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(location)) {
+          files = paths.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+        for (Path file : files) {
+          byte[] content = Files.readAllBytes(file);
+          update(digest, location.relativize(file) + ":" + content.length);
+          digest.update(content);
+        }
+      } else if (Files.isRegularFile(location)) {
+        update(digest, Files.size(location) + ":" + Files.getLastModifiedTime(location).toMillis());
+      }
+    }
+    return BaseEncoding.base16().lowerCase().encode(digest.digest());
+  }
+
+  private static void update(MessageDigest digest, String text) {
+    digest.update(text.getBytes(StandardCharsets.UTF_8));
+    digest.update((byte) '\n');
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+  }
+
+}
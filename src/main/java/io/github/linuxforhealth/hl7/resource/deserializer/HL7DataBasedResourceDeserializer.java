@@ -8,6 +8,7 @@ package io.github.linuxforhealth.hl7.resource.deserializer;
 import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
@@ -32,26 +33,40 @@ public class HL7DataBasedResourceDeserializer extends JsonDeserializer<HL7DataBa
 
   private static final String RESOURCE_TYPE_FIELD_NAME = "resourceType";
   private static final String SPEC = "specs";
-  private static Map<String, Expression> commonExpressions;
+  private static volatile CommonExpressions commonExpressions;
 
   private static final ObjectMapper MAPPER = ObjectMapperUtil.getYAMLInstance();
   private static final Logger LOGGER = LoggerFactory.getLogger(HL7DataBasedResourceDeserializer.class);
 
-  // Reads the resource/Common.yml and generates expressions from it.
-  private static synchronized Map<String, Expression> getCommonExpressions() throws JsonProcessingException {
-
-      if (commonExpressions == null) {
-
-        // generate the common expressions from the Common YAML file.
-        commonExpressions = new HashMap<>();
-        String path = ResourceReader.getInstance().getResource(Constants.HL7_BASE_PATH + Constants.COMMON_RESOURCE_PATH);
-        JsonNode node = ObjectMapperUtil.getYAMLInstance().readTree(path);
-        Map<String, Expression> expressions = generateExpressions(node);
-
-        commonExpressions.putAll(expressions);
+  // Reads the resource/Common.yml and generates expressions from it. Resources are deserialized
+  // concurrently when message templates are loaded, so the expressions are generated once and only
+  // published when complete. They are generated again for a reader loading new templates.
+  private static Map<String, Expression> getCommonExpressions() throws JsonProcessingException {
+    ResourceReader reader = ResourceReader.getInstance();
+    CommonExpressions expressions = commonExpressions;
+    if (expressions == null || expressions.reader != reader) {
+      synchronized (HL7DataBasedResourceDeserializer.class) {
+        expressions = commonExpressions;
+        if (expressions == null || expressions.reader != reader) {
+          // generate the common expressions from the Common YAML file.
+          String path = reader.getResource(Constants.HL7_BASE_PATH + Constants.COMMON_RESOURCE_PATH);
+          JsonNode node = ObjectMapperUtil.getYAMLInstance().readTree(path);
+          expressions = new CommonExpressions(reader, Collections.unmodifiableMap(generateExpressions(node)));
+          commonExpressions = expressions;
+        }
       }
+    }
+    return expressions.expressions;
+  }
 
-    return commonExpressions;
+  /**
+   * Drops the common expressions, so they are generated again from resource/Common.yml when the next
+   * resource is deserialized. Resources already deserialized keep the expressions they have.
+   */
+  public static void reset() {
+    synchronized (HL7DataBasedResourceDeserializer.class) {
+      commonExpressions = null;
+    }
   }
 
   @Override
@@ -136,4 +151,15 @@ public class HL7DataBasedResourceDeserializer extends JsonDeserializer<HL7DataBa
     return null;
   }
 
+  // Common expressions and the reader they were read with
+  private static final class CommonExpressions {
+    private final ResourceReader reader;
+    private final Map<String, Expression> expressions;
+
+    private CommonExpressions(ResourceReader reader, Map<String, Expression> expressions) {
+      this.reader = reader;
+      this.expressions = expressions;
+    }
+  }
+
 }
@@ -27,6 +27,7 @@ import io.github.linuxforhealth.core.exception.DataExtractionException;
 import io.github.linuxforhealth.core.exception.RequiredConstraintFailureException;
 import io.github.linuxforhealth.core.expression.EmptyEvaluationResult;
 import io.github.linuxforhealth.core.expression.EvaluationResultFactory;
+import io.github.linuxforhealth.core.expression.ScopedContextMap;
 import io.github.linuxforhealth.hl7.message.HL7MessageData;
 import io.github.linuxforhealth.hl7.resource.PendingExpressionState;
 import io.github.linuxforhealth.hl7.resource.ResourceEvaluationResult;
@@ -57,7 +58,7 @@ public class ExpressionUtility {
 
         try {
             Map<String, Expression> expressionsToEvaluateLater = new HashMap<>();
-            Map<String, EvaluationResult> localContext = new HashMap<>(context);
+            Map<String, EvaluationResult> localContext = new ScopedContextMap(context);
             localContext.put(Constants.NULL_VAR_NAME, new EmptyEvaluationResult());
             // initialize the map and list to collect values
             List<ResourceValue> additionalResolveValues = new ArrayList<>();
@@ -161,7 +162,7 @@ public class ExpressionUtility {
             Map<String, EvaluationResult> context, Map<String, Expression> expressionMap) {
         try {
 
-            Map<String, EvaluationResult> localContext = new HashMap<>(context);
+            Map<String, EvaluationResult> localContext = new ScopedContextMap(context);
             Map<String, Object> resolveValues = new HashMap<>();
             List<ResourceValue> additionalResolveValues = new ArrayList<>();
             for (Entry<String, Expression> entry : expressionMap.entrySet()) {
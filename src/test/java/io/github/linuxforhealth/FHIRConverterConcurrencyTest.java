@@ -0,0 +1,238 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.linuxforhealth.hl7.ConversionResult;
+import io.github.linuxforhealth.hl7.ConverterOptions;
+import io.github.linuxforhealth.hl7.ConverterOptions.Builder;
+import io.github.linuxforhealth.hl7.HL7ToFHIRConverter;
+
+/**
+ * Verifies that a single {@link HL7ToFHIRConverter} can be shared by many threads and produces the
+ * same output as when it is used by a single thread.
+ */
+class FHIRConverterConcurrencyTest {
+    private static final int THREADS = 32;
+    private static final int ITERATIONS = 4;
+
+    // Generated ids and timestamps differ between conversions of the same message.
+    private static final Pattern UUID_PATTERN = Pattern
+            .compile("[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}");
+    private static final Pattern LAST_UPDATED_PATTERN = Pattern.compile("\"lastUpdated\":\"[^\"]*\"");
+
+    private static final String[] MESSAGES = {
+            "MSH|^~\\&|SE050|050|PACS|050|20120912011230||ADT^A01|102|T|2.6|||AL|NE|764|ASCII||||||^4086::132:2A57:3C28^IPv6\r"
+                    + "EVN||201209122222\r"
+                    + "PID|0010||PID1234^5^M11^A^MR^HOSP~1234568965^^^USA^SS||DOE^JOHN^A^||19800202|F||W|111 TEST_STREET_NAME^^TEST_CITY^NY^111-1111^USA||(905)111-1111|||S|ZZ|12^^^124|34-13-312||||TEST_BIRTH_PLACE\r"
+                    + "PV1|1|ff|yyy|EL|ABC||200^ATTEND_DOC_FAMILY_TEST^ATTEND_DOC_GIVEN_TEST|201^REFER_DOC_FAMILY_TEST^REFER_DOC_GIVEN_TEST|202^CONSULTING_DOC_FAMILY_TEST^CONSULTING_DOC_GIVEN_TEST|MED|||||B6|E|272^ADMITTING_DOC_FAMILY_TEST^ADMITTING_DOC_GIVEN_TEST||48390|||||||||||||||||||||||||201409122200|20150206031726\r"
+                    + "OBX|1|TX|1234||ECHOCARDIOGRAPHIC REPORT||||||F|||||2740^TRDSE^Janetary~2913^MRTTE^Darren^F~3065^MGHOBT^Paul^J~4723^LOTHDEW^Robert^L|\r"
+                    + "AL1|1|DRUG|00000741^OXYCODONE||HYPOTENSION\r"
+                    + "AL1|2|DRUG|00001433^TRAMADOL||SEIZURES~VOMITING\r"
+                    + "PRB|AD|200603150625|aortic stenosis|53692||2||200603150625",
+            "MSH|^~\\&|SendTest1|Sendfac1|Receiveapp1|Receivefac1|200603081747|security|ORU^R01|MSGID000005|T|2.6\r"
+                    + "PID||45483|45483||SMITH^SUZIE^||20160813|M|||123 MAIN STREET^^SCHENECTADY^NY^12345||(123)456-7890|||||^^^T||||||||||||\r"
+                    + "OBR|1||986^IA PHIMS Stage^2.16.840.1.114222.4.3.3.5.1.2^ISO|112^Final Echocardiogram Report|||20151009173644|||||||||||||002|||||F|||2740^Tsadok^Janetary~2913^Merrit^Darren^F~3065^Mahoney^Paul^J~4723^Loh^Robert^L~9052^Winter^Oscar^||||3068^JOHN^Paul^J|\r"
+                    + "OBX|1|ST|TS-F-01-007^Endocrine Disorders 7^L||obs report||||||F\r"
+                    + "OBX|2|ST|TS-F-01-008^Endocrine Disorders 8^L||ECHOCARDIOGRAPHIC REPORT||||||F\r"
+                    + "OBR|1||98^IA PHIMS Stage^2.16.840.1.114222.4.3.3.5.1.2^ISO|113^Echocardiogram Report|||20151009173644|||||||||||||002|||||F|||2740^Tsadok^Janetary~2913^Merrit^Darren^F~3065^Mahoney^Paul^J~4723^Loh^Robert^L~9052^Winter^Oscar^||||3065^Mahoney^Paul^J|\r"
+                    + "OBX|1|CWE|625-4^Bacteria identified in Stool by Culture^LN^^^^2.33^^result1|1|27268008^Salmonella^SCT^^^^20090731^^Salmonella species|||A^A^HL70078^^^^2.5|||P|||20120301|||^^^^^^^^Bacterial Culture||201203140957||||||\r"
+                    + "OBX|2|ST|TS-F-01-002^Endocrine Disorders^L||ECHOCARDIOGRAPHIC REPORT Group 2||||||F\r",
+            "MSH|^~\\&|MYEHR2.5|RI88140101|KIDSNET_IFL|RIHEALTH|20130531||VXU^V04^VXU_V04|20130531RI881401010105|P|2.6|||AL|NE|764|ASCII||||||^4086::132:2A57:3C28^IPv6\r"
+                    + "PID|||1234^^^^MR||DOE^JANE^|||F||||||||||||||||||||||\r"
+                    + "PD1|||||||||||01|N||||A\r"
+                    + "PV1|1|R||||||||||||||||||V01^20120901041038\r"
+                    + "PV2|||||||||||||||||||||||||AI|||||||||||||C|\r"
+                    + "ORC|RE||4242546^NameSpaceID||||||||||||||\r"
+                    + "RXA|0|1|20140701041038|20140701041038|48^HPV, quadrivalent^CVX|0.5|ml^MilliLiter [SI Volume Units]^UCUM||||14509|||||||||CP||\r",
+            "MSH|^~\\&|HNAM|W|RAD_IMAGING_REPORT|W|20180118111520||MDM^T02|<MESSAGEID>|P|2.6\r"
+                    + "PID|||1234^^^^MR||DOE^JANE^|||F||||||||||||||||||||||\r"
+                    + "PV1|1|O|2GY^2417^W||||D||||||||||OTW|<HospitalID>|||||||||||||||||||||||||20180115102400|20180118104500\r"
+                    + "TXA|1|05^Operative Report|TX|201801171442|5566^PAPLast^PAPFirst^J^^MD|201801171442|201801180346||<PHYSID>|<PHYSID>|MODL|<MESSAGEID>||4466^TRANSCLast^TRANSCFirst^J^^MD|<MESSAGEID>||P||AV\r"
+                    + "OBX|1|TX|05^Operative Report||                        <HOSPITAL NAME>||||||P\r"
+                    + "OBX|2|TX|05^Operative Report||                             <HOSPITAL ADDRESS2>||||||P\r"
+    };
+
+    // Conversions using different zones must not affect each other.
+    private static final ConverterOptions[] OPTIONS = {
+            new Builder().withZoneIdText("+03:00").build(),
+            new Builder().withZoneIdText("-05:00").build()
+    };
+
+    @Test
+    void shared_converter_matches_single_threaded_output() throws Exception {
+        HL7ToFHIRConverter converter = new HL7ToFHIRConverter();
+
+        List<String> expected = new ArrayList<>();
+        for (ConverterOptions options : OPTIONS) {
+            for (String message : MESSAGES) {
+                expected.add(normalize(converter.convert(message, options)));
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<List<String>>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(executor.submit(convertAll(converter)));
+            }
+            for (Future<List<String>> future : futures) {
+                List<String> results = future.get(5, TimeUnit.MINUTES);
+                for (int i = 0; i < results.size(); i++) {
+                    assertThat(results.get(i)).isEqualTo(expected.get(i % expected.size()));
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void batch_conversion_returns_results_in_input_order() {
+        HL7ToFHIRConverter converter = new HL7ToFHIRConverter();
+        List<String> batch = Arrays.asList(MESSAGES[0], "some text", MESSAGES[1], MESSAGES[2], MESSAGES[3]);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<ConversionResult> results;
+        try {
+            results = converter.convertAll(batch, OPTIONS[0], executor);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(results).hasSize(batch.size());
+        assertThat(results.get(1).isSuccess()).isFalse();
+        assertThat(results.get(1).getJson()).isNull();
+        assertThat(results.get(1).getError()).isInstanceOf(IllegalArgumentException.class);
+        for (int i : new int[] { 0, 2, 3, 4 }) {
+            assertThat(results.get(i).isSuccess()).isTrue();
+            assertThat(normalize(results.get(i).getJson()))
+                    .isEqualTo(normalize(converter.convert(batch.get(i), OPTIONS[0])));
+        }
+
+        // Without an executor the batch is converted on the calling thread
+        List<ConversionResult> sequentialResults = converter.convertAll(batch, OPTIONS[0]);
+        assertThat(sequentialResults).hasSize(batch.size());
+        assertThat(sequentialResults.get(1).isSuccess()).isFalse();
+        assertThat(normalize(sequentialResults.get(4).getJson())).isEqualTo(normalize(results.get(4).getJson()));
+    }
+
+    // Templates generated on a resource executor give the same bundle, entry by entry, as sequentially
+    @Test
+    void resource_executor_matches_sequential_output() throws Exception {
+        HL7ToFHIRConverter converter = new HL7ToFHIRConverter();
+        ExecutorService resourceExecutor = Executors.newFixedThreadPool(4);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (String zone : new String[] { "+03:00", "-05:00" }) {
+                ConverterOptions sequentialOptions = new Builder().withZoneIdText(zone).build();
+                ConverterOptions concurrentOptions = new Builder().withZoneIdText(zone)
+                        .withResourceExecutor(resourceExecutor).build();
+                for (String message : MESSAGES) {
+                    String expected = normalizeIds(converter.convert(message, sequentialOptions));
+                    // Several conversions share the resource executor
+                    List<Future<String>> futures = new ArrayList<>();
+                    for (int i = 0; i < ITERATIONS; i++) {
+                        futures.add(executor.submit(() -> converter.convert(message, concurrentOptions)));
+                    }
+                    for (Future<String> future : futures) {
+                        assertThat(normalizeIds(future.get(5, TimeUnit.MINUTES))).isEqualTo(expected);
+                    }
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+            resourceExecutor.shutdownNow();
+        }
+    }
+
+    // Templates finishing in any order on the resource executor still give the sequential bundle
+    @Test
+    void skewed_resource_executor_matches_sequential_output() {
+        HL7ToFHIRConverter converter = new HL7ToFHIRConverter();
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(4);
+        Random random = new Random(42);
+        // Each template starts after a random delay, so later templates often finish first
+        Executor skewedExecutor = task -> {
+            int delay;
+            synchronized (random) {
+                delay = random.nextInt(20);
+            }
+            scheduler.schedule(task, delay, TimeUnit.MILLISECONDS);
+        };
+        try {
+            ConverterOptions sequentialOptions = new Builder().withZoneIdText("+03:00").build();
+            ConverterOptions skewedOptions = new Builder().withZoneIdText("+03:00")
+                    .withResourceExecutor(skewedExecutor).build();
+            for (String message : new String[] { MESSAGES[0], MESSAGES[1] }) {
+                String expected = normalizeIds(converter.convert(message, sequentialOptions));
+                for (int i = 0; i < 5 * ITERATIONS; i++) {
+                    assertThat(normalizeIds(converter.convert(message, skewedOptions))).isEqualTo(expected);
+                }
+            }
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private static Callable<List<String>> convertAll(HL7ToFHIRConverter converter) {
+        return () -> {
+            List<String> results = new ArrayList<>();
+            for (int i = 0; i < ITERATIONS; i++) {
+                for (ConverterOptions options : OPTIONS) {
+                    for (String message : MESSAGES) {
+                        results.add(normalize(converter.convert(message, options)));
+                    }
+                }
+            }
+            return results;
+        };
+    }
+
+    private static String normalize(String json) {
+        String result = UUID_PATTERN.matcher(json).replaceAll("ID");
+        return LAST_UPDATED_PATTERN.matcher(result).replaceAll("");
+    }
+
+    /**
+     * Replaces the generated ids by their order of appearance, so references still have to point to
+     * the same entries, and drops the timestamps.
+     */
+    static String normalizeIds(String json) {
+        Map<String, String> ids = new HashMap<>();
+        Matcher matcher = UUID_PATTERN.matcher(json);
+        StringBuffer result = new StringBuffer();
+        while (matcher.find()) {
+            String id = ids.get(matcher.group());
+            if (id == null) {
+                id = "ID" + ids.size();
+                ids.put(matcher.group(), id);
+            }
+            matcher.appendReplacement(result, id);
+        }
+        matcher.appendTail(result);
+        return LAST_UPDATED_PATTERN.matcher(result).replaceAll("");
+    }
+}
@@ -7,12 +7,22 @@ package io.github.linuxforhealth;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigDecimal;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import org.apache.commons.io.IOUtils;
@@ -20,9 +30,13 @@ import org.hl7.fhir.exceptions.FHIRException;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.r4.model.CodeableConcept;
 import org.hl7.fhir.r4.model.Coding;
+import org.hl7.fhir.r4.model.Encounter;
 import org.hl7.fhir.r4.model.Identifier;
 import org.hl7.fhir.r4.model.Immunization;
+import org.hl7.fhir.r4.model.MessageHeader;
+import org.hl7.fhir.r4.model.Observation;
 import org.hl7.fhir.r4.model.Organization;
+import org.hl7.fhir.r4.model.Patient;
 import org.hl7.fhir.r4.model.Quantity;
 import org.hl7.fhir.r4.model.Resource;
 import org.hl7.fhir.r4.model.ResourceType;
@@ -34,10 +48,18 @@ import org.junit.jupiter.api.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import ca.uhn.fhir.validation.SingleValidationMessage;
+import ca.uhn.fhir.validation.ValidationResult;
 import ca.uhn.hl7v2.model.Message;
 import ca.uhn.hl7v2.util.Hl7InputStreamMessageStringIterator;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import io.github.linuxforhealth.api.ConversionMetrics;
 import io.github.linuxforhealth.core.Constants;
+import io.github.linuxforhealth.core.metrics.InMemoryConversionMetrics;
 import io.github.linuxforhealth.fhir.FHIRContext;
+import io.github.linuxforhealth.hl7.ConversionResult;
 import io.github.linuxforhealth.hl7.ConverterOptions;
 import io.github.linuxforhealth.hl7.ConverterOptions.Builder;
 import io.github.linuxforhealth.hl7.HL7ToFHIRConverter;
@@ -48,6 +70,8 @@ class FHIRConverterTest {
     private static final String HL7_FILE_UNIX_NEWLINE = "src/test/resources/sample_unix.hl7";
     private static final String HL7_FILE_WIN_NEWLINE = "src/test/resources/sample_win.hl7";
     private static final ConverterOptions OPTIONS = new Builder().withValidateResource().withPrettyPrint().build();
+    private static final String UUID_REGEX = "[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}";
+    private static final String LAST_UPDATED_REGEX = "\"lastUpdated\":\"[^\"]*\"";
     private static final Logger LOGGER = LoggerFactory.getLogger(FHIRConverterTest.class);
 
     @Test
@@ -86,6 +110,32 @@ class FHIRConverterTest {
 
     }
 
+    @Test
+    void conversion_metrics_are_recorded() {
+        String hl7message = "MSH|^~\\&|SE050|050|PACS|050|20120912011230||ADT^A01|102|T|2.6|||AL|NE|764|ASCII||||||\r"
+                + "EVN||201209122222\r"
+                + "PID|0010||PID1234^5^M11^A^MR^HOSP~1234568965^^^USA^SS||DOE^JOHN^A^||19800202|F||W|111 TEST_STREET_NAME^^TEST_CITY^NY^111-1111^USA||(905)111-1111|||S|ZZ|12^^^124|34-13-312||||TEST_BIRTH_PLACE\r"
+                + "PV1|1|ff|yyy|EL|ABC||200^ATTEND_DOC_FAMILY_TEST^ATTEND_DOC_GIVEN_TEST|201^REFER_DOC_FAMILY_TEST^REFER_DOC_GIVEN_TEST|202^CONSULTING_DOC_FAMILY_TEST^CONSULTING_DOC_GIVEN_TEST|MED|||||B6|E|272^ADMITTING_DOC_FAMILY_TEST^ADMITTING_DOC_GIVEN_TEST||48390|||||||||||||||||||||||||201409122200|20150206031726\r";
+
+        InMemoryConversionMetrics metrics = new InMemoryConversionMetrics();
+        ConverterOptions options = new Builder().withValidateResource().withMetrics(metrics).build();
+        HL7ToFHIRConverter ftv = new HL7ToFHIRConverter();
+        String json = ftv.convert(hl7message, options);
+        assertThat(json).isNotBlank();
+
+        assertThat(metrics.getTimer(ConversionMetrics.PARSE, "ADT_A01", null).getCount()).isEqualTo(1);
+        assertThat(metrics.getTimer(ConversionMetrics.TRANSFORM_RESOURCE, "ADT_A01", "Patient").getCount())
+                .isEqualTo(1);
+        assertThat(metrics.getTimer(ConversionMetrics.ADD_ENTRY, "ADT_A01", "Patient").getCount()).isEqualTo(1);
+        assertThat(metrics.getTimer(ConversionMetrics.VALIDATE, "ADT_A01", null).getCount()).isEqualTo(1);
+        assertThat(metrics.getCount(ConversionMetrics.RESOURCES_GENERATED, "ADT_A01", "Patient")).isEqualTo(1);
+        assertThat(metrics.getCount(ConversionMetrics.RESOURCES_GENERATED, "ADT_A01", "Encounter")).isEqualTo(1);
+
+        metrics.reset();
+        assertThat(metrics.getCounters()).isEmpty();
+        assertThat(metrics.getTimers()).isEmpty();
+    }
+
     @Test
     void test_patient_encounter_no_message_header() throws IOException {
 
@@ -122,6 +172,197 @@ class FHIRConverterTest {
 
     }
 
+    @Test
+    void convert_hl7_from_file_to_fhir_with_parallel_validation() throws IOException {
+        HL7ToFHIRConverter ftv = new HL7ToFHIRConverter();
+        ConverterOptions options = new Builder().withBundleType(BundleType.COLLECTION).withParallelValidation().build();
+        assertThat(options.isValidateResource()).isTrue();
+
+        String json = ftv.convert(new File(HL7_FILE_UNIX_NEWLINE), options);
+        verifyResult(json, BundleType.COLLECTION);
+    }
+
+    @Test
+    void convert_hl7_from_file_to_fhir_with_resource_executor() throws IOException {
+        HL7ToFHIRConverter ftv = new HL7ToFHIRConverter();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            ConverterOptions options = new Builder().withBundleType(BundleType.COLLECTION)
+                    .withResourceExecutor(executor).build();
+            String json = ftv.convert(new File(HL7_FILE_UNIX_NEWLINE), options);
+            verifyResult(json, BundleType.COLLECTION);
+
+            String sequentialJson = ftv.convert(new File(HL7_FILE_UNIX_NEWLINE),
+                    new Builder().withBundleType(BundleType.COLLECTION).build());
+            // Same entries in the same order, referencing the same entries
+            assertThat(FHIRConverterConcurrencyTest.normalizeIds(json))
+                    .isEqualTo(FHIRConverterConcurrencyTest.normalizeIds(sequentialJson));
+
+            // Encounter is generated once the Patient it references is
+            Bundle bundle = (Bundle) new FHIRContext().getParser().parseResource(json);
+            Resource patient = bundle.getEntry().stream().map(BundleEntryComponent::getResource)
+                    .filter(r -> r.getResourceType() == ResourceType.Patient).findFirst().get();
+            Encounter encounter = (Encounter) bundle.getEntry().stream().map(BundleEntryComponent::getResource)
+                    .filter(r -> r.getResourceType() == ResourceType.Encounter).findFirst().get();
+            assertThat(encounter.getSubject().getReference()).isEqualTo(patient.getId());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void entries_validated_in_parallel_report_issues_at_their_bundle_location() throws Exception {
+        Bundle bundle = new Bundle().setType(BundleType.COLLECTION);
+        bundle.addEntry().setFullUrl("urn:uuid:" + UUID.randomUUID()).setResource(new Patient());
+        // Missing the required status and code
+        bundle.addEntry().setFullUrl("urn:uuid:" + UUID.randomUUID()).setResource(new Observation());
+
+        FHIRContext context = new FHIRContext(false, true, true, new HashMap<>());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> context.validate(bundle));
+
+        ValidationResult result = context.validateAsync(bundle).get(1, TimeUnit.MINUTES);
+        assertThat(result.isSuccessful()).isFalse();
+        assertThat(result.getMessages()).extracting(SingleValidationMessage::getLocationString)
+                .anySatisfy(location -> assertThat(location).startsWith("Bundle.entry[1].resource"));
+    }
+
+    @Test
+    void valid_message_bundle_passes_parallel_validation() {
+        Bundle bundle = new Bundle().setType(BundleType.MESSAGE);
+        bundle.setTimestamp(new Date());
+        MessageHeader header = new MessageHeader();
+        header.setEvent(new Coding("http://terminology.hl7.org/CodeSystem/v2-0003", "A01", null));
+        header.getSource().setEndpoint("http://example.org/source");
+        bundle.addEntry().setFullUrl("urn:uuid:" + UUID.randomUUID()).setResource(header);
+        bundle.addEntry().setFullUrl("urn:uuid:" + UUID.randomUUID()).setResource(new Patient());
+        bundle.addEntry().setFullUrl("urn:uuid:" + UUID.randomUUID()).setResource(new Patient());
+
+        FHIRContext sequential = new FHIRContext(false, true, false, new HashMap<>());
+        Assertions.assertDoesNotThrow(() -> sequential.validate(bundle));
+        FHIRContext parallel = new FHIRContext(false, true, true, new HashMap<>());
+        Assertions.assertDoesNotThrow(() -> parallel.validate(bundle));
+    }
+
+    @Test
+    void convert_all_hl7_messages_from_file_to_fhir() throws IOException {
+        HL7ToFHIRConverter ftv = new HL7ToFHIRConverter();
+        List<ConversionResult> results = new ArrayList<>();
+
+        int count = ftv.convertAll(Paths.get(HL7_FILE_WIN_NEWLINE), OPTIONS, results::add);
+
+        assertThat(count).isEqualTo(1);
+        assertThat(results).hasSize(1);
+        assertThat(results.get(0).isSuccess()).isTrue();
+        verifyResult(results.get(0).getJson(), Constants.DEFAULT_BUNDLE_TYPE);
+    }
+
+    @Test
+    void convert_all_hl7_messages_from_stream_to_fhir() throws IOException {
+        String hl7message = IOUtils.toString(new File(HL7_FILE_UNIX_NEWLINE).toURI(), StandardCharsets.UTF_8).trim();
+        String unsupportedMessage = "MSH|^~\\&|MESA_ADT|XYZ_ADMITTING|MESA_IS|XYZ_HOSPITAL|201612291501||ADT^A18^ADT_A18|101166|P|2.3.1\n"
+                + "EVN|A18|201604211000||||201604210950\n"
+                + "PID|1||000010004^^^ST01A^MR||SENTARA10004^PAT^L||19251008|F\n";
+        // Newline separated messages followed by an MLLP framed message
+        String messages = hl7message + "\n" + unsupportedMessage + "\u000b" + hl7message + "\u001c\r";
+
+        HL7ToFHIRConverter ftv = new HL7ToFHIRConverter();
+        List<ConversionResult> results = new ArrayList<>();
+        try (InputStream ins = IOUtils.toInputStream(messages, StandardCharsets.UTF_8)) {
+            int count = ftv.convertAll(ins, OPTIONS, results::add);
+            assertThat(count).isEqualTo(3);
+        }
+
+        assertThat(results).hasSize(3);
+        assertThat(results.get(0).isSuccess()).isTrue();
+        verifyResult(results.get(0).getJson(), Constants.DEFAULT_BUNDLE_TYPE);
+        assertThat(results.get(1).isSuccess()).isFalse();
+        assertThat(results.get(1).getError()).isInstanceOf(UnsupportedOperationException.class);
+        assertThat(results.get(2).isSuccess()).isTrue();
+        verifyResult(results.get(2).getJson(), Constants.DEFAULT_BUNDLE_TYPE);
+    }
+
+    @Test
+    void convert_hl7_with_direct_json_output_matches_bundle_output() throws IOException {
+        String hl7message = IOUtils.toString(new File(HL7_FILE_UNIX_NEWLINE).toURI(), StandardCharsets.UTF_8);
+        ConverterOptions options = new Builder().withBundleType(BundleType.TRANSACTION).build();
+        ConverterOptions directOptions = new Builder().withBundleType(BundleType.TRANSACTION).withDirectJsonOutput()
+                .build();
+
+        HL7ToFHIRConverter ftv = new HL7ToFHIRConverter();
+        String json = ftv.convert(hl7message, directOptions);
+        verifyResult(json, BundleType.TRANSACTION);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ftv.convert(hl7message, directOptions, out);
+        verifyResult(new String(out.toByteArray(), StandardCharsets.UTF_8), BundleType.TRANSACTION);
+
+        // Same resources as the bundle built by HAPI, once both are normalized by the FHIR parser
+        FHIRContext context = new FHIRContext();
+        String expected = context.getParser().encodeResourceToString(context.getParser().parseResource(
+                ftv.convert(hl7message, options)));
+        String actual = context.getParser().encodeResourceToString(context.getParser().parseResource(json));
+        assertThat(actual.replaceAll(UUID_REGEX, "ID").replaceAll(LAST_UPDATED_REGEX, ""))
+                .isEqualTo(expected.replaceAll(UUID_REGEX, "ID").replaceAll(LAST_UPDATED_REGEX, ""));
+    }
+
+    @Test
+    void convert_hl7_with_message_structure_logging() throws IOException {
+        HL7ToFHIRConverter ftv = new HL7ToFHIRConverter();
+        ConverterOptions options = new Builder().withLogMessageStructure().build();
+        assertThat(options.isLogMessageStructure()).isTrue();
+        assertThat(OPTIONS.isLogMessageStructure()).isFalse();
+
+        // Capture the converter's info messages, the test configuration only logs errors
+        ch.qos.logback.classic.Logger converterLogger = (ch.qos.logback.classic.Logger) LoggerFactory
+                .getLogger(HL7ToFHIRConverter.class);
+        Level level = converterLogger.getLevel();
+        ListAppender<ILoggingEvent> appender = new ListAppender<>();
+        appender.start();
+        converterLogger.setLevel(Level.INFO);
+        converterLogger.setAdditive(false);
+        converterLogger.addAppender(appender);
+        try {
+            String json = ftv.convert(new File(HL7_FILE_UNIX_NEWLINE), options);
+            verifyResult(json, Constants.DEFAULT_BUNDLE_TYPE);
+            List<String> messages = appender.list.stream().map(ILoggingEvent::getFormattedMessage)
+                    .filter(message -> message.startsWith("HL7_MESSAGE_STRUCTURE="))
+                    .collect(Collectors.toList());
+            assertThat(messages).hasSize(1);
+            assertThat(messages.get(0)).contains("MSH").contains("PID");
+
+            // Not logged when the option is off
+            appender.list.clear();
+            verifyResult(ftv.convert(new File(HL7_FILE_UNIX_NEWLINE), OPTIONS), Constants.DEFAULT_BUNDLE_TYPE);
+            assertThat(appender.list.stream().map(ILoggingEvent::getFormattedMessage)
+                    .filter(message -> message.startsWith("HL7_MESSAGE_STRUCTURE="))
+                    .collect(Collectors.toList())).isEmpty();
+        } finally {
+            converterLogger.detachAppender(appender);
+            converterLogger.setAdditive(true);
+            converterLogger.setLevel(level);
+        }
+    }
+
+    @Test
+    void convert_hl7_after_reloading_templates() throws Exception {
+        HL7ToFHIRConverter ftv = new HL7ToFHIRConverter();
+        assertThat(ftv.getTemplateVersion()).isEqualTo(1);
+
+        // Conversions started before the reload completes use the templates they started with
+        CompletableFuture<Integer> reload = ftv.reloadTemplates();
+        verifyResult(ftv.convert(new File(HL7_FILE_UNIX_NEWLINE), OPTIONS), Constants.DEFAULT_BUNDLE_TYPE);
+        assertThat(reload.get(60, TimeUnit.SECONDS)).isEqualTo(2);
+
+        assertThat(ftv.getTemplateVersion()).isEqualTo(2);
+        verifyResult(ftv.convert(new File(HL7_FILE_UNIX_NEWLINE), OPTIONS), Constants.DEFAULT_BUNDLE_TYPE);
+    }
+
+    @Test
+    void direct_json_output_cannot_be_used_with_validation() {
+        Builder builder = new Builder().withDirectJsonOutput().withValidateResource();
+        Assertions.assertThrows(IllegalArgumentException.class, builder::build);
+    }
+
     @Test
     void test_valid_message_but_unsupported_message_throws_exception() throws IOException {
         String hl7message = "MSH|^~\\&|MESA_ADT|XYZ_ADMITTING|MESA_IS|XYZ_HOSPITAL|201612291501||ADT^A18^ADT_A18|101166|P|2.3.1\n"
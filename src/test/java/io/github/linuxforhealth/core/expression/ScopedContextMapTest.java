@@ -0,0 +1,65 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.core.expression;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import io.github.linuxforhealth.api.EvaluationResult;
+
+class ScopedContextMapTest {
+
+    @Test
+    void scope_reads_values_of_parent_contexts() {
+        Map<String, EvaluationResult> root = new HashMap<>();
+        root.put("var1", new SimpleEvaluationResult<>("root1"));
+        root.put("var2", new SimpleEvaluationResult<>("root2"));
+        Map<String, EvaluationResult> parent = new ScopedContextMap(root);
+        parent.put("var2", new SimpleEvaluationResult<>("parent2"));
+        Map<String, EvaluationResult> scope = new ScopedContextMap(parent);
+        scope.put("var3", new SimpleEvaluationResult<>("scope3"));
+
+        assertThat((String) scope.get("var1").getValue()).isEqualTo("root1");
+        assertThat((String) scope.get("var2").getValue()).isEqualTo("parent2");
+        assertThat((String) scope.get("var3").getValue()).isEqualTo("scope3");
+        assertThat(scope.get("var4")).isNull();
+        assertThat(scope).containsOnlyKeys("var1", "var2", "var3").hasSize(3);
+        assertThat(scope.isEmpty()).isFalse();
+    }
+
+    @Test
+    void scope_does_not_change_parent_contexts() {
+        Map<String, EvaluationResult> root = new HashMap<>();
+        root.put("var1", new SimpleEvaluationResult<>("root1"));
+        Map<String, EvaluationResult> scope = new ScopedContextMap(root);
+
+        EvaluationResult previous = scope.put("var1", new SimpleEvaluationResult<>("scope1"));
+        scope.put("var2", new SimpleEvaluationResult<>("scope2"));
+
+        assertThat((String) previous.getValue()).isEqualTo("root1");
+        assertThat((String) scope.get("var1").getValue()).isEqualTo("scope1");
+        assertThat(root).containsOnlyKeys("var1");
+        assertThat((String) root.get("var1").getValue()).isEqualTo("root1");
+    }
+
+    @Test
+    void values_cannot_be_removed_from_scope() {
+        Map<String, EvaluationResult> scope = new ScopedContextMap(new HashMap<>());
+        scope.put("var1", new SimpleEvaluationResult<>("scope1"));
+
+        assertThat(new ScopedContextMap(new HashMap<>())).isEmpty();
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> scope.remove("var1"));
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> scope.clear());
+        Assertions.assertThrows(UnsupportedOperationException.class,
+                () -> scope.entrySet().iterator().remove());
+    }
+
+}
@@ -21,6 +21,34 @@ class TerminologyLookupTest {
     assertThat(code.getDisplay()).isEqualTo("ICD 10 Germany v2012");
   }
 
+  @Test
+  void lookups_are_cached() {
+    TerminologyLookup.clearCache();
+    SimpleCode code = TerminologyLookup.lookup("v2-0396", "ICD10GM2012");
+    assertThat(code.getDisplay()).isEqualTo("ICD 10 Germany v2012");
+    assertThat(TerminologyLookup.getCacheMissCount()).isEqualTo(1);
+
+    // Callers get their own copy of the cached code
+    code.setVersion("2012");
+    SimpleCode cachedCode = TerminologyLookup.lookup("v2-0396", "ICD10GM2012");
+    assertThat(cachedCode).isNotSameAs(code);
+    assertThat(cachedCode.getDisplay()).isEqualTo("ICD 10 Germany v2012");
+    assertThat(cachedCode.getVersion()).isNull();
+    assertThat(TerminologyLookup.getCacheHitCount()).isEqualTo(1);
+  }
 
+  @Test
+  void misses_are_cached() {
+    TerminologyLookup.clearCache();
+    assertThat(TerminologyLookup.lookup("UNKNOWN-SYSTEM", "F")).isNull();
+    assertThat(TerminologyLookup.lookup("UNKNOWN-SYSTEM", "F")).isNull();
+    SimpleCode badCode = TerminologyLookup.lookup("v2-0396", "NOT-A-CODE");
+    assertThat(badCode.getDisplay()).isNull();
+    badCode = TerminologyLookup.lookup("v2-0396", "NOT-A-CODE");
+    assertThat(badCode.getDisplay()).isNull();
+    assertThat(TerminologyLookup.getCacheMissCount()).isEqualTo(2);
+    assertThat(TerminologyLookup.getCacheHitCount()).isEqualTo(2);
+    assertThat(TerminologyLookup.getCacheSize()).isEqualTo(2);
+  }
 
 }
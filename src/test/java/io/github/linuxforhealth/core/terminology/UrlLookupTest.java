@@ -0,0 +1,51 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.linuxforhealth.core.terminology;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class UrlLookupTest {
+
+  @Test
+  void lookup_ignores_case() {
+    assertThat(UrlLookup.getSystemUrl("LN")).isEqualTo("http://loinc.org");
+    assertThat(UrlLookup.getSystemUrl("ln")).isEqualTo("http://loinc.org");
+    assertThat(UrlLookup.getExtensionUrl("mothersMaidenName"))
+        .isEqualTo("http://hl7.org/fhir/StructureDefinition/patient-mothersMaidenName");
+    assertThat(UrlLookup.getExtensionUrl("MOTHERSMAIDENNAME"))
+        .isEqualTo("http://hl7.org/fhir/StructureDefinition/patient-mothersMaidenName");
+    assertThat(UrlLookup.getSystemUrl("not-a-system")).isNull();
+    assertThat(UrlLookup.getSystemUrl("http://example.org/system")).isEqualTo("http://example.org/system");
+  }
+
+  @Test
+  void lookups_during_reload_see_loaded_urls() throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<?> reloads = executor.submit(() -> {
+        for (int i = 0; i < 20; i++) {
+          UrlLookup.reset();
+        }
+      });
+      while (!reloads.isDone()) {
+        assertThat(UrlLookup.getSystemUrl("LN")).isEqualTo("http://loinc.org");
+      }
+      reloads.get();
+    } finally {
+      executor.shutdown();
+      executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+  }
+
+}
@@ -7,6 +7,11 @@ package io.github.linuxforhealth.hl7.data;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZonedDateTime;
+
 import org.junit.jupiter.api.Test;
 
 import io.github.linuxforhealth.hl7.data.date.DateUtil;
@@ -109,4 +114,34 @@ class DateUtilTest {
         assertThat(ld).isEqualTo("2007-11-04T01:32:06.3456+08:00");
     }
 
+    @Test
+    void datetime_hour_24_is_midnight_of_next_day() {
+        String ld = DateUtil.formatToDateTimeWithZone("20081231240000");
+        assertThat(ld).isEqualTo("2009-01-01T00:00:00+08:00");
+    }
+
+    @Test
+    void date_day_after_end_of_month_is_last_day_of_month() {
+        assertThat(DateUtil.formatToDate("20080231")).isEqualTo("2008-02-29");
+        assertThat(DateUtil.formatToDateTimeWithZone("2008023110")).isEqualTo("2008-02-29T10:00:00+08:00");
+    }
+
+    @Test
+    void invalid_dtm_values() {
+        assertThat(DateUtil.formatToDate("20081")).isNull();
+        assertThat(DateUtil.formatToDate("abc")).isNull();
+        assertThat(DateUtil.formatToDateTimeWithZone("20080926093512.34567")).isNull();
+        assertThat(DateUtil.formatToDateTimeWithZone("20081326")).isNull();
+        assertThat(DateUtil.formatToDateTimeWithZone("2008092625")).isNull();
+    }
+
+    @Test
+    void temporal_iso_values() {
+        assertThat(DateUtil.getTemporal("2020-03-20T10:15:30Z")).isInstanceOf(Instant.class);
+        assertThat(DateUtil.getTemporal("2020-03-20T10:15:30+01:00[Europe/Paris]")).isInstanceOf(ZonedDateTime.class);
+        assertThat(DateUtil.getTemporal("2020-03-20T10:15:30")).isEqualTo(LocalDateTime.of(2020, 3, 20, 10, 15, 30));
+        assertThat(DateUtil.getTemporal("2020-03-20")).isEqualTo(LocalDate.of(2020, 3, 20));
+        assertThat(DateUtil.getTemporal("20200320")).isNull();
+    }
+
 }
@@ -11,7 +11,11 @@ import org.junit.jupiter.api.Test;
 
 import com.google.common.collect.Lists;
 
+import ca.uhn.hl7v2.HL7Exception;
 import ca.uhn.hl7v2.model.DataTypeException;
+import ca.uhn.hl7v2.model.Message;
+import ca.uhn.hl7v2.model.Segment;
+import ca.uhn.hl7v2.model.Type;
 import ca.uhn.hl7v2.model.Varies;
 import ca.uhn.hl7v2.model.v26.datatype.CWE;
 import ca.uhn.hl7v2.model.v26.datatype.TX;
@@ -19,6 +23,7 @@ import ca.uhn.hl7v2.model.v26.group.ORU_R01_OBSERVATION;
 import ca.uhn.hl7v2.model.v26.group.ORU_R01_ORDER_OBSERVATION;
 import ca.uhn.hl7v2.model.v26.message.ORU_R01;
 import ca.uhn.hl7v2.model.v26.segment.OBX;
+import io.github.linuxforhealth.hl7.parsing.HL7HapiParser;
 
 class Hl7DataHandlerUtilTest {
 
@@ -36,6 +41,23 @@ class Hl7DataHandlerUtilTest {
         assertThat(Hl7DataHandlerUtil.getStringValue(null)).isNull();
     }
 
+    // Values are read without the lock of the message's extractor, so reading them must not change the message
+    @Test
+    void test_getStringValue_does_not_change_the_message() throws HL7Exception {
+        String hl7message = "MSH|^~\\&|SE050|050|PACS|050|20120912011230||ADT^A01|102|T|2.6|||AL|NE\r"
+                + "PID|1||12345678^^^^MR||Moose^Mickey||20060504|M||2106-3^White^HL70005"
+                + "|111 1st Street^^Minneapolis^MN^11111^USA|PatC\r";
+        Message message = HL7HapiParser.getSharedInstance().getParser().parse(hl7message);
+        Segment pid = (Segment) message.get("PID");
+        Type race = pid.getField(10, 0);
+        String encoded = message.encode();
+
+        assertThat(Hl7DataHandlerUtil.getStringValue(race)).isEqualTo("2106-3");
+        assertThat(Hl7DataHandlerUtil.getStringValue(race, true)).isEqualTo("2106-3, White, HL70005");
+        assertThat(Hl7DataHandlerUtil.getStringValue(Lists.newArrayList(pid.getField(3)))).isEqualTo("12345678");
+        assertThat(message.encode()).isEqualTo(encoded);
+    }
+
     @Test
     void test_getStringValue_returns_value_for_hl7_primitive() throws DataTypeException {
         ORU_R01 message = new ORU_R01();
@@ -15,6 +15,11 @@ import org.junit.jupiter.api.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.model.Message;
+import ca.uhn.hl7v2.model.Segment;
+import io.github.linuxforhealth.hl7.parsing.HL7HapiParser;
+
 class Hl7RelatedGeneralUtilsTest {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(Hl7RelatedGeneralUtilsTest.class);
@@ -298,6 +303,23 @@ class Hl7RelatedGeneralUtilsTest {
     }
     // Note: Utility  Hl7RelatedGeneralUtils.getAddressDistrict is more effectively tested as part of Patient Address testing
 
+    // The segment is read without the lock of the message's extractor, so reading it must not change the message
+    @Test
+    void test_getAddressDistrict_does_not_change_the_message() throws HL7Exception {
+        String hl7message = "MSH|^~\\&|SE050|050|PACS|050|20120912011230||ADT^A01|102|T|2.6|||AL|NE\r"
+                + "PID|1||12345678^^^^MR||Moose^Mickey||20060504|M||2106-3^White^HL70005"
+                + "|111 1st Street^^Minneapolis^MN^11111^USA|PatC\r";
+        Message message = HL7HapiParser.getSharedInstance().getParser().parse(hl7message);
+        Segment pid = (Segment) message.get("PID");
+        String encoded = message.encode();
+        int fields = pid.numFields();
+
+        assertThat(Hl7RelatedGeneralUtils.getAddressDistrict("PatC", null, pid)).isEqualTo("PatC");
+        assertThat(Hl7RelatedGeneralUtils.getAddressDistrict("PatC", "AdrC", pid)).isEqualTo("AdrC");
+        assertThat(pid.numFields()).isEqualTo(fields);
+        assertThat(message.encode()).isEqualTo(encoded);
+    }
+
     @Test
     void getFormattedTelecomNumberValue() {
         // Empty values return nothing
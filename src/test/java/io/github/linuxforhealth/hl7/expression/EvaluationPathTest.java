@@ -0,0 +1,60 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.expression;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+
+class EvaluationPathTest {
+
+    @AfterEach
+    void reset() {
+        EvaluationPath.get().endResource();
+    }
+
+    @Test
+    void path_is_built_from_resource_and_fields() {
+        EvaluationPath path = EvaluationPath.get();
+        path.startResource("Patient");
+        path.push("name");
+        path.push("given");
+        assertThat(path.getResource()).isEqualTo("Patient");
+        assertThat(path).hasToString("Patient-> Field:name-> Field:given");
+
+        path.pop();
+        assertThat(path).hasToString("Patient-> Field:name");
+
+        // Deeper than the initial capacity
+        for (int i = 0; i < 40; i++) {
+            path.push("f" + i);
+        }
+        assertThat(path.toString()).endsWith("-> Field:f38-> Field:f39");
+
+        path.startResource("Encounter");
+        assertThat(path).hasToString("Encounter");
+    }
+
+    @Test
+    void path_is_only_in_logging_context_while_logging() {
+        EvaluationPath path = EvaluationPath.get();
+        path.startResource("Patient");
+        path.push("name");
+        assertThat(MDC.get("Resource")).isEqualTo("Patient");
+
+        try (EvaluationPath.LoggingContext context = path.putInLoggingContext()) {
+            assertThat(MDC.get("Resource")).isEqualTo("Patient-> Field:name");
+        }
+        assertThat(MDC.get("Resource")).isEqualTo("Patient");
+
+        path.endResource();
+        assertThat(MDC.get("Resource")).isNull();
+        assertThat(path.getResource()).isNull();
+    }
+
+}
@@ -0,0 +1,68 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.expression;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import io.github.linuxforhealth.hl7.ConverterOptions;
+import io.github.linuxforhealth.hl7.HL7ToFHIRConverter;
+import io.github.linuxforhealth.hl7.expression.ExpressionProfiler.ExpressionStats;
+
+class ExpressionProfilerTest {
+
+    private static final String MESSAGE = "MSH|^~\\&|SE050|050|PACS|050|20120912011230||ADT^A01|102|T|2.6|||AL|NE|764|ASCII||||||\r"
+            + "EVN||201209122222\r"
+            + "PID|0010||PID1234^5^M11^A^MR^HOSP~1234568965^^^USA^SS||DOE^JOHN^A^||19800202|F||W|111 TEST_STREET_NAME^^TEST_CITY^NY^111-1111^USA||(905)111-1111|||S|ZZ|12^^^124|34-13-312||||TEST_BIRTH_PLACE\r"
+            + "PV1|1|ff|yyy|EL|ABC||200^ATTEND_DOC_FAMILY_TEST^ATTEND_DOC_GIVEN_TEST|||MED|||||B6|E|||48390|||||||||||||||||||||||||201409122200|20150206031726\r";
+
+    @AfterEach
+    void reset() {
+        ExpressionProfiler.setEnabled(false);
+        ExpressionProfiler.reset();
+    }
+
+    @Test
+    void expressions_are_not_recorded_when_profiling_is_off() {
+        ExpressionProfiler.setEnabled(false);
+        new HL7ToFHIRConverter().convert(MESSAGE, ConverterOptions.SIMPLE_OPTIONS);
+
+        assertThat(ExpressionProfiler.getReport()).isEmpty();
+    }
+
+    @Test
+    void expressions_are_recorded_by_evaluation_path() {
+        ExpressionProfiler.setEnabled(true);
+        HL7ToFHIRConverter converter = new HL7ToFHIRConverter();
+        converter.convert(MESSAGE, ConverterOptions.SIMPLE_OPTIONS);
+        converter.convert(MESSAGE, ConverterOptions.SIMPLE_OPTIONS);
+
+        List<ExpressionStats> report = ExpressionProfiler.getReport();
+        assertThat(report).isNotEmpty();
+        assertThat(report).extracting(ExpressionStats::getPath).contains("Patient-> Field:name");
+        for (int i = 0; i < report.size(); i++) {
+            ExpressionStats stats = report.get(i);
+            assertThat(stats.getCount()).isPositive();
+            assertThat(stats.getSelfNanos()).isLessThanOrEqualTo(stats.getTotalNanos());
+            assertThat(stats.getMaxNanos()).isLessThanOrEqualTo(stats.getTotalNanos());
+            if (i > 0) {
+                assertThat(stats.getSelfNanos()).isLessThanOrEqualTo(report.get(i - 1).getSelfNanos());
+            }
+        }
+        ExpressionStats name = report.stream().filter(s -> s.getPath().equals("Patient-> Field:name"))
+                .findFirst().get();
+        assertThat(name.getCount()).isGreaterThanOrEqualTo(2);
+
+        String text = ExpressionProfiler.formatReport(3);
+        assertThat(text.split("\n")).hasSize(4);
+        assertThat(text).startsWith(" Rank");
+    }
+
+}
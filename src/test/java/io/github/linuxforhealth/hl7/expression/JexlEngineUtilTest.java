@@ -7,7 +7,14 @@ package io.github.linuxforhealth.hl7.expression;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.lang3.math.NumberUtils;
@@ -16,6 +23,9 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 
+import com.google.common.collect.Maps;
+
+import io.github.linuxforhealth.core.data.CompiledJexlExpression;
 import io.github.linuxforhealth.core.data.JexlEngineUtil;
 
 class JexlEngineUtilTest {
@@ -64,4 +74,116 @@ class JexlEngineUtilTest {
         assertThat(b).isEqualTo(NumberUtils.createFloat("1.2"));
     }
 
+    @Test
+    void compiled_expression_returns_value() {
+        JexlEngineUtil wex = new JexlEngineUtil();
+        CompiledJexlExpression exp = JexlEngineUtil.compile(" String.join(\" \",  var1, var2) ");
+        assertThat(exp.getExpression()).isEqualTo("String.join(\" \",  var1, var2)");
+
+        Map<String, Object> context = new HashMap<>();
+        context.put("var1", "s");
+        context.put("var2", "t");
+        assertThat(wex.evaluate(exp, context)).isEqualTo("s t");
+        context.put("var2", "u");
+        assertThat(wex.evaluate(exp, context)).isEqualTo("s u");
+    }
+
+    // Invalid expressions compile, the failure is reported when they are evaluated
+    @ParameterizedTest
+    @ValueSource(strings = { "System.currentTimeMillis()", "String.toString();System.exit(1); ", "String" })
+    void invalid_compiled_expression_throws_exception_on_evaluation(String evaluationString) {
+        JexlEngineUtil wex = new JexlEngineUtil();
+        CompiledJexlExpression exp = JexlEngineUtil.compile(evaluationString);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            wex.evaluate(exp, new HashMap<>());
+        });
+    }
+
+    @Test
+    void compiled_expression_uses_functions_of_engine() {
+        CompiledJexlExpression exp = JexlEngineUtil.compile("Math.max(var1, 2)");
+        Map<String, Object> context = new HashMap<>();
+        context.put("var1", 5);
+
+        Map<String, Object> functions = new HashMap<>();
+        functions.put("Math", Math.class);
+        assertThat(new JexlEngineUtil(functions).evaluate(exp, context)).isEqualTo(5);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            new JexlEngineUtil().evaluate(exp, context);
+        });
+    }
+
+    @Test
+    void compiled_condition_returns_value() {
+        JexlEngineUtil wex = new JexlEngineUtil();
+        CompiledJexlExpression condition = JexlEngineUtil.compileCondition("var1 > var2");
+        Map<String, Object> context = new HashMap<>();
+        context.put("var1", 5);
+        context.put("var2", 2);
+        assertThat(wex.evaluateCondition(condition, context)).isTrue();
+        assertThat(wex.evaluateCondition("var1 < var2", context)).isFalse();
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            wex.evaluateCondition(JexlEngineUtil.compileCondition("var1 > var2 > var3"), context);
+        });
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            wex.evaluateCondition(JexlEngineUtil.compile("String.toString()"), context);
+        });
+    }
+
+    // Compiled expressions are stored in template snapshots, they are compiled again when read
+    @Test
+    void compiled_expression_is_serializable() throws IOException, ClassNotFoundException {
+        CompiledJexlExpression exp = JexlEngineUtil.compile("String.join(\"-\", var1, var1)");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(exp);
+        }
+        CompiledJexlExpression read;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            read = (CompiledJexlExpression) in.readObject();
+        }
+
+        Map<String, Object> context = new HashMap<>();
+        context.put("var1", "a");
+        assertThat(new JexlEngineUtil().evaluate(read, context)).isEqualTo("a-a");
+    }
+
+    // Only the variables used by the expression are read from the context
+    @Test
+    void expression_reads_only_used_variables() {
+        JexlEngineUtil wex = new JexlEngineUtil();
+        Map<String, String> values = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            values.put("var" + i, "v" + i);
+        }
+        List<String> readValues = new ArrayList<>();
+        Map<String, Object> context = Maps.transformValues(values, v -> {
+            readValues.add(v);
+            return v;
+        });
+
+        assertThat(wex.evaluate("String.join(\" \", var1, var2)", context)).isEqualTo("v1 v2");
+        assertThat(readValues).containsExactly("v1", "v2");
+    }
+
+    @Test
+    void variables_take_precedence_over_functions() {
+        JexlEngineUtil wex = new JexlEngineUtil();
+        Map<String, Object> context = new HashMap<>();
+        context.put("StringUtils", "value");
+
+        assertThat(wex.evaluate("String.valueOf(StringUtils)", context)).isEqualTo("value");
+    }
+
+    @Test
+    void assigned_variables_do_not_change_context() {
+        JexlEngineUtil wex = new JexlEngineUtil();
+        Map<String, Object> context = new HashMap<>();
+        context.put("var1", "s");
+
+        assertThat(wex.evaluate("String.valueOf(var1 = 't')", context)).isEqualTo("t");
+        assertThat(context).containsOnly(Maps.immutableEntry("var1", "s"));
+    }
+
 }
@@ -0,0 +1,94 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.message;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.linuxforhealth.api.Expression;
+import io.github.linuxforhealth.api.FHIRResourceTemplate;
+import io.github.linuxforhealth.hl7.expression.ExpressionAttributes;
+import io.github.linuxforhealth.hl7.expression.SimpleExpression;
+import io.github.linuxforhealth.hl7.resource.HL7DataBasedResourceModel;
+import io.github.linuxforhealth.hl7.resource.ResourceReader;
+
+class ResourceTemplateDependenciesTest {
+
+    @Test
+    void templates_depend_on_the_referenced_templates_they_use() {
+        List<FHIRResourceTemplate> templates = ResourceReader.getInstance().getMessageTemplates()
+                .get("ADT_A01").getResources();
+        ResourceTemplateDependencies dependencies = ResourceTemplateDependencies.of(templates);
+        assertThat(dependencies.size()).isEqualTo(templates.size());
+
+        int messageHeader = indexOf(templates, "MessageHeader");
+        int patient = indexOf(templates, "Patient");
+        int encounter = indexOf(templates, "Encounter");
+        int observation = indexOf(templates, "Observation");
+
+        assertThat(dependencies.getDependencies(messageHeader)).isEmpty();
+        assertThat(dependencies.getDependencies(patient)).isEmpty();
+        assertThat(dependencies.getDependencies(encounter)).contains(patient);
+        assertThat(dependencies.getDependencies(observation)).contains(patient, encounter);
+        // MessageHeader is not referenced, so no template depends on it
+        for (int i = 0; i < templates.size(); i++) {
+            for (int dependency : dependencies.getDependencies(i)) {
+                assertThat(dependency).isLessThan(i).isNotEqualTo(messageHeader);
+            }
+        }
+    }
+
+    @Test
+    void names_that_cannot_be_analysed_depend_on_all_earlier_referenced_templates() {
+        List<FHIRResourceTemplate> templates = Arrays.asList(
+                template("Patient", true, simple("x")),
+                // Not a name the expressions can be matched against
+                template("Related-Person", true, simple("x")),
+                template("Encounter", true, simple("$Patient")),
+                // Not one of the expression types that are analysed
+                template("Observation", true, new SimpleExpression(attributes("x")) {
+                }),
+                template("Condition", false, simple("$Unknown")));
+        ResourceTemplateDependencies dependencies = ResourceTemplateDependencies.of(templates);
+
+        assertThat(dependencies.getDependencies(0)).isEmpty();
+        assertThat(dependencies.getDependencies(1)).isEmpty();
+        assertThat(dependencies.getDependencies(2)).containsExactly(0, 1);
+        assertThat(dependencies.getDependencies(3)).containsExactly(0, 1, 2);
+        assertThat(dependencies.getDependencies(4)).containsExactly(1);
+    }
+
+    private static FHIRResourceTemplate template(String resourceName, boolean isReferenced, Expression expression) {
+        HL7DataBasedResourceModel model = new HL7DataBasedResourceModel(resourceName,
+                Collections.singletonMap("value", expression));
+        return new HL7FHIRResourceTemplate(new HL7FHIRResourceTemplateAttributes.Builder()
+                .withResourceName(resourceName).withResourceModel(model).withSegment("PID")
+                .withIsReferenced(isReferenced).withRepeats(false).build());
+    }
+
+    private static SimpleExpression simple(String value) {
+        return new SimpleExpression(attributes(value));
+    }
+
+    private static ExpressionAttributes attributes(String value) {
+        return new ExpressionAttributes.Builder().withValue(value).build();
+    }
+
+    private static int indexOf(List<FHIRResourceTemplate> templates, String resourceName) {
+        for (int i = 0; i < templates.size(); i++) {
+            if (templates.get(i).getResourceName().equals(resourceName)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException(resourceName);
+    }
+
+}
@@ -19,6 +19,7 @@ import ca.uhn.hl7v2.model.Segment;
 import ca.uhn.hl7v2.model.Structure;
 import ca.uhn.hl7v2.model.Type;
 import ca.uhn.hl7v2.model.Unmodifiable;
+import ca.uhn.hl7v2.model.Variable;
 import ca.uhn.hl7v2.model.primitive.IS;
 import ca.uhn.hl7v2.model.v26.datatype.CX;
 import ca.uhn.hl7v2.model.v26.datatype.ST;
@@ -419,6 +420,79 @@ class HL7DataExtractorTest {
 
     }
 
+    @Test
+    void repeated_structure_searches_are_answered_from_segment_index() throws IOException {
+        String message = "MSH|^~\\&|SendTest1|Sendfac1|Receiveapp1|Receivefac1|200603081747|security|PPR^PC1^PPR_PC1|1|P^I|2.6||||||ASCII||\r"
+                + "PID|||555444222111^^^MPI&GenHosp&L^MR||james^anderson||19600614|M||C|99 Oakland #106^^qwerty^OH^44889||^^^^^626^5641111|^^^^^626^5647654|||||343132266|||N\r"
+                + "PV1||I|6N^1234^A^GENHOS||||0100^ANDERSON^CARL|0148^ADDISON^JAMES||SUR|||||||0148^ANDERSON^CARL|S|1400|A|||||||||||||||||||SF|K||||199501102300\r"
+                + "PRB|AD|200603150625|aortic stenosis|53692||2||200603150625\r"
+                + "PRB|AD|200603150626|mitral stenosis|53693||2||200603150626\r";
+
+        Message hl7message = getMessage(message);
+        HL7DataExtractor hl7DTE = new HL7DataExtractor(hl7message);
+
+        List<Structure> problems = hl7DTE.getAllStructures("PROBLEM").getValues();
+        assertThat(problems).hasSize(2);
+        assertThat(hl7DTE.getAllStructures("PROBLEM").getValues()).containsExactlyElementsOf(problems);
+
+        Structure prb = hl7DTE.getAllStructures(problems.get(1), "PRB").getValue();
+        assertThat(prb.getName()).isEqualTo("PRB");
+        assertThat(hl7DTE.getAllStructures(problems.get(1), "PRB").getValue()).isSameAs(prb);
+
+        SegmentIndex index = hl7DTE.getSegmentIndex();
+        assertThat(index.getParentGroup(prb, "PROBLEM")).isSameAs(problems.get(1));
+        assertThat(index.getParentGroup(prb, "PATIENT_VISIT")).isNull();
+        assertThat(index.getGroupId(problems.get(0))).isEqualTo(index.getGroupId(problems.get(0)))
+                .isNotEqualTo(index.getGroupId(problems.get(1)));
+    }
+
+    @Test
+    void repeated_field_lookups_reuse_resolved_paths() throws IOException {
+        String message = "MSH|^~\\&|SendTest1|Sendfac1|Receiveapp1|Receivefac1|200603081747|security|PPR^PC1^PPR_PC1|1|P^I|2.6||||||ASCII||\r"
+                + "PID|||555444222111^^^MPI&GenHosp&L^MR||james^anderson||19600614|M||C|99 Oakland #106^^qwerty^OH^44889||^^^^^626^5641111|^^^^^626^5647654|||||343132266|||N\r";
+
+        Message hl7message = getMessage(message);
+        HL7DataExtractor hl7DTE = new HL7DataExtractor(hl7message);
+
+        assertThat(hl7DTE.getMessageId()).isEqualTo("1");
+        assertThat(hl7DTE.getMessageId()).isEqualTo("1");
+        assertThat(hl7DTE.get("PID", "5-2").getValue()).isEqualTo("anderson");
+        assertThat(hl7DTE.get("PID", "5-2").getValue()).isEqualTo("anderson");
+        assertThat(hl7DTE.get("PID", "7").getValue()).isEqualTo("19600614");
+    }
+
+    // Templates generated concurrently read fields and components without a lock
+    @Test
+    void reading_missing_values_does_not_change_the_message() throws IOException, HL7Exception {
+        String message = "MSH|^~\\&|hl7Integration|hl7Integration|||||ADT^A01|||2.3|\r"
+                + "PID|1|465 306 5961|000010016^^^MR~000010017^^^MR~000010018^^^MR|407623|Wood^Patrick^^^MR||19700101|female|||High Street^^Oxford^^Ox1 4DP~George St^^Oxford^^Ox1 5AP|||||||\r"
+                + "OBX|1|TX|1234||ECHOCARDIOGRAPHIC REPORT||||||F\r";
+
+        Message hl7message = getMessage(message);
+        String encoded = hl7message.encode();
+        HL7DataExtractor hl7DTE = new HL7DataExtractor(hl7message);
+
+        Segment pid = (Segment) hl7DTE.getStructure("PID", 0).getValue();
+        int fields = pid.numFields();
+        Type cx = hl7DTE.getType(pid, 3, 0).getValue();
+        Segment obx = (Segment) hl7DTE.getStructure("OBX", 0).getValue();
+        Type value = hl7DTE.getType(obx, 5, 0).getValue();
+
+        assertThat(hl7DTE.getType(pid, 3, 3).getValue()).isNull();
+        assertThat(hl7DTE.getTypes(pid, fields + 5).getValues()).isEmpty();
+        assertThat(hl7DTE.getComponent(cx, 4, 3).getValue()).isNull();
+        assertThat(hl7DTE.getComponent(value, 2, 2).getValue()).isNull();
+        assertThat(hl7DTE.get("PID", "3(3)-1").getValue()).isNull();
+        assertThat(hl7DTE.get("PID", (fields + 5) + "").getValue()).isNull();
+        assertThat(HL7DataExtractor.getRepetitions(pid, fields + 5)).isEmpty();
+        assertThat(HL7DataExtractor.getExistingComponent(cx, 20)).isNull();
+
+        assertThat(pid.numFields()).isEqualTo(fields);
+        assertThat(pid.getField(3)).hasSize(3);
+        assertThat(((Variable) value).getData().getExtraComponents().numComponents()).isZero();
+        assertThat(hl7message.encode()).isEqualTo(encoded);
+    }
+
     private static Message getMessage(String message) throws IOException {
         HL7HapiParser hparser = null;
 
@@ -7,10 +7,16 @@ package io.github.linuxforhealth.hl7.resource;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.Map;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.FileUtils;
 
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.AfterEach;
@@ -18,13 +24,21 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
+import io.github.linuxforhealth.api.ResourceModel;
 import io.github.linuxforhealth.core.config.ConverterConfiguration;
+import io.github.linuxforhealth.fhir.FHIRContext;
+import io.github.linuxforhealth.hl7.HL7ToFHIRConverter;
+import io.github.linuxforhealth.hl7.message.HL7MessageEngine;
 import io.github.linuxforhealth.hl7.message.HL7MessageModel;
 
 class HL7ResourceReaderTest {
 
   private static final String CONF_PROP_HOME = "hl7converter.config.home";
 
+  private static final Pattern UUID_PATTERN = Pattern
+      .compile("[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}");
+  private static final Pattern LAST_UPDATED_PATTERN = Pattern.compile("\"lastUpdated\":\"[^\"]*\"");
+
   @TempDir
   static File folder;
 
@@ -95,6 +109,208 @@ class HL7ResourceReaderTest {
     }
   }
 
+  // Resource models are read once and shared by all the expressions that use them
+  @Test
+  void testGenerateResourceModelIsCached() throws IOException {
+    File configFile = new File(folder, "config.properties");
+    Properties prop = new Properties();
+    prop.put("base.path.resource", "src/main/resources");
+    prop.put("default.zoneid", "+08:00");
+    prop.put("additional.resources.location", "src/test/resources/additional_resources");
+    prop.store(new FileOutputStream(configFile), null);
+    System.setProperty(CONF_PROP_HOME, configFile.getParent());
+    ConverterConfiguration.reset();
+    ResourceReader.reset();
+
+    ResourceModel reference = ResourceReader.getInstance().generateResourceModel("datatype/Reference");
+    assertThat(reference).isNotNull();
+    assertThat(ResourceReader.getInstance().generateResourceModel("datatype/Reference")).isSameAs(reference);
+
+    // A new reader reads the templates again
+    ResourceReader.reset();
+    assertThat(ResourceReader.getInstance().generateResourceModel("datatype/Reference")).isNotSameAs(reference);
+  }
+
+  // A template that references itself must not recurse endlessly; the self reference is dropped
+  @Test
+  void testGenerateResourceModelWithSelfReference() throws IOException {
+    File datatypeFolder = new File(folder, "additional/hl7/datatype");
+    datatypeFolder.mkdirs();
+    FileUtils.writeStringToFile(new File(datatypeFolder, "SelfReference.yml"),
+        "text:\n  type: STRING\n  valueOf: MSH.3\n"
+            + "self:\n  valueOf: datatype/SelfReference\n  expressionType: resource\n",
+        StandardCharsets.UTF_8);
+
+    File configFile = new File(folder, "config.properties");
+    Properties prop = new Properties();
+    prop.put("base.path.resource", "src/main/resources");
+    prop.put("default.zoneid", "+08:00");
+    prop.put("additional.resources.location", new File(folder, "additional").getAbsolutePath());
+    prop.store(new FileOutputStream(configFile), null);
+    System.setProperty(CONF_PROP_HOME, configFile.getParent());
+    ConverterConfiguration.reset();
+    ResourceReader.reset();
+
+    ResourceModel model = ResourceReader.getInstance().generateResourceModel("datatype/SelfReference");
+    assertThat(model.getExpressions()).containsKey("text").doesNotContainKey("self");
+  }
+
+  // Message templates loaded concurrently are the same as those loaded one at a time
+  @Test
+  void testGetMessageTemplatesConcurrently() throws IOException {
+    Map<String, HL7MessageModel> sequential = getMessageTemplatesWithThreads(1);
+    Map<String, HL7MessageModel> concurrent = getMessageTemplatesWithThreads(4);
+    assertThat(concurrent).containsKey("ORU_R01").containsKey("ADT_A09");
+    assertThat(concurrent.keySet()).isEqualTo(sequential.keySet());
+    for (Map.Entry<String, HL7MessageModel> entry : sequential.entrySet()) {
+      assertThat(concurrent.get(entry.getKey()).getResources()).hasSameSizeAs(entry.getValue().getResources());
+    }
+
+    // Both template sets convert a message to the same bundle
+    String message = "MSH|^~\\&|SendTest1|Sendfac1|Receiveapp1|Receivefac1|200603081747|security|ORU^R01|MSGID000005|T|2.6\r"
+        + "PID||45483|45483||SMITH^SUZIE^||20160813|M|||123 MAIN STREET^^SCHENECTADY^NY^12345||(123)456-7890|||||^^^T||||||||||||\r"
+        + "PV1|1|I|6N^1234^A^GENHOS||||0100^ANDERSON^CARL|0148^ADDISON^JAMES||SUR|||||||0148^ANDERSON^CARL|S|1400|A|||||||||||||||||||SF|K||||20170215080000\r"
+        + "OBR|1||986^IA PHIMS Stage^2.16.840.1.114222.4.3.3.5.1.2^ISO|112^Final Echocardiogram Report|||20151009173644|||||||||||||002|||||F|||2740^Tsadok^Janetary~2913^Merrit^Darren^F|\r"
+        + "OBX|1|NM|8867-4^Heart rate^LN||72.50|/min|60-100|N|||F|||20151009173644\r"
+        + "OBX|2|ST|TS-F-01-007^Endocrine Disorders 7^L||obs report||||||F\r";
+    HL7MessageEngine engine = new HL7MessageEngine(new FHIRContext());
+    String expected = normalizeIds(sequential.get("ORU_R01").convert(message, engine));
+    assertThat(expected).contains("\"resourceType\":\"Observation\"");
+    assertThat(normalizeIds(concurrent.get("ORU_R01").convert(message, engine))).isEqualTo(expected);
+  }
+
+  // Replaces the generated resource ids, in order of appearance, and drops the update times
+  private static String normalizeIds(String json) {
+    Map<String, String> ids = new HashMap<>();
+    Matcher matcher = UUID_PATTERN.matcher(json);
+    StringBuffer result = new StringBuffer();
+    while (matcher.find()) {
+      String id = ids.get(matcher.group());
+      if (id == null) {
+        id = "ID" + ids.size();
+        ids.put(matcher.group(), id);
+      }
+      matcher.appendReplacement(result, id);
+    }
+    matcher.appendTail(result);
+    return LAST_UPDATED_PATTERN.matcher(result).replaceAll("");
+  }
+
+  private static Map<String, HL7MessageModel> getMessageTemplatesWithThreads(int threads) throws IOException {
+    File configFile = new File(folder, "config.properties");
+    Properties prop = new Properties();
+    prop.put("base.path.resource", "src/main/resources");
+    prop.put("supported.hl7.messages", "*");
+    prop.put("default.zoneid", "+08:00");
+    prop.put("additional.resources.location", "src/test/resources/additional_resources");
+    prop.put("template.load.threads", String.valueOf(threads));
+    prop.store(new FileOutputStream(configFile), null);
+    System.setProperty(CONF_PROP_HOME, configFile.getParent());
+    ConverterConfiguration.reset();
+    ResourceReader.reset();
+    return ResourceReader.getInstance().getMessageTemplates();
+  }
+
+  // Message templates are written to the snapshot on first load and read back from it afterwards
+  @Test
+  void testGetMessageTemplatesFromSnapshot() throws IOException {
+    File snapshotFile = new File(folder, "snapshot/templates.ser");
+    File configFile = new File(folder, "config.properties");
+    Properties prop = new Properties();
+    prop.put("base.path.resource", "src/main/resources");
+    prop.put("supported.hl7.messages", "ADT_A01, ORU_R01");
+    prop.put("default.zoneid", "+08:00");
+    prop.put("additional.resources.location", "src/test/resources/additional_resources");
+    prop.put("template.snapshot.file", snapshotFile.getAbsolutePath());
+    prop.store(new FileOutputStream(configFile), null);
+    System.setProperty(CONF_PROP_HOME, configFile.getParent());
+    ConverterConfiguration.reset();
+    ResourceReader.reset();
+
+    Map<String, HL7MessageModel> messagetemplates = ResourceReader.getInstance().getMessageTemplates();
+    assertThat(messagetemplates).containsOnlyKeys("ADT_A01", "ORU_R01");
+    assertThat(snapshotFile).exists();
+
+    // The snapshot is not rewritten when it is read
+    long lastModified = 1000L;
+    assertThat(snapshotFile.setLastModified(lastModified)).isTrue();
+    ConverterConfiguration.reset();
+    ResourceReader.reset();
+    Map<String, HL7MessageModel> snapshotTemplates = ResourceReader.getInstance().getMessageTemplates();
+    assertThat(snapshotFile.lastModified()).isEqualTo(lastModified);
+    assertThat(snapshotTemplates).containsOnlyKeys("ADT_A01", "ORU_R01");
+    assertThat(snapshotTemplates.get("ORU_R01").getResources())
+        .hasSameSizeAs(messagetemplates.get("ORU_R01").getResources());
+
+    // Templates read from the snapshot convert messages
+    ConverterConfiguration.reset();
+    ResourceReader.reset();
+    String json = new HL7ToFHIRConverter().convert(
+        "MSH|^~\\&|SE050|050|PACS|050|20120912011230||ADT^A01|102|T|2.6|||AL|NE\r"
+            + "EVN||201209122222\r"
+            + "PID|0010||PID1234^5^M11^A^MR^HOSP~1234568965^^^USA^SS||DOE^JOHN^A^||19800202|F||W|111 TEST_STREET_NAME^^TEST_CITY^NY^111-222^USA^H^^^^^^^^||(905)111-2222|||S|||\r");
+    assertThat(snapshotFile.lastModified()).isEqualTo(lastModified);
+    assertThat(json).contains("\"resourceType\":\"Patient\"");
+
+    // An unreadable snapshot is replaced by one built from the templates
+    FileUtils.writeStringToFile(snapshotFile, "not a snapshot", StandardCharsets.UTF_8);
+    ConverterConfiguration.reset();
+    ResourceReader.reset();
+    assertThat(ResourceReader.getInstance().getMessageTemplates()).containsOnlyKeys("ADT_A01", "ORU_R01");
+    assertThat(snapshotFile.length()).isGreaterThan("not a snapshot".length());
+  }
+
+  // The snapshot is rebuilt when a template changes
+  @Test
+  void testSnapshotIsRebuiltWhenTemplateChanges() throws IOException {
+    File baseFolder = new File(folder, "base");
+    FileUtils.copyDirectory(new File("src/main/resources/hl7"), new File(baseFolder, "hl7"));
+    File snapshotFile = new File(folder, "snapshot/changed.ser");
+    File configFile = new File(folder, "config.properties");
+    Properties prop = new Properties();
+    prop.put("base.path.resource", baseFolder.getAbsolutePath());
+    prop.put("supported.hl7.messages", "ADT_A01");
+    prop.put("default.zoneid", "+08:00");
+    prop.put("template.snapshot.file", snapshotFile.getAbsolutePath());
+    prop.store(new FileOutputStream(configFile), null);
+    System.setProperty(CONF_PROP_HOME, configFile.getParent());
+    ConverterConfiguration.reset();
+    ResourceReader.reset();
+
+    assertThat(ResourceReader.getInstance().getMessageTemplates().get("ADT_A01").getResources().size())
+        .isGreaterThan(2);
+    assertThat(snapshotFile).exists();
+
+    // Keep only the MessageHeader and Patient resources of the message template
+    FileUtils.writeStringToFile(new File(baseFolder, "hl7/message/ADT_A01.yml"),
+        "resources:\n"
+            + "    - resourceName: MessageHeader\n"
+            + "      segment: MSH\n"
+            + "      resourcePath: resource/MessageHeader\n"
+            + "      repeats: false\n"
+            + "      isReferenced: false\n"
+            + "    - resourceName: Patient\n"
+            + "      segment: PID\n"
+            + "      resourcePath: resource/Patient\n"
+            + "      repeats: false\n"
+            + "      isReferenced: true\n",
+        StandardCharsets.UTF_8);
+    long lastModified = 1000L;
+    assertThat(snapshotFile.setLastModified(lastModified)).isTrue();
+    ConverterConfiguration.reset();
+    ResourceReader.reset();
+
+    assertThat(ResourceReader.getInstance().getMessageTemplates().get("ADT_A01").getResources()).hasSize(2);
+    assertThat(snapshotFile.lastModified()).isNotEqualTo(lastModified);
+
+    // The rebuilt snapshot is read back
+    assertThat(snapshotFile.setLastModified(lastModified)).isTrue();
+    ConverterConfiguration.reset();
+    ResourceReader.reset();
+    assertThat(ResourceReader.getInstance().getMessageTemplates().get("ADT_A01").getResources()).hasSize(2);
+    assertThat(snapshotFile.lastModified()).isEqualTo(lastModified);
+  }
+
   // This tests that messagetemplates are loaded the new way via configured path + alternate path
   // AND that they are found when supported.hl7.messages is omitted and defaults to *
   @Test
@@ -0,0 +1,160 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.resource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.github.linuxforhealth.core.config.ConverterConfiguration;
+import io.github.linuxforhealth.core.terminology.UrlLookup;
+import io.github.linuxforhealth.hl7.resource.TemplateRegistry.TemplateVersion;
+
+class TemplateRegistryTest {
+
+  private static final String CONF_PROP_HOME = "hl7converter.config.home";
+
+  @TempDir
+  File folder;
+
+  static String originalConfigHome;
+
+  private File messageTemplate;
+
+  private File configFile;
+
+  @BeforeAll
+  static void saveConfigHomeProperty() {
+    originalConfigHome = System.getProperty(CONF_PROP_HOME);
+  }
+
+  // Templates read from a copy of the resources, so they can be changed
+  @BeforeEach
+  void setUp() throws IOException {
+    File baseFolder = new File(folder, "base");
+    FileUtils.copyDirectory(new File("src/main/resources/hl7"), new File(baseFolder, "hl7"));
+    messageTemplate = new File(baseFolder, "hl7/message/ADT_A01.yml");
+
+    configFile = new File(folder, "config.properties");
+    Properties prop = new Properties();
+    prop.put("base.path.resource", baseFolder.getAbsolutePath());
+    prop.put("supported.hl7.messages", "ADT_A01");
+    prop.put("default.zoneid", "+08:00");
+    prop.store(new FileOutputStream(configFile), null);
+    System.setProperty(CONF_PROP_HOME, configFile.getParent());
+    ConverterConfiguration.reset();
+    ResourceReader.reset();
+  }
+
+  @AfterEach
+  void reset() {
+    System.clearProperty(CONF_PROP_HOME);
+    ConverterConfiguration.reset();
+    ResourceReader.reset();
+    UrlLookup.reset();
+  }
+
+  @AfterAll
+  static void reloadPreviousConfigurations() {
+    if (originalConfigHome != null)
+      System.setProperty(CONF_PROP_HOME, originalConfigHome);
+    else
+      System.clearProperty(CONF_PROP_HOME);
+  }
+
+  @Test
+  void reload_picks_up_changed_template() throws Exception {
+    TemplateRegistry registry = new TemplateRegistry();
+    assertThat(registry.getCurrent().getMessageTemplate("ADT_A01").getResources().size()).isGreaterThan(2);
+
+    // Keep only the MessageHeader and Patient resources of the message template
+    FileUtils.writeStringToFile(messageTemplate,
+        "resources:\n"
+            + "    - resourceName: MessageHeader\n"
+            + "      segment: MSH\n"
+            + "      resourcePath: resource/MessageHeader\n"
+            + "      repeats: false\n"
+            + "      isReferenced: false\n"
+            + "    - resourceName: Patient\n"
+            + "      segment: PID\n"
+            + "      resourcePath: resource/Patient\n"
+            + "      repeats: false\n"
+            + "      isReferenced: true\n",
+        StandardCharsets.UTF_8);
+
+    TemplateVersion reloaded = registry.reload().get(60, TimeUnit.SECONDS);
+    assertThat(reloaded.getVersion()).isEqualTo(2);
+    assertThat(reloaded.getMessageTemplate("ADT_A01").getResources()).hasSize(2);
+    assertThat(registry.getCurrent()).isSameAs(reloaded);
+  }
+
+  @Test
+  void failed_reload_keeps_current_templates_and_configuration() throws Exception {
+    TemplateRegistry registry = new TemplateRegistry();
+    TemplateVersion loaded = registry.getCurrent();
+    ConverterConfiguration configuration = ConverterConfiguration.getInstance();
+    ResourceReader reader = ResourceReader.getInstance();
+
+    // A message template without resources cannot be loaded
+    FileUtils.writeStringToFile(messageTemplate, "resources:\n", StandardCharsets.UTF_8);
+
+    CompletableFuture<TemplateVersion> reload = registry.reload();
+    ExecutionException e = Assertions.assertThrows(ExecutionException.class,
+        () -> reload.get(60, TimeUnit.SECONDS));
+    assertThat(e.getCause()).isInstanceOf(IllegalStateException.class);
+
+    assertThat(registry.getCurrent()).isSameAs(loaded);
+    assertThat(ConverterConfiguration.getInstance()).isSameAs(configuration);
+    assertThat(ResourceReader.getInstance()).isSameAs(reader);
+  }
+
+  @Test
+  void reload_with_invalid_concept_map_keeps_current_templates_and_configuration() throws Exception {
+    TemplateRegistry registry = new TemplateRegistry();
+    TemplateVersion loaded = registry.getCurrent();
+    ConverterConfiguration configuration = ConverterConfiguration.getInstance();
+    ResourceReader reader = ResourceReader.getInstance();
+    assertThat(UrlLookup.getSystemUrl("LN")).isEqualTo("http://loinc.org");
+
+    // A concept map file that does not exist
+    Properties prop = new Properties();
+    try (FileInputStream in = new FileInputStream(configFile)) {
+      prop.load(in);
+    }
+    prop.put("additional.conceptmap.file", new File(folder, "missing.yml").getAbsolutePath());
+    try (FileOutputStream out = new FileOutputStream(configFile)) {
+      prop.store(out, null);
+    }
+
+    CompletableFuture<TemplateVersion> reload = registry.reload();
+    ExecutionException e = Assertions.assertThrows(ExecutionException.class,
+        () -> reload.get(60, TimeUnit.SECONDS));
+    assertThat(e.getCause()).isInstanceOf(IllegalArgumentException.class);
+
+    assertThat(registry.getCurrent()).isSameAs(loaded);
+    assertThat(ConverterConfiguration.getInstance()).isSameAs(configuration);
+    assertThat(ResourceReader.getInstance()).isSameAs(reader);
+    assertThat(UrlLookup.getSystemUrl("LN")).isEqualTo("http://loinc.org");
+  }
+
+}
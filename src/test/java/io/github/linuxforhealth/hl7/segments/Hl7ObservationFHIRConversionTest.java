@@ -12,6 +12,7 @@ import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
+import java.math.BigDecimal;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -90,6 +91,22 @@ class Hl7ObservationFHIRConversionTest {
         assertThat(low.getUnit()).isEqualTo("gm/dl");
     }
 
+    // Decimal values are read as floats and written with the float's shortest text, so 7.3 is not
+    // written as 7.300000190734863 and the trailing zero of 12.50 is dropped
+    @Test
+    void testObservationNmResultExactDecimal() throws IOException {
+        String hl7message = baseMessage + "OBX|1|NM|0135-4^TotalProtein||7.3|gm/dl|0.1234567-12.50|||R|F";
+
+        List<BundleEntryComponent> e = ResourceUtils.createFHIRBundleFromHL7MessageReturnEntryList(hl7message);
+        List<Resource> obsResource = ResourceUtils.getResourceList(e, ResourceType.Observation);
+        assertThat(obsResource).hasSize(1);
+        Observation obs = (Observation) obsResource.get(0);
+        assertThat(obs.getValueQuantity().getValue()).isEqualTo(new BigDecimal("7.3"));
+        ObservationReferenceRangeComponent range = obs.getReferenceRangeFirstRep();
+        assertThat(range.getLow().getValue()).isEqualTo(new BigDecimal("0.1234567"));
+        assertThat(range.getHigh().getValue()).isEqualTo(new BigDecimal("12.5"));
+    }
+
     /**
      * Testing Observation.yml valueQuantity_2 with a valid comparator
      * 
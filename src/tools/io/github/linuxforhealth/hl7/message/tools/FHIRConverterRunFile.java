@@ -61,6 +61,7 @@ public class FHIRConverterRunFile {
                 .withBundleType(BundleType.COLLECTION)
                 .withValidateResource()
                 .withPrettyPrint()
+                .withLogMessageStructure()
                 .build();
 
         String json = ftv.convert(inputFile, options);
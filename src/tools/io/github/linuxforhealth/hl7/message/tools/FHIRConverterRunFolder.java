@@ -22,6 +22,7 @@ import com.google.gson.JsonParser;
 import io.github.linuxforhealth.hl7.ConverterOptions;
 import io.github.linuxforhealth.hl7.ConverterOptions.Builder;
 import io.github.linuxforhealth.hl7.HL7ToFHIRConverter;
+import io.github.linuxforhealth.hl7.expression.ExpressionProfiler;
 
 /**
  * Converts all HL7 messages found in a folder, writes the resulting JSONs to a specified location.
@@ -29,6 +30,8 @@ import io.github.linuxforhealth.hl7.HL7ToFHIRConverter;
  * - hl7.input.folder
  * - hl7.output.folder (directory must exist, files will be overwritten if they exist)
  * - hl7.tools.debug (set to "true" to output input HL7 and output JSON to the console as well as to files)
+ * - hl7.tools.profile (set to "true" to print the template expressions that took the most time once all
+ *   the files are converted, at most hl7.tools.profile.limit expressions, default 50)
  * This class uses a main() method; run as a Java application.
  */
 public class FHIRConverterRunFolder {
@@ -51,6 +54,10 @@ public class FHIRConverterRunFolder {
         if (debugStr != null && debugStr.equalsIgnoreCase("true")) {
             debug = true;
         }
+        boolean profile = Boolean.parseBoolean(System.getProperty("hl7.tools.profile"));
+        if (profile) {
+            ExpressionProfiler.setEnabled(true);
+        }
 
         int numConvertedFiles = 0;
         try {
@@ -90,7 +97,7 @@ public class FHIRConverterRunFolder {
                     // Convert from HL7 to JSON
                     HL7ToFHIRConverter ftv = new HL7ToFHIRConverter();
                     ConverterOptions options = new Builder().withValidateResource().withPrettyPrint()
-                            .withProperty("TENANT", "tenantid").build();
+                            .withLogMessageStructure().withProperty("TENANT", "tenantid").build();
 
                     String json = ftv.convert(hl7MessageString, options);
 
@@ -119,6 +126,10 @@ public class FHIRConverterRunFolder {
             e.printStackTrace();
         }
         System.out.println("Done! Converted " + numConvertedFiles + " files");
+        if (profile) {
+            System.out.println("Template expressions by self time:\n"
+                    + ExpressionProfiler.formatReport(Integer.getInteger("hl7.tools.profile.limit", 50)));
+        }
     }
 
     private static String getFileExtension(String fileName) {